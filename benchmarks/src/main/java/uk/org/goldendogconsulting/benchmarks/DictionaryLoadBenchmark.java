@@ -0,0 +1,59 @@
+package uk.org.goldendogconsulting.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.org.goldendogconsulting.Dictionary;
+import uk.org.goldendogconsulting.DictionarySnapshot;
+
+/**
+ * Cost of loading the dictionary, parsed from the bundled text or mapped from a binary snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DictionaryLoadBenchmark {
+
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void writeSnapshot() throws IOException {
+        snapshot = Files.createTempFile("benchmark", ".snapshot");
+        DictionarySnapshot.write(loadText(), snapshot);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSnapshot() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public Dictionary loadText() {
+        return Dictionary.fromText(Objects.requireNonNull(
+                Dictionary.class.getResourceAsStream(Dictionary.DICTIONARY_RESOURCE)));
+    }
+
+    @Benchmark
+    public Dictionary loadSnapshot() {
+        return DictionarySnapshot.load(snapshot);
+    }
+}
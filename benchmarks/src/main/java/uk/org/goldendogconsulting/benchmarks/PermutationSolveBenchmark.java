@@ -0,0 +1,54 @@
+package uk.org.goldendogconsulting.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.org.goldendogconsulting.Dictionary;
+import uk.org.goldendogconsulting.PermutateStringException;
+import uk.org.goldendogconsulting.SolverScheduler;
+import uk.org.goldendogconsulting.SolverStrategy;
+import uk.org.goldendogconsulting.WordWheelEngine;
+import uk.org.goldendogconsulting.WordWheelResult;
+
+/**
+ * The reference permutation strategy, each solve takes seconds so it is timed as single shots. Run with and without
+ * collecting the combinations found, the GC profiler shows the difference in allocation.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PermutationSolveBenchmark {
+
+    @Param({ "ABCDEFGHI", "ABCDEFGHH", "ABCDEFGGG", "ABCDEFFFF", "ABCDEEEEE" })
+    public String puzzle;
+
+    @Param({ "true", "false" })
+    public boolean collectCombinations;
+
+    private WordWheelEngine engine;
+
+    @Setup
+    public void createEngine() {
+        engine = new WordWheelEngine(SolverStrategy.PERMUTATION, Dictionary.getDefault(),
+                SolverScheduler.getDefault(), collectCombinations);
+    }
+
+    @Benchmark
+    public WordWheelResult findWords() throws PermutateStringException {
+        return engine.findWords(puzzle);
+    }
+}
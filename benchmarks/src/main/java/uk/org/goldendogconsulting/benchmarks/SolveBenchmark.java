@@ -0,0 +1,69 @@
+package uk.org.goldendogconsulting.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.org.goldendogconsulting.Dictionary;
+import uk.org.goldendogconsulting.PermutateStringException;
+import uk.org.goldendogconsulting.SolverStrategy;
+import uk.org.goldendogconsulting.WordWheel;
+import uk.org.goldendogconsulting.WordQuery;
+import uk.org.goldendogconsulting.WordWheelEngine;
+import uk.org.goldendogconsulting.WordWheelResult;
+
+/**
+ * Solving one wheel on a warm engine, for each class of unique letter count used by the tests (9 down to 5 unique
+ * letters) and each of the fast solver strategies. The permutation strategy is measured separately by
+ * {@link PermutationSolveBenchmark}, it is too slow to share these iteration settings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolveBenchmark {
+
+    @Param({ "ABCDEFGHI", "ABCDEFGHH", "ABCDEFGGG", "ABCDEFFFF", "ABCDEEEEE", "OCNINLREI" })
+    public String puzzle;
+
+    @Param({ "TRIE", "ANAGRAM_KEY", "SCAN" })
+    public SolverStrategy strategy;
+
+    private WordWheelEngine engine;
+    private WordWheel wordWheel;
+
+    @Setup
+    public void createEngine() throws PermutateStringException {
+        engine = new WordWheelEngine(strategy, Dictionary.getDefault());
+        wordWheel = new WordWheel(engine);
+    }
+
+    @Benchmark
+    public WordWheelResult findWords() throws PermutateStringException {
+        return engine.findWords(puzzle);
+    }
+
+    @Benchmark
+    public List<String> findNineLetterWords() throws PermutateStringException {
+        wordWheel.findWords(puzzle);
+        return wordWheel.findNineLetterWords();
+    }
+
+    @Benchmark
+    public WordWheelResult firstNineLetterWordQuery() throws PermutateStringException {
+        return engine.findWords(puzzle, WordQuery.firstNineLetterWord(), null);
+    }
+}
@@ -0,0 +1,63 @@
+package uk.org.goldendogconsulting.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.org.goldendogconsulting.Dictionary;
+import uk.org.goldendogconsulting.PermutateStringException;
+import uk.org.goldendogconsulting.SolverStrategy;
+import uk.org.goldendogconsulting.WordQuery;
+import uk.org.goldendogconsulting.WordWheelEngine;
+import uk.org.goldendogconsulting.WordWheelResult;
+
+/**
+ * How solve time grows with the size of the wheel, from the usual nine letters up to sixteen. Each wheel is the
+ * first letters of the same common-lettered wheel, so a larger wheel always has every word of a smaller one. The
+ * permutation strategy refuses wheels this large, {@link PermutationSolveBenchmark} times it at nine letters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WheelSizeBenchmark {
+
+    private static final String LETTERS = "ESTTRRABUINOGFPL";
+
+    @Param({ "9", "10", "11", "12", "13", "14", "15", "16" })
+    public int wheelSize;
+
+    @Param({ "TRIE", "ANAGRAM_KEY", "SCAN" })
+    public SolverStrategy strategy;
+
+    private String puzzle;
+    private WordWheelEngine engine;
+
+    @Setup
+    public void createEngine() {
+        puzzle = LETTERS.substring(0, wheelSize);
+        engine = new WordWheelEngine(strategy, Dictionary.getDefault());
+    }
+
+    @Benchmark
+    public WordWheelResult findWords() throws PermutateStringException {
+        return engine.findWords(puzzle);
+    }
+
+    @Benchmark
+    public WordWheelResult findWordsWithoutCentre() throws PermutateStringException {
+        return engine.findWords(puzzle, WordQuery.minimumLength(4).withoutCentre(), null);
+    }
+}
@@ -0,0 +1,137 @@
+package uk.org.goldendogconsulting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Solver that indexes the dictionary once by the canonical key of each word (its letters in alphabetical order).
+ * A wheel is answered by generating every distinct sub-multiset of its letters that contains the centre letter,
+ * which is at most 511 keys for a nine letter wheel, and looking each key up in the index.
+ */
+public class AnagramKeySolver implements WordSolver {
+
+    private static final int ALPHABET_SIZE = 26;
+
+    private final Map<String, List<String>> anagramIndex;
+
+    /**
+     *
+     * @param dictionary : dictionary of known valid words, words containing anything other than the letters A-Z
+     *                   can never be built from a wheel so are not indexed
+     */
+    public AnagramKeySolver(Set<String> dictionary) {
+        anagramIndex = new HashMap<>();
+        for (String word : dictionary) {
+            if (isUpperCaseAlpha(word)) {
+                anagramIndex.computeIfAbsent(anagramKey(word), key -> new ArrayList<>(1)).add(word);
+            }
+        }
+    }
+
+    /**
+     * The canonical key of a word, its letters sorted into alphabetical order.
+     * @param word String to compute the key of
+     * @return the letters of the word in alphabetical order
+     */
+    public static String anagramKey(String word) {
+        char[] letters = word.toCharArray();
+        Arrays.sort(letters);
+        return new String(letters);
+    }
+
+    private static boolean isUpperCaseAlpha(String word) {
+        if (word.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char ch = word.charAt(i);
+            if (ch < 'A' || ch > 'Z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean findWords(String letters, Set<String> validWords, SearchControl control) {
+        return findWords(letters, 1, letters.length(), validWords, control);
+    }
+
+    @Override
+    public boolean findWords(String letters, int minLength, int maxLength, Set<String> validWords,
+                             SearchControl control) {
+        int centre = letters.charAt(0) - 'A';
+        if (centre < 0 || centre >= ALPHABET_SIZE) {
+            // No indexed word can contain a centre letter outside A-Z
+            return true;
+        }
+        return search(letters, centre, minLength, maxLength, validWords, control);
+    }
+
+    @Override
+    public boolean findWordsWithoutCentre(String letters, int minLength, int maxLength, Set<String> validWords,
+                                          SearchControl control) {
+        return search(letters, -1, minLength, maxLength, validWords, control);
+    }
+
+    // A centre of -1 leaves every letter optional
+    private boolean search(String letters, int centre, int minLength, int maxLength, Set<String> validWords,
+                           SearchControl control) {
+        int[] letterCounts = new int[ALPHABET_SIZE];
+        for (int i = 0; i < letters.length(); i++) {
+            int letter = letters.charAt(i) - 'A';
+            if (letter >= 0 && letter < ALPHABET_SIZE) {
+                letterCounts[letter]++;
+            }
+        }
+        // Letters still to choose from after each letter, so keys that cannot reach the minimum length are left out
+        int[] lettersAfter = new int[ALPHABET_SIZE + 1];
+        for (int letter = ALPHABET_SIZE - 1; letter >= 0; letter--) {
+            lettersAfter[letter] = lettersAfter[letter + 1] + letterCounts[letter];
+        }
+        subMultisets(letterCounts, lettersAfter, centre, 0, new char[letters.length()], 0,
+                Math.max(1, minLength), maxLength, validWords, control);
+        return !control.isStopped();
+    }
+
+    /**
+     * Find the words that use every one of the letters given, i.e. the anagrams of those letters.
+     * @param letters upper-case letters
+     * @return the dictionary words that are anagrams of the letters, empty if there are none
+     */
+    public List<String> findAnagrams(String letters) {
+        List<String> words = anagramIndex.get(anagramKey(letters));
+        return words == null ? Collections.emptyList() : Collections.unmodifiableList(words);
+    }
+
+    // Choose 0..n copies of each letter in turn, keys are generated already sorted as letters are visited in order
+    private void subMultisets(int[] letterCounts, int[] lettersAfter, int centre, int letter, char[] key,
+                              int keyLength, int minLength, int maxLength, Set<String> validWords,
+                              SearchControl control) {
+        if (control.isStopped() || keyLength + lettersAfter[letter] < minLength) {
+            return;
+        }
+        if (letter == ALPHABET_SIZE) {
+            if (keyLength > 0) {
+                List<String> words = anagramIndex.get(new String(key, 0, keyLength));
+                if (words != null) {
+                    validWords.addAll(words);
+                }
+            }
+            return;
+        }
+        int minimum = letter == centre ? 1 : 0;
+        for (int count = minimum; count <= letterCounts[letter] && keyLength + count <= maxLength; count++) {
+            for (int i = 0; i < count; i++) {
+                key[keyLength + i] = (char) ('A' + letter);
+            }
+            subMultisets(letterCounts, lettersAfter, centre, letter + 1, key, keyLength + count, minLength, maxLength,
+                    validWords, control);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package uk.org.goldendogconsulting;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Solves a stream of puzzles, one per line, on a single warm {@link WordWheelEngine}.
+ * <p>
+ * A line holds either the nine wheel letters with the centre letter first, or the centre letter and the eight wheel
+ * letters separated by white space; blank lines and lines starting "#" are skipped. Puzzles are solved in parallel
+ * with only a bounded number in flight at a time, so input of any length can be streamed, and results are written as
+ * they complete or, if asked, in input order. A summary line with throughput and failure counts comes last.
+ */
+public class BatchSolver {
+
+    /**
+     * How each result line is written.
+     */
+    public enum OutputFormat {
+        /**
+         * Puzzle, word count and nine letter words as plain text.
+         */
+        TEXT,
+        /**
+         * One JSON object per line, including every word found.
+         */
+        JSON
+    }
+
+    private static final int IN_FLIGHT_PER_THREAD = 16;
+    private static final long MILLION = 1000000;
+
+    private final WordWheelEngine engine;
+    private final int parallelism;
+    private final OutputFormat format;
+    private final boolean ordered;
+
+    private static final Logger LOG = LogManager.getLogger(BatchSolver.class);
+
+    /**
+     *
+     * @param engine : engine the puzzles are solved on
+     * @param parallelism : number of puzzles solved at once
+     * @param format : format of the result lines
+     * @param ordered : true to write results in input order, false to write them as they complete
+     */
+    public BatchSolver(WordWheelEngine engine, int parallelism, OutputFormat format, boolean ordered) {
+        this.engine = engine;
+        this.parallelism = Math.max(1, parallelism);
+        this.format = format;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Solve every puzzle read, writing a result line for each and a summary line at the end.
+     * @param input puzzles, one per line
+     * @param output destination of the result lines, flushed but not closed
+     * @return counts for the batch
+     * @throws IOException if reading or writing fails
+     */
+    public Summary solve(BufferedReader input, Writer output) throws IOException {
+        long startTime = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        CompletionService<Outcome> completionService = new ExecutorCompletionService<>(executor);
+        ResultWriter resultWriter = new ResultWriter(output);
+        int maxInFlight = parallelism * IN_FLIGHT_PER_THREAD;
+        int inFlight = 0;
+        long submitted = 0;
+        try {
+            String line;
+            while ((line = input.readLine()) != null) {
+                String puzzle = line.trim();
+                if (puzzle.isEmpty() || puzzle.startsWith("#")) {
+                    continue;
+                }
+                final long index = submitted++;
+                long submittedNanos = SolverMetrics.getDefault().start();
+                completionService.submit(() -> solveOne(engine, index, puzzle, submittedNanos));
+                inFlight++;
+                if (inFlight >= maxInFlight) {
+                    resultWriter.add(take(completionService));
+                    inFlight--;
+                }
+            }
+            while (inFlight > 0) {
+                resultWriter.add(take(completionService));
+                inFlight--;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Summary summary = new Summary(submitted, resultWriter.failed, System.nanoTime() - startTime);
+        output.write(summary.format(format));
+        output.write(System.lineSeparator());
+        output.flush();
+        LOG.debug(summary.toString());
+        return summary;
+    }
+
+    /**
+     * Solve one puzzle of a batch, catching any failure as the reason it could not be solved.
+     * @param engine : engine the puzzle is solved on
+     * @param index : position of the puzzle in the batch
+     * @param puzzle : the puzzle as read, trimmed
+     * @param submittedNanos : when the puzzle was queued, from {@link SolverMetrics#start()}
+     * @return the outcome
+     */
+    static Outcome solveOne(WordWheelEngine engine, long index, String puzzle, long submittedNanos) {
+        SolverMetrics.getDefault().record(SolverMetrics.Phase.QUEUE_WAIT, submittedNanos);
+        try {
+            return new Outcome(index, puzzle, engine.findWords(puzzle.replaceAll("\\s+", "")), null);
+        } catch (PermutateStringException permutateStringException) {
+            return new Outcome(index, puzzle, null, permutateStringException.getMessage());
+        } catch (RuntimeException runtimeException) {
+            LOG.error("Exception " +runtimeException.getClass().getName() +" solving " +puzzle, runtimeException);
+            return new Outcome(index, puzzle, null, runtimeException.getClass().getName() +": "
+                    +runtimeException.getMessage());
+        }
+    }
+
+    private static Outcome take(CompletionService<Outcome> completionService) throws IOException {
+        try {
+            return completionService.take().get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for puzzle results", interruptedException);
+        } catch (ExecutionException executionException) {
+            throw new IOException("Unexpected failure solving puzzle", executionException.getCause());
+        }
+    }
+
+    /**
+     * Writes outcomes as they arrive, or holds each back until every outcome before it has been written.
+     */
+    private final class ResultWriter {
+        private final Writer output;
+        private final Map<Long, Outcome> pending = new TreeMap<>();
+        private long nextToWrite;
+        private long failed;
+
+        private ResultWriter(Writer output) {
+            this.output = output;
+        }
+
+        private void add(Outcome outcome) throws IOException {
+            if (outcome.isFailed()) {
+                failed++;
+            }
+            if (!ordered) {
+                write(outcome);
+                return;
+            }
+            pending.put(outcome.index, outcome);
+            Outcome next;
+            while ((next = pending.remove(nextToWrite)) != null) {
+                write(next);
+                nextToWrite++;
+            }
+        }
+
+        private void write(Outcome outcome) throws IOException {
+            output.write(outcome.format(format));
+            output.write(System.lineSeparator());
+        }
+    }
+
+    /**
+     * The result of one puzzle, or the reason it could not be solved.
+     */
+    static final class Outcome {
+        private final long index;
+        private final String puzzle;
+        private final WordWheelResult result;
+        private final String error;
+
+        private Outcome(long index, String puzzle, WordWheelResult result, String error) {
+            this.index = index;
+            this.puzzle = puzzle;
+            this.result = result;
+            this.error = error;
+        }
+
+        boolean isFailed() {
+            return error != null;
+        }
+
+        /**
+         *
+         * @param format : format of the result line
+         * @return the result line, without a line separator
+         */
+        String format(OutputFormat format) {
+            return format == OutputFormat.JSON ? toJson() : toString();
+        }
+
+        private String toJson() {
+            if (error != null) {
+                return "{\"puzzle\":" +Json.quote(puzzle) +",\"error\":" +Json.quote(error) +"}";
+            }
+            return "{\"puzzle\":" +Json.quote(puzzle)
+                    +",\"centre\":" +Json.quote(result.getCentreLetter())
+                    +",\"wheel\":" +Json.quote(result.getWheelLetters())
+                    +",\"complete\":" +result.isComplete()
+                    +",\"count\":" +result.getWordCount()
+                    +",\"nineLetterWords\":" +Json.array(result.getNineLetterWords())
+                    +",\"words\":" +Json.array(result.getValidWords())
+                    +(result.getBlankCount() > 0 ? ",\"blanks\":" +Json.object(result.getBlankLetters()) : "")
+                    +",\"msecs\":" +result.getSolveMsecs() +"}";
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) {
+                return puzzle +" error: " +error;
+            }
+            return puzzle +" " +result.getWordCount() +" words" +(result.isComplete() ? "" : " (incomplete)")
+                    +", nine letter words: "
+                    +(result.getNineLetterWords().isEmpty() ? "none" : String.join(" ", result.getNineLetterWords()));
+        }
+    }
+
+    /**
+     * Counts and timing for a whole batch.
+     */
+    public static final class Summary {
+        private final long puzzles;
+        private final long failed;
+        private final long elapsedNanos;
+
+        Summary(long puzzles, long failed, long elapsedNanos) {
+            this.puzzles = puzzles;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getPuzzles() {
+            return puzzles;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getElapsedMsecs() {
+            return elapsedNanos / MILLION;
+        }
+
+        public double getPuzzlesPerSecond() {
+            return elapsedNanos == 0 ? 0 : puzzles * 1e9 / elapsedNanos;
+        }
+
+        /**
+         *
+         * @param format : format of the summary line
+         * @return the summary line, without a line separator
+         */
+        String format(OutputFormat format) {
+            return format == OutputFormat.JSON ? toJson() : toString();
+        }
+
+        private String toJson() {
+            return "{\"summary\":{\"puzzles\":" +puzzles +",\"failed\":" +failed +",\"msecs\":" +getElapsedMsecs()
+                    +",\"puzzlesPerSecond\":" +String.format(Locale.ROOT, "%.1f", getPuzzlesPerSecond()) +"}}";
+        }
+
+        @Override
+        public String toString() {
+            return "Solved " +(puzzles - failed) +" of " +puzzles +" puzzles, " +failed +" failed, in "
+                    +getElapsedMsecs() +" msecs (" +String.format("%.1f", getPuzzlesPerSecond()) +" puzzles/sec)";
+        }
+    }
+}
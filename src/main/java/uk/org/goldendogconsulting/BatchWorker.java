@@ -0,0 +1,89 @@
+package uk.org.goldendogconsulting;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Solves work units handed out by a {@link ShardedBatchSolver} on one warm {@link WordWheelEngine}, kept for every
+ * unit the worker is given, until the coordinator says the batch is finished. Each result is sent as soon as its
+ * puzzle is solved, so a worker lost part way through a unit only leaves the rest of the unit to be solved again.
+ */
+public class BatchWorker {
+
+    private final WordWheelEngine engine;
+
+    private static final Logger LOG = LogManager.getLogger(BatchWorker.class);
+
+    /**
+     *
+     * @param engine : engine the puzzles are solved on
+     */
+    public BatchWorker(WordWheelEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Connect to a coordinator and solve the units it hands out until the batch is finished.
+     * @param host : host of the coordinator
+     * @param port : port of the coordinator
+     * @return number of puzzles solved
+     * @throws IOException if the connection fails or the coordinator breaks the protocol
+     */
+    public long run(String host, int port) throws IOException {
+        long solved = 0;
+        try (Socket socket = new Socket(host, port);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+            writer.write(ShardedBatchSolver.READY + "\n");
+            writer.flush();
+            String line;
+            while ((line = reader.readLine()) != null && !line.equals(ShardedBatchSolver.DONE)) {
+                String[] fields = line.split(" ");
+                if (fields.length != 4 || !fields[0].equals(ShardedBatchSolver.UNIT)) {
+                    throw new IOException("Expected a unit from the coordinator, read : " +line);
+                }
+                int count = Integer.parseInt(fields[2]);
+                BatchSolver.OutputFormat format = BatchSolver.OutputFormat.valueOf(fields[3]);
+                LOG.debug("Solving unit " +fields[1] +" of " +count +" puzzles");
+                for (int i = 0; i < count; i++) {
+                    String[] puzzle = readPuzzle(reader);
+                    long submittedNanos = SolverMetrics.getDefault().start();
+                    BatchSolver.Outcome outcome = BatchSolver.solveOne(engine, Long.parseLong(puzzle[0]), puzzle[1],
+                            submittedNanos);
+                    writer.write(ShardedBatchSolver.RESULT + " " +puzzle[0] +" " +(outcome.isFailed() ? 1 : 0) +" "
+                            +outcome.format(format) +"\n");
+                    writer.flush();
+                    solved++;
+                }
+                writer.write(ShardedBatchSolver.READY + "\n");
+                writer.flush();
+            }
+        } catch (IllegalArgumentException illegalArgumentException) {
+            // Thrown by the number and format parsing
+            throw new IOException("Malformed unit from the coordinator : " +illegalArgumentException.getMessage(),
+                    illegalArgumentException);
+        }
+        LOG.info("Solved " +solved +" puzzles for the coordinator at " +host +":" +port);
+        return solved;
+    }
+
+    private static String[] readPuzzle(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        String[] fields = line == null ? new String[0] : line.split(" ", 2);
+        if (fields.length != 2) {
+            throw new IOException("Expected a puzzle from the coordinator, read : " +line);
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,168 @@
+package uk.org.goldendogconsulting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Solver that tests every dictionary word at once against the wheel with a {@link LetterCountIndex} scan, rather than
+ * generating candidates from the wheel. The same scan answers the reverse question of which words can be built from
+ * a set of letters at all, and bulk queries of many wheels against the dictionary, where each block of the dictionary
+ * is tested against every wheel while it is still in cache. Blank tiles on the wheel are made up in the same pass, by
+ * comparing each word's shortfall of letters with the number of blanks.
+ * <p>
+ * The dictionary is split into blocks of {@value #BLOCK_SIZE} words, searched across the {@link SolverScheduler} when
+ * one is given. Results are always in dictionary order however the blocks were scheduled.
+ */
+public class ColumnarScanSolver implements WordSolver {
+
+    static final int BLOCK_SIZE = 8192;
+
+    private final Dictionary dictionary;
+    private final LetterCountIndex index;
+    private final SolverScheduler scheduler;
+
+    /**
+     *
+     * @param dictionary : dictionary of known valid words
+     * @param scheduler : pool the blocks are scanned across, null to scan on the calling thread
+     */
+    public ColumnarScanSolver(Dictionary dictionary, SolverScheduler scheduler) {
+        this.dictionary = dictionary;
+        this.index = dictionary.getLetterCounts();
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public boolean findWords(String letters, Set<String> validWords, SearchControl control) {
+        return findWords(letters, 1, letters.length(), validWords, control);
+    }
+
+    @Override
+    public boolean findWords(String letters, int minLength, int maxLength, Set<String> validWords,
+                             SearchControl control) {
+        int centre = letters.charAt(0) - 'A';
+        if (centre < 0 || centre >= LetterCountIndex.ALPHABET_SIZE) {
+            // No indexed word can contain a centre letter outside A-Z
+            return true;
+        }
+        List<List<String>> found = scan(new Query[] { new Query(letters, centre, minLength, maxLength) }, control);
+        validWords.addAll(found.get(0));
+        return !control.isStopped();
+    }
+
+    @Override
+    public boolean findWordsWithoutCentre(String letters, int minLength, int maxLength, Set<String> validWords,
+                                          SearchControl control) {
+        List<List<String>> found = scan(new Query[] { new Query(letters, -1, minLength, maxLength) }, control);
+        validWords.addAll(found.get(0));
+        return !control.isStopped();
+    }
+
+    /**
+     * Find every dictionary word that can be built from the letters, each used at most as often as it is given.
+     * @param letters upper-case letters
+     * @return the words in dictionary order
+     */
+    public List<String> findBuildable(String letters) {
+        return scan(new Query[] { new Query(letters, -1, 1, letters.length()) }, SearchControl.unbounded()).get(0);
+    }
+
+    /**
+     * Solve many wheels in one pass over the dictionary.
+     * @param wheels upper-case wheel letters, the first letter of each is its centre letter
+     * @return for each wheel in turn the words found, in dictionary order
+     */
+    public List<List<String>> findWords(List<String> wheels) {
+        Query[] queries = new Query[wheels.size()];
+        for (int i = 0; i < queries.length; i++) {
+            String letters = wheels.get(i);
+            int centre = letters.isEmpty() ? -1 : letters.charAt(0) - 'A';
+            // A centre letter outside A-Z can be in no word, so nothing may be built, not everything
+            queries[i] = centre >= 0 && centre < LetterCountIndex.ALPHABET_SIZE
+                    ? new Query(letters, centre, 1, letters.length())
+                    : new Query("", -1, 1, 0);
+        }
+        return scan(queries, SearchControl.unbounded());
+    }
+
+    private List<List<String>> scan(Query[] queries, SearchControl control) {
+        BlockScan blockScan = new BlockScan(queries, 0, index.size(), control);
+        return scheduler == null ? blockScan.compute() : scheduler.invoke(blockScan);
+    }
+
+    /**
+     * One set of letters to test the dictionary against.
+     */
+    private static final class Query {
+        private final int[] available;
+        private final int blanks;
+        private final int required;
+        private final int minLength;
+        private final int maxLength;
+
+        private Query(String letters, int required, int minLength, int maxLength) {
+            this.available = LetterCountIndex.countLetters(letters);
+            this.blanks = WordWheelEngine.countBlanks(letters);
+            this.required = required;
+            this.minLength = Math.max(1, minLength);
+            this.maxLength = maxLength;
+        }
+    }
+
+    /**
+     * Range of the dictionary, split in half until it is a single block, scanned for every query.
+     */
+    private final class BlockScan extends RecursiveTask<List<List<String>>> {
+        private final Query[] queries;
+        private final int from;
+        private final int to;
+        private final SearchControl control;
+
+        private BlockScan(Query[] queries, int from, int to, SearchControl control) {
+            this.queries = queries;
+            this.from = from;
+            this.to = to;
+            this.control = control;
+        }
+
+        @Override
+        protected List<List<String>> compute() {
+            if (to - from > BLOCK_SIZE && scheduler != null) {
+                int blocks = (to - from + BLOCK_SIZE - 1) / BLOCK_SIZE;
+                int middle = from + (blocks / 2) * BLOCK_SIZE;
+                BlockScan right = new BlockScan(queries, middle, to, control);
+                right.fork();
+                List<List<String>> words = new BlockScan(queries, from, middle, control).compute();
+                List<List<String>> rightWords = right.join();
+                for (int i = 0; i < words.size(); i++) {
+                    words.get(i).addAll(rightWords.get(i));
+                }
+                return words;
+            }
+            List<List<String>> words = new ArrayList<>(queries.length);
+            for (int i = 0; i < queries.length; i++) {
+                words.add(new ArrayList<>());
+            }
+            byte[] rejected = new byte[Math.min(BLOCK_SIZE, to - from)];
+            for (int blockStart = from; blockStart < to; blockStart += BLOCK_SIZE) {
+                int blockEnd = Math.min(blockStart + BLOCK_SIZE, to);
+                for (int i = 0; i < queries.length; i++) {
+                    if (control.isStopped()) {
+                        return words;
+                    }
+                    Query query = queries[i];
+                    index.scan(query.available, query.blanks, query.required, query.minLength, query.maxLength,
+                            blockStart, blockEnd, rejected);
+                    for (int word = blockStart; word < blockEnd; word++) {
+                        if (rejected[word - blockStart] == 0) {
+                            words.get(i).add(dictionary.getWord(word));
+                        }
+                    }
+                }
+            }
+            return words;
+        }
+    }
+}
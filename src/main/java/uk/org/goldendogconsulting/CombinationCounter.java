@@ -0,0 +1,97 @@
+package uk.org.goldendogconsulting;
+
+import java.util.Arrays;
+
+/**
+ * Counts the distinct arrangements of a wheel's letters directly from how many times each letter occurs, in place of
+ * generating and counting them.
+ */
+public final class CombinationCounter {
+
+    private CombinationCounter() {
+    }
+
+    /**
+     *
+     * @param letters wheel letters
+     * @return how many times each distinct letter occurs, in order of first occurrence
+     */
+    public static int[] multiplicities(String letters) {
+        int[] counts = new int[letters.length()];
+        char[] distinct = new char[letters.length()];
+        int distinctCount = 0;
+        for (int i = 0; i < letters.length(); i++) {
+            char ch = letters.charAt(i);
+            int index = 0;
+            while (index < distinctCount && distinct[index] != ch) {
+                index++;
+            }
+            if (index == distinctCount) {
+                distinct[distinctCount++] = ch;
+            }
+            counts[index]++;
+        }
+        return Arrays.copyOf(counts, distinctCount);
+    }
+
+    /**
+     * Distinct orderings of every letter, n! divided by the factorial of each letter's multiplicity.
+     * @param multiplicities how many times each distinct letter occurs
+     * @return number of distinct permutations
+     */
+    public static long distinctPermutations(int[] multiplicities) {
+        long permutations = 1;
+        int length = 0;
+        for (int multiplicity : multiplicities) {
+            for (int k = 1; k <= multiplicity; k++) {
+                length++;
+                // Running product of binomials C(length, k), each step is exact
+                permutations = permutations * length / k;
+            }
+        }
+        return permutations;
+    }
+
+    /**
+     * Distinct non-empty strings that can be made from the letters, each used at most as often as it occurs. Adding
+     * the letters one at a time, an arrangement of length n extended with k copies of the new letter can place them
+     * in C(n + k, k) ways.
+     * @param multiplicities how many times each distinct letter occurs
+     * @return number of distinct arrangements of every sub-multiset
+     */
+    public static long distinctArrangements(int[] multiplicities) {
+        int total = 0;
+        for (int multiplicity : multiplicities) {
+            total += multiplicity;
+        }
+        long[] byLength = new long[total + 1];
+        byLength[0] = 1;
+        int length = 0;
+        for (int multiplicity : multiplicities) {
+            long[] extended = new long[total + 1];
+            for (int n = 0; n <= length; n++) {
+                if (byLength[n] == 0) {
+                    continue;
+                }
+                for (int k = 0; k <= multiplicity; k++) {
+                    extended[n + k] += byLength[n] * binomial(n + k, k);
+                }
+            }
+            byLength = extended;
+            length += multiplicity;
+        }
+        long arrangements = 0;
+        for (int n = 1; n <= total; n++) {
+            arrangements += byLength[n];
+        }
+        return arrangements;
+    }
+
+    private static long binomial(int n, int k) {
+        long result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,153 @@
+package uk.org.goldendogconsulting;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks which sub-multisets of a wheel's letters the permutation search has covered, in place of holding every
+ * combination found.
+ * <p>
+ * {@link FindCombination} generates every ordering of each run of letters it cuts from a permutation, so once any run
+ * with a given letter multiset has been searched every arrangement of that multiset has been seen. A nine letter
+ * wheel has at most 511 non-empty sub-multisets, so one bit for each, plus a running total of the arrangements they
+ * account for, replaces a set of up to 986,409 Strings.
+ */
+public class CombinationCoverage {
+
+    private final char[] distinctLetters;
+    private final int[] radix;
+    private final long[] arrangements;
+    private final AtomicLongArray covered;
+    private final AtomicLong arrangementsCovered = new AtomicLong();
+    private final long arrangementsToCover;
+    private final int minLength;
+    private final int maxLength;
+
+    /**
+     *
+     * @param letters wheel letters
+     */
+    public CombinationCoverage(String letters) {
+        this(letters, 1, letters.length());
+    }
+
+    /**
+     * Coverage of the sub-multisets of a range of sizes only, runs of other lengths are not to be searched.
+     * @param letters wheel letters
+     * @param minLength smallest sub-multiset to cover
+     * @param maxLength largest sub-multiset to cover
+     */
+    public CombinationCoverage(String letters, int minLength, int maxLength) {
+        this.minLength = Math.max(1, minLength);
+        this.maxLength = Math.min(maxLength, letters.length());
+        int[] multiplicities = CombinationCounter.multiplicities(letters);
+        distinctLetters = new char[multiplicities.length];
+        for (int i = 0, found = 0; i < letters.length() && found < distinctLetters.length; i++) {
+            if (letters.indexOf(letters.charAt(i)) == i) {
+                distinctLetters[found++] = letters.charAt(i);
+            }
+        }
+        // Mixed radix index, digit i is how many copies of distinct letter i the sub-multiset holds
+        radix = new int[multiplicities.length];
+        int size = 1;
+        for (int i = 0; i < multiplicities.length; i++) {
+            radix[i] = size;
+            size *= multiplicities[i] + 1;
+        }
+        arrangements = new long[size];
+        int[] digits = new int[multiplicities.length];
+        long toCover = 0;
+        for (int index = 1; index < size; index++) {
+            int remainder = index;
+            int length = 0;
+            for (int i = multiplicities.length - 1; i >= 0; i--) {
+                digits[i] = remainder / radix[i];
+                remainder %= radix[i];
+                length += digits[i];
+            }
+            arrangements[index] = CombinationCounter.distinctPermutations(digits);
+            if (length >= this.minLength && length <= this.maxLength) {
+                toCover += arrangements[index];
+            }
+        }
+        covered = new AtomicLongArray((size + Long.SIZE - 1) / Long.SIZE);
+        arrangementsToCover = toCover;
+    }
+
+    /**
+     *
+     * @param run letters cut from a permutation of the wheel
+     * @return index of the run's letter multiset
+     */
+    public int index(CharSequence run) {
+        int index = 0;
+        for (int i = 0; i < run.length(); i++) {
+            char ch = run.charAt(i);
+            int letter = 0;
+            while (distinctLetters[letter] != ch) {
+                letter++;
+            }
+            index += radix[letter];
+        }
+        return index;
+    }
+
+    /**
+     *
+     * @param permutation letters of the wheel in some order
+     * @param from start of the run, inclusive
+     * @param to end of the run, exclusive
+     * @return index of the run's letter multiset
+     */
+    public int index(char[] permutation, int from, int to) {
+        int index = 0;
+        for (int i = from; i < to; i++) {
+            int letter = 0;
+            while (distinctLetters[letter] != permutation[i]) {
+                letter++;
+            }
+            index += radix[letter];
+        }
+        return index;
+    }
+
+    /**
+     * Mark a sub-multiset as covered.
+     * @param index index of the sub-multiset
+     * @return true if it had not been covered before, the caller is then responsible for searching it
+     */
+    public boolean cover(int index) {
+        int word = index / Long.SIZE;
+        long bit = 1L << (index % Long.SIZE);
+        while (true) {
+            long current = covered.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+            if (covered.compareAndSet(word, current, current | bit)) {
+                arrangementsCovered.addAndGet(arrangements[index]);
+                return true;
+            }
+        }
+    }
+
+    public long getArrangementsCovered() {
+        return arrangementsCovered.get();
+    }
+
+    public long getArrangementsToCover() {
+        return arrangementsToCover;
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    public boolean isComplete() {
+        return arrangementsCovered.get() >= arrangementsToCover;
+    }
+}
@@ -0,0 +1,303 @@
+package uk.org.goldendogconsulting;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The dictionary of known valid words.
+ * <p>
+ * Words are held as a table, the UTF-8 bytes of every word in sorted order end to end with an offset buffer giving
+ * where each word starts, alongside the {@link DictionaryTrie} the solvers search. Both may be on the heap, built
+ * from the text resource, or memory-mapped from a {@link DictionarySnapshot}, in which case loading costs next to
+ * nothing and the words are not held as {@code String} objects at all. A {@code Set<String>} of the words, a
+ * {@link PackedWordSet} of them, a {@link LetterCountIndex}, a {@link PackedAnagramIndex} or a {@link PatternIndex}
+ * over them is only built if a solver or query asks for one.
+ */
+public class Dictionary {
+
+    /**
+     * System property giving the location of the dictionary snapshot, {@value #DEFAULT_SNAPSHOT} if not set.
+     */
+    public static final String SNAPSHOT_PROPERTY = "wordwheel.snapshot";
+    public static final String DEFAULT_SNAPSHOT = "dictionary.snapshot";
+    public static final String DICTIONARY_RESOURCE = "/dictionary.txt";
+
+    private final ByteBuffer wordBytes;
+    private final IntBuffer wordOffsets;
+    private final DictionaryTrie trie;
+    private volatile Set<String> words;
+    private volatile PackedWordSet packedWords;
+    private volatile LetterCountIndex letterCounts;
+    private volatile PackedAnagramIndex anagramIndex;
+    private volatile PatternIndex patternIndex;
+    private volatile WordPool wordPool;
+
+    // Rough heap cost of each String in the word set, beyond its letters
+    private static final int WORD_SET_ENTRY_BYTES = 80;
+
+    private static final Logger LOG = LogManager.getLogger(Dictionary.class);
+
+    Dictionary(ByteBuffer wordBytes, IntBuffer wordOffsets, DictionaryTrie trie) {
+        this.wordBytes = wordBytes;
+        this.wordOffsets = wordOffsets;
+        this.trie = trie;
+    }
+
+    /**
+     * Load the dictionary from the snapshot named by {@link #SNAPSHOT_PROPERTY}, falling back to the text resource
+     * when there is no snapshot or it is not valid.
+     * @return the dictionary
+     */
+    public static Dictionary load() {
+        SolverMetrics metrics = SolverMetrics.getDefault();
+        long startNanos = metrics.start();
+        Path snapshot = Paths.get(System.getProperty(SNAPSHOT_PROPERTY, DEFAULT_SNAPSHOT));
+        Dictionary dictionary = DictionarySnapshot.load(snapshot);
+        if (dictionary == null) {
+            dictionary = fromText(Objects.requireNonNull(Dictionary.class.getResourceAsStream(DICTIONARY_RESOURCE)));
+        }
+        metrics.record(SolverMetrics.Phase.DICTIONARY_LOAD, startNanos);
+        return dictionary;
+    }
+
+    /**
+     * The dictionary shared by every engine that is not given one of its own, loaded on first use.
+     * @return the default dictionary
+     */
+    public static Dictionary getDefault() {
+        return DefaultHolder.DEFAULT;
+    }
+
+    private static final class DefaultHolder {
+        private static final Dictionary DEFAULT = load();
+    }
+
+    /**
+     * Parse a dictionary held as text, one word per line, lines starting "--" are comments.
+     * @param text stream of the dictionary text, closed once read
+     * @return the dictionary
+     */
+    public static Dictionary fromText(InputStream text) {
+        Set<String> textWords = new HashSet<>();
+        try (Scanner scanner = new Scanner(text, StandardCharsets.UTF_8.name())) {
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine();
+                if (!line.startsWith("--")) {
+                    textWords.add(line);
+                }
+            }
+        }
+        return fromWords(textWords);
+    }
+
+    /**
+     *
+     * @param sourceWords words of the dictionary
+     * @return the dictionary
+     */
+    public static Dictionary fromWords(Collection<String> sourceWords) {
+        List<byte[]> encodedWords = new ArrayList<>(sourceWords.size());
+        int totalLength = 0;
+        for (String word : new TreeSet<>(sourceWords)) {
+            byte[] encoded = word.getBytes(StandardCharsets.UTF_8);
+            encodedWords.add(encoded);
+            totalLength += encoded.length;
+        }
+        ByteBuffer wordBytes = ByteBuffer.allocate(totalLength);
+        IntBuffer wordOffsets = IntBuffer.allocate(encodedWords.size() + 1);
+        for (byte[] encoded : encodedWords) {
+            wordOffsets.put(wordBytes.position());
+            wordBytes.put(encoded);
+        }
+        wordOffsets.put(wordBytes.position());
+        wordBytes.flip();
+        wordOffsets.flip();
+        return new Dictionary(wordBytes, wordOffsets, new DictionaryTrie(sourceWords));
+    }
+
+    /**
+     *
+     * @return number of words in the dictionary
+     */
+    public int size() {
+        return wordOffsets.limit() - 1;
+    }
+
+    /**
+     *
+     * @param index position of the word in sorted order
+     * @return the word
+     */
+    public String getWord(int index) {
+        int start = wordOffsets.get(index);
+        byte[] encoded = new byte[wordOffsets.get(index + 1) - start];
+        wordBytes.duplicate().position(start).get(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    public DictionaryTrie getTrie() {
+        return trie;
+    }
+
+    /**
+     * The words of the dictionary as a set of Strings, built on first use.
+     * @return unmodifiable set of the words
+     */
+    public Set<String> getWords() {
+        Set<String> result = words;
+        if (result == null) {
+            synchronized (this) {
+                result = words;
+                if (result == null) {
+                    Set<String> wordSet = new HashSet<>(size() * 2);
+                    WordPool pool = wordPool;
+                    for (int i = 0; i < size(); i++) {
+                        wordSet.add(pool == null ? getWord(i) : pool.share(getWord(i)));
+                    }
+                    result = Collections.unmodifiableSet(wordSet);
+                    words = result;
+                    LOG.debug("Built set of " +wordSet.size() +" dictionary words");
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The words of the dictionary packed into longs, built on first use from the word table without creating Strings.
+     * @return packed words, leaving out any longer than {@link PackedWordSet#MAX_LENGTH} letters
+     */
+    public PackedWordSet getPackedWords() {
+        PackedWordSet result = packedWords;
+        if (result == null) {
+            synchronized (this) {
+                result = packedWords;
+                if (result == null) {
+                    result = PackedWordSet.of(this);
+                    packedWords = result;
+                    LOG.debug("Packed " +result.size() +" of " +size() +" dictionary words");
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Letter count columns of the words, built on first use from the word table.
+     * @return columnar index of the words, in the same order as the dictionary
+     */
+    public LetterCountIndex getLetterCounts() {
+        LetterCountIndex result = letterCounts;
+        if (result == null) {
+            synchronized (this) {
+                result = letterCounts;
+                if (result == null) {
+                    result = LetterCountIndex.of(this);
+                    letterCounts = result;
+                    LOG.debug("Built letter count columns of " +size() +" dictionary words");
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Index of the words by their letters in alphabetical order, built on first use from the word table.
+     * @return anagram index of the words, leaving out any longer than {@link PackedWordSet#MAX_LENGTH} letters
+     */
+    PackedAnagramIndex getAnagramIndex() {
+        PackedAnagramIndex result = anagramIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = anagramIndex;
+                if (result == null) {
+                    result = PackedAnagramIndex.of(this);
+                    anagramIndex = result;
+                    LOG.debug("Built anagram index of " +size() +" dictionary words");
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Posting lists of the words by the letter at each position, built on first use from the word table.
+     * @return pattern index of the words, partitioned by length
+     */
+    PatternIndex getPatternIndex() {
+        PatternIndex result = patternIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = patternIndex;
+                if (result == null) {
+                    result = PatternIndex.of(this);
+                    patternIndex = result;
+                    LOG.debug("Built pattern index of " +size() +" dictionary words, " +result.getResidentBytes()
+                            +" bytes");
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Have the word set, if it is built, hold the same String for a word as every other dictionary sharing the pool.
+     * @param pool words shared between dictionaries
+     */
+    void shareWords(WordPool pool) {
+        wordPool = pool;
+    }
+
+    /**
+     * Estimate of the memory the dictionary holds, counting the word table and trie, whether on the heap or mapped
+     * from a snapshot, and each index that has been built. Words shared with another dictionary are counted by both.
+     * @return estimated bytes
+     */
+    public long getResidentBytes() {
+        long bytes = wordBytes.capacity() + (long) wordOffsets.capacity() * Integer.BYTES + trie.getResidentBytes();
+        if (words != null) {
+            bytes += (long) size() * WORD_SET_ENTRY_BYTES + wordBytes.capacity();
+        }
+        PackedWordSet packed = packedWords;
+        if (packed != null) {
+            bytes += packed.getResidentBytes();
+        }
+        LetterCountIndex counts = letterCounts;
+        if (counts != null) {
+            bytes += counts.getResidentBytes();
+        }
+        PackedAnagramIndex anagrams = anagramIndex;
+        if (anagrams != null) {
+            bytes += anagrams.getResidentBytes();
+        }
+        PatternIndex patterns = patternIndex;
+        if (patterns != null) {
+            bytes += patterns.getResidentBytes();
+        }
+        return bytes;
+    }
+
+    ByteBuffer getWordBytes() {
+        return wordBytes.duplicate();
+    }
+
+    IntBuffer getWordOffsets() {
+        return wordOffsets.duplicate();
+    }
+}
@@ -0,0 +1,325 @@
+package uk.org.goldendogconsulting;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Named dictionaries, each read from a text file, a {@link DictionarySnapshot} file or a classpath resource the first
+ * time it is asked for.
+ * <p>
+ * A dictionary read from a file can be reloaded when the file changes. The new dictionary is built to one side and
+ * swapped in at once, so a solve already running keeps the dictionary it started with and is never held up, and the
+ * next caller gets the new one. The registry keeps the estimated memory of the dictionaries loaded within a budget:
+ * once over it, the dictionaries used least recently are dropped, to be read again if they are asked for. Word sets
+ * built by the dictionaries of one registry share a String for each word they have in common.
+ */
+public class DictionaryRegistry {
+
+    /**
+     * Name the bundled dictionary is registered under.
+     */
+    public static final String DEFAULT_NAME = "default";
+
+    /**
+     * System property giving the memory budget in bytes of a registry made by {@link #fromProperties()}.
+     */
+    public static final String BUDGET_PROPERTY = "wordwheel.dictionaryBudget";
+    public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+    private static final long RELOAD_PERIOD_SECS = 10;
+
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    private final long memoryBudget;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final WordPool wordPool = new WordPool();
+    private final AtomicLong useClock = new AtomicLong();
+    private ScheduledExecutorService reloader;
+
+    private static final Logger LOG = LogManager.getLogger(DictionaryRegistry.class);
+
+    /**
+     * Registry holding the bundled dictionary as {@value #DEFAULT_NAME}.
+     * @param memoryBudget : most estimated bytes the loaded dictionaries may hold before the least recently used are
+     *                     dropped
+     */
+    public DictionaryRegistry(long memoryBudget) {
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("memory budget " +memoryBudget +" must be positive");
+        }
+        this.memoryBudget = memoryBudget;
+        registerResource(DEFAULT_NAME, Dictionary.DICTIONARY_RESOURCE);
+    }
+
+    /**
+     * Registry with the budget given by {@value #BUDGET_PROPERTY}, or {@value #DEFAULT_MEMORY_BUDGET} bytes, that
+     * checks its dictionary files for changes every {@value #RELOAD_PERIOD_SECS} seconds.
+     * @return the registry
+     */
+    public static DictionaryRegistry fromProperties() {
+        DictionaryRegistry registry = new DictionaryRegistry(Long.getLong(BUDGET_PROPERTY, DEFAULT_MEMORY_BUDGET));
+        registry.startReloading(RELOAD_PERIOD_SECS, TimeUnit.SECONDS);
+        return registry;
+    }
+
+    /**
+     * Register a dictionary file, read as a snapshot if its name ends ".snapshot" and as text otherwise. Replaces any
+     * dictionary already registered under the name.
+     * @param name name to ask for the dictionary by
+     * @param file path of the dictionary
+     */
+    public void registerFile(String name, Path file) {
+        entries.put(name, new Entry(name, file.toAbsolutePath(), null));
+    }
+
+    /**
+     * Register a text dictionary on the classpath, replacing any dictionary already registered under the name.
+     * @param name name to ask for the dictionary by
+     * @param resource classpath resource of the dictionary text
+     */
+    public void registerResource(String name, String resource) {
+        entries.put(name, new Entry(name, null, resource));
+    }
+
+    /**
+     *
+     * @return names of every dictionary registered, in alphabetical order
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(new TreeSet<>(entries.keySet()));
+    }
+
+    /**
+     * The dictionary, read on first use or if it has been dropped.
+     * @param name name the dictionary was registered under
+     * @return the dictionary
+     * @throws IOException if the dictionary cannot be read
+     * @throws IllegalArgumentException if no dictionary is registered under the name
+     */
+    public Dictionary get(String name) throws IOException {
+        Entry entry = entry(name);
+        Dictionary dictionary = entry.dictionary;
+        if (dictionary == null) {
+            synchronized (entry) {
+                dictionary = entry.dictionary;
+                if (dictionary == null) {
+                    dictionary = entry.read();
+                    entry.dictionary = dictionary;
+                }
+            }
+            entry.lastUsed = useClock.incrementAndGet();
+            keepWithinBudget(entry);
+        } else {
+            entry.lastUsed = useClock.incrementAndGet();
+        }
+        return dictionary;
+    }
+
+    private Entry entry(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("No dictionary registered as " +name);
+        }
+        return entry;
+    }
+
+    /**
+     * Read the dictionary again if its file has changed since it was read, callers already holding the old
+     * dictionary keep it.
+     * @param name name the dictionary was registered under
+     * @return true if a new dictionary was swapped in
+     * @throws IOException if the changed file cannot be read, the old dictionary is kept
+     */
+    public boolean reload(String name) throws IOException {
+        Entry entry = entry(name);
+        if (entry.file == null || entry.dictionary == null || !entry.isChanged()) {
+            return false;
+        }
+        // Built outside the lock readers take, so get() keeps returning the old dictionary until the swap
+        Dictionary reloaded = entry.read();
+        synchronized (entry) {
+            entry.dictionary = reloaded;
+        }
+        LOG.info("Reloaded dictionary " +name +" from " +entry.file);
+        keepWithinBudget(entry);
+        return true;
+    }
+
+    /**
+     * Reload every loaded dictionary whose file has changed, a file that cannot be read is logged and skipped.
+     * @return names of the dictionaries reloaded
+     */
+    public List<String> reloadChanged() {
+        List<String> reloaded = new ArrayList<>();
+        for (String name : getNames()) {
+            try {
+                if (reload(name)) {
+                    reloaded.add(name);
+                }
+            } catch (IOException ioException) {
+                LOG.warn("Unable to reload dictionary " +name +" : " +ioException.getMessage());
+            }
+        }
+        return reloaded;
+    }
+
+    /**
+     * Check for changed dictionary files in the background.
+     * @param period time between checks
+     * @param unit unit of the period
+     */
+    public synchronized void startReloading(long period, TimeUnit unit) {
+        if (reloader != null) {
+            return;
+        }
+        reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wordwheel-dictionary-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloader.scheduleWithFixedDelay(this::reloadChanged, period, period, unit);
+    }
+
+    public synchronized void stopReloading() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+            reloader = null;
+        }
+    }
+
+    /**
+     *
+     * @param name name the dictionary was registered under
+     * @return true if the dictionary is in memory
+     */
+    public boolean isLoaded(String name) {
+        return entry(name).dictionary != null;
+    }
+
+    /**
+     *
+     * @param name name the dictionary was registered under
+     * @return estimated bytes the dictionary holds, 0 if it is not loaded
+     */
+    public long getResidentBytes(String name) {
+        Dictionary dictionary = entry(name).dictionary;
+        return dictionary == null ? 0 : dictionary.getResidentBytes();
+    }
+
+    /**
+     *
+     * @return estimated bytes held by every dictionary loaded
+     */
+    public long getResidentBytes() {
+        long bytes = 0;
+        for (Entry entry : entries.values()) {
+            Dictionary dictionary = entry.dictionary;
+            if (dictionary != null) {
+                bytes += dictionary.getResidentBytes();
+            }
+        }
+        return bytes;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Drop the least recently used dictionaries until the rest fit the budget, the one just used is always kept.
+     */
+    private synchronized void keepWithinBudget(Entry keep) {
+        long bytes = getResidentBytes();
+        while (bytes > memoryBudget) {
+            Entry coldest = null;
+            for (Entry entry : entries.values()) {
+                if (entry != keep && entry.dictionary != null
+                        && (coldest == null || entry.lastUsed < coldest.lastUsed)) {
+                    coldest = entry;
+                }
+            }
+            if (coldest == null) {
+                return;
+            }
+            long dropped;
+            synchronized (coldest) {
+                Dictionary dictionary = coldest.dictionary;
+                dropped = dictionary == null ? 0 : dictionary.getResidentBytes();
+                coldest.dictionary = null;
+            }
+            bytes -= dropped;
+            LOG.info("Dropped dictionary " +coldest.name +" of " +dropped +" bytes to keep within "
+                    +memoryBudget +" bytes");
+        }
+    }
+
+    /**
+     * A registered dictionary, where it is read from and, while loaded, the dictionary itself.
+     */
+    private final class Entry {
+        private final String name;
+        private final Path file;
+        private final String resource;
+        private volatile Dictionary dictionary;
+        private volatile long lastUsed;
+        private long readModified;
+        private long readSize;
+
+        private Entry(String name, Path file, String resource) {
+            this.name = name;
+            this.file = file;
+            this.resource = resource;
+        }
+
+        private Dictionary read() throws IOException {
+            Dictionary read;
+            if (file == null) {
+                InputStream text = DictionaryRegistry.class.getResourceAsStream(resource);
+                if (text == null) {
+                    throw new IOException("No dictionary resource " +resource);
+                }
+                read = Dictionary.fromText(text);
+            } else {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (file.getFileName().toString().endsWith(SNAPSHOT_EXTENSION)) {
+                    read = DictionarySnapshot.load(file);
+                    if (read == null) {
+                        throw new IOException("Dictionary snapshot " +file +" is not valid");
+                    }
+                } else {
+                    try (InputStream text = Files.newInputStream(file)) {
+                        read = Dictionary.fromText(text);
+                    }
+                }
+                synchronized (this) {
+                    readModified = attributes.lastModifiedTime().toMillis();
+                    readSize = attributes.size();
+                }
+            }
+            read.shareWords(wordPool);
+            LOG.debug("Read dictionary " +name +" of " +read.size() +" words");
+            return read;
+        }
+
+        private synchronized boolean isChanged() throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.lastModifiedTime().toMillis() != readModified || attributes.size() != readSize;
+        }
+    }
+}
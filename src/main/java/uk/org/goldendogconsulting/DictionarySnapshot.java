@@ -0,0 +1,182 @@
+package uk.org.goldendogconsulting;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Reads and writes the binary snapshot of a {@link Dictionary}, and, run from the command line, builds the snapshot
+ * offline from the text dictionary.
+ * <p>
+ * The snapshot is a fixed header followed by the word offsets, the trie node and edge buffers, and finally the word
+ * bytes, so every int section is four byte aligned and can be used in place once the file is memory-mapped. The
+ * header holds a magic number, the format version, a CRC32 of everything after the header and the length of each
+ * section.
+ */
+public class DictionarySnapshot {
+
+    private static final int MAGIC = 0x57574453; // "WWDS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private static final Logger LOG = LogManager.getLogger(DictionarySnapshot.class);
+
+    private DictionarySnapshot() {
+    }
+
+    /**
+     * Write a snapshot of the dictionary, the file is replaced atomically so a reader never maps a partial snapshot.
+     * @param dictionary dictionary to write
+     * @param snapshot path of the snapshot file
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(Dictionary dictionary, Path snapshot) throws IOException {
+        IntBuffer wordOffsets = dictionary.getWordOffsets();
+        IntBuffer nodes = dictionary.getTrie().getNodes();
+        IntBuffer edges = dictionary.getTrie().getEdges();
+        ByteBuffer wordBytes = dictionary.getWordBytes();
+        int wordBytesLength = wordBytes.remaining();
+
+        int bodySize = (wordOffsets.remaining() + nodes.remaining() + edges.remaining()) * Integer.BYTES
+                + wordBytesLength;
+        ByteBuffer body = ByteBuffer.allocate(bodySize);
+        body.asIntBuffer().put(wordOffsets).put(nodes).put(edges);
+        body.position(bodySize - wordBytesLength);
+        body.put(wordBytes);
+        body.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(crc.getValue())
+                .putInt(dictionary.size())
+                .putInt(dictionary.getTrie().getNodeCount())
+                .putInt(dictionary.getTrie().getEdgeCount())
+                .putInt(wordBytesLength);
+        header.flip();
+
+        Path absolute = snapshot.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Memory-map a snapshot.
+     * @param snapshot path of the snapshot file
+     * @return the dictionary, null if there is no snapshot or it is not valid
+     */
+    public static Dictionary load(Path snapshot) {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                LOG.warn("Dictionary snapshot " +snapshot +" has invalid size " +size +", ignoring it");
+                return null;
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return read(mapped, snapshot);
+        } catch (NoSuchFileException noSuchFileException) {
+            LOG.debug("No dictionary snapshot at " +snapshot);
+            return null;
+        } catch (IOException ioException) {
+            LOG.warn("Unable to read dictionary snapshot " +snapshot +" : " +ioException.getMessage());
+            return null;
+        }
+    }
+
+    private static Dictionary read(ByteBuffer mapped, Path snapshot) {
+        int magic = mapped.getInt(0);
+        int version = mapped.getInt(4);
+        if (magic != MAGIC || version != VERSION) {
+            LOG.warn("Dictionary snapshot " +snapshot +" is not a version " +VERSION +" snapshot, ignoring it");
+            return null;
+        }
+        long checksum = mapped.getLong(8);
+        int wordCount = mapped.getInt(16);
+        int nodeCount = mapped.getInt(20);
+        int edgeCount = mapped.getInt(24);
+        int wordBytesLength = mapped.getInt(28);
+
+        long expectedSize = HEADER_SIZE + ((long) (wordCount + 1) + (nodeCount + 1) + edgeCount) * Integer.BYTES
+                + wordBytesLength;
+        if (wordCount < 0 || nodeCount < 1 || edgeCount < 0 || wordBytesLength < 0
+                || expectedSize != mapped.capacity()) {
+            LOG.warn("Dictionary snapshot " +snapshot +" has inconsistent section sizes, ignoring it");
+            return null;
+        }
+        ByteBuffer body = slice(mapped, HEADER_SIZE, mapped.capacity() - HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if (crc.getValue() != checksum) {
+            LOG.warn("Dictionary snapshot " +snapshot +" checksum does not match, ignoring it");
+            return null;
+        }
+
+        int offset = HEADER_SIZE;
+        IntBuffer wordOffsets = slice(mapped, offset, (wordCount + 1) * Integer.BYTES).asIntBuffer();
+        offset += (wordCount + 1) * Integer.BYTES;
+        IntBuffer nodes = slice(mapped, offset, (nodeCount + 1) * Integer.BYTES).asIntBuffer();
+        offset += (nodeCount + 1) * Integer.BYTES;
+        IntBuffer edges = slice(mapped, offset, edgeCount * Integer.BYTES).asIntBuffer();
+        offset += edgeCount * Integer.BYTES;
+        ByteBuffer wordBytes = slice(mapped, offset, wordBytesLength);
+
+        LOG.debug("Mapped dictionary snapshot " +snapshot +" of " +wordCount +" words");
+        return new Dictionary(wordBytes, wordOffsets, new DictionaryTrie(nodes, edges));
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset).limit(offset + length);
+        return duplicate.slice();
+    }
+
+    /**
+     * Build a snapshot from the text dictionary.
+     * @param args output path of the snapshot, optionally followed by the path of a text dictionary to use in place
+     *             of the bundled one
+     * @throws IOException if the dictionary cannot be read or the snapshot cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get(args.length > 0 ? args[0] : Dictionary.DEFAULT_SNAPSHOT);
+        Dictionary dictionary;
+        if (args.length > 1) {
+            try (InputStream text = Files.newInputStream(Paths.get(args[1]))) {
+                dictionary = Dictionary.fromText(text);
+            }
+        } else {
+            dictionary = Dictionary.fromText(Objects.requireNonNull(
+                    DictionarySnapshot.class.getResourceAsStream(Dictionary.DICTIONARY_RESOURCE)));
+        }
+        write(dictionary, output);
+        System.out.println("Wrote " +dictionary.size() +" words, " +dictionary.getTrie().getNodeCount()
+                +" trie nodes to " +output.toAbsolutePath());
+    }
+}
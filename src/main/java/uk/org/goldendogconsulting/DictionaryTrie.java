@@ -0,0 +1,322 @@
+package uk.org.goldendogconsulting;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary held as a minimised directed acyclic word graph (DAWG), i.e. a trie with identical suffix branches
+ * merged.
+ * <p>
+ * The graph is built from the sorted word list in a single pass (Daciuk's incremental algorithm) and then flattened
+ * into two int buffers so that it can equally be held on the heap or memory-mapped from a {@link DictionarySnapshot}.
+ * Each entry of the node buffer is the index of the node's first edge shifted left one bit, with the low bit set if a
+ * word ends at the node; the edges leaving node {@code n} run up to the first edge of node {@code n + 1}. Each entry
+ * of the edge buffer is the node the edge leads to shifted left five bits, with the letter (0 for A up to 25 for Z)
+ * in the low five bits. Node 0 is the root. Only words made up entirely of the letters A-Z are held.
+ */
+public class DictionaryTrie {
+
+    public static final int ROOT = 0;
+
+    private static final int TERMINAL_FLAG = 1;
+    private static final int LETTER_BITS = 5;
+    private static final int LETTER_MASK = (1 << LETTER_BITS) - 1;
+
+    private final IntBuffer nodes;
+    private final IntBuffer edges;
+    private volatile byte[] heights;
+
+    /**
+     *
+     * @param words : dictionary of known valid words, words containing anything other than A-Z are ignored
+     */
+    public DictionaryTrie(Collection<String> words) {
+        List<String> sortedWords = new ArrayList<>(words.size());
+        for (String word : words) {
+            if (isUpperCaseAlpha(word)) {
+                sortedWords.add(word);
+            }
+        }
+        sortedWords.sort(null);
+
+        Builder builder = new Builder();
+        for (String word : sortedWords) {
+            builder.add(word);
+        }
+        BuildNode root = builder.finish();
+
+        // Number the nodes breadth first and lay the edges out contiguously per node
+        Map<BuildNode, Integer> nodeIds = new HashMap<>();
+        List<BuildNode> buildNodes = new ArrayList<>();
+        nodeIds.put(root, 0);
+        buildNodes.add(root);
+        int edgeCount = 0;
+        for (int i = 0; i < buildNodes.size(); i++) {
+            BuildNode node = buildNodes.get(i);
+            edgeCount += node.childCount;
+            for (int c = 0; c < node.childCount; c++) {
+                BuildNode child = node.children[c];
+                if (!nodeIds.containsKey(child)) {
+                    nodeIds.put(child, buildNodes.size());
+                    buildNodes.add(child);
+                }
+            }
+        }
+        int[] nodeArray = new int[buildNodes.size() + 1];
+        int[] edgeArray = new int[edgeCount];
+        int edge = 0;
+        for (int i = 0; i < buildNodes.size(); i++) {
+            BuildNode node = buildNodes.get(i);
+            nodeArray[i] = (edge << 1) | (node.terminal ? TERMINAL_FLAG : 0);
+            for (int c = 0; c < node.childCount; c++) {
+                edgeArray[edge] = (nodeIds.get(node.children[c]) << LETTER_BITS) | (node.labels[c] - 'A');
+                edge++;
+            }
+        }
+        nodeArray[buildNodes.size()] = edge << 1;
+        nodes = IntBuffer.wrap(nodeArray);
+        edges = IntBuffer.wrap(edgeArray);
+    }
+
+    /**
+     * Trie over buffers already laid out as described above, e.g. mapped from a snapshot file.
+     * @param nodes node buffer, one entry per node plus a closing entry
+     * @param edges edge buffer
+     */
+    DictionaryTrie(IntBuffer nodes, IntBuffer edges) {
+        this.nodes = nodes;
+        this.edges = edges;
+    }
+
+    static boolean isUpperCaseAlpha(String word) {
+        if (word == null || word.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char ch = word.charAt(i);
+            if (ch < 'A' || ch > 'Z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @param word String to look for
+     * @return true if the word is held in the dictionary
+     */
+    public boolean contains(String word) {
+        int node = ROOT;
+        for (int i = 0; i < word.length() && node >= 0; i++) {
+            node = child(node, word.charAt(i) - 'A');
+        }
+        return node >= 0 && isTerminal(node);
+    }
+
+    /**
+     *
+     * @param node node to follow an edge from
+     * @param letter letter of the edge, 0 for A up to 25 for Z
+     * @return the node the edge leads to, -1 if the node has no edge with that letter
+     */
+    public int child(int node, int letter) {
+        for (int edge = firstEdge(node); edge < endEdge(node); edge++) {
+            if (edgeLetter(edge) == letter) {
+                return edgeTarget(edge);
+            }
+        }
+        return -1;
+    }
+
+    public int firstEdge(int node) {
+        return nodes.get(node) >>> 1;
+    }
+
+    public int endEdge(int node) {
+        return nodes.get(node + 1) >>> 1;
+    }
+
+    public int edgeLetter(int edge) {
+        return edges.get(edge) & LETTER_MASK;
+    }
+
+    public int edgeTarget(int edge) {
+        return edges.get(edge) >>> LETTER_BITS;
+    }
+
+    public boolean isTerminal(int node) {
+        return (nodes.get(node) & TERMINAL_FLAG) != 0;
+    }
+
+    /**
+     * Length of the longest word suffix below a node, worked out for every node on first use. Searches that only
+     * want words of some minimum length use it to leave out branches that cannot reach that length.
+     * @param node node to measure from
+     * @return number of letters on the longest path from the node to a node where a word ends, 0 if none
+     */
+    public int height(int node) {
+        byte[] result = heights;
+        if (result == null) {
+            synchronized (this) {
+                result = heights;
+                if (result == null) {
+                    result = new byte[getNodeCount()];
+                    Arrays.fill(result, (byte) -1);
+                    for (int i = 0; i < result.length; i++) {
+                        measure(i, result);
+                    }
+                    heights = result;
+                }
+            }
+        }
+        return result[node];
+    }
+
+    // Recursion is only as deep as the longest word, the graph is acyclic
+    private int measure(int node, byte[] measured) {
+        if (measured[node] >= 0) {
+            return measured[node];
+        }
+        int height = 0;
+        for (int edge = firstEdge(node); edge < endEdge(node); edge++) {
+            height = Math.max(height, 1 + measure(edgeTarget(edge), measured));
+        }
+        measured[node] = (byte) height;
+        return height;
+    }
+
+    public int getNodeCount() {
+        return nodes.limit() - 1;
+    }
+
+    public int getEdgeCount() {
+        return edges.limit();
+    }
+
+    /**
+     *
+     * @return bytes held by the nodes, edges and, once measured, the node heights
+     */
+    long getResidentBytes() {
+        byte[] measured = heights;
+        return ((long) nodes.capacity() + edges.capacity()) * Integer.BYTES
+                + (measured == null ? 0 : measured.length);
+    }
+
+    IntBuffer getNodes() {
+        return nodes.duplicate();
+    }
+
+    IntBuffer getEdges() {
+        return edges.duplicate();
+    }
+
+    /**
+     * Node used only while the graph is being built. Once a node has been registered it is never changed, so
+     * equality can be structural: same terminal flag, same labels and the very same (already registered) children.
+     */
+    private static final class BuildNode {
+        private boolean terminal;
+        private char[] labels = new char[2];
+        private BuildNode[] children = new BuildNode[2];
+        private int childCount;
+
+        private void addChild(char label, BuildNode child) {
+            if (childCount == labels.length) {
+                labels = Arrays.copyOf(labels, childCount * 2);
+                children = Arrays.copyOf(children, childCount * 2);
+            }
+            labels[childCount] = label;
+            children[childCount] = child;
+            childCount++;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BuildNode)) {
+                return false;
+            }
+            BuildNode other = (BuildNode) o;
+            if (terminal != other.terminal || childCount != other.childCount) {
+                return false;
+            }
+            for (int i = 0; i < childCount; i++) {
+                if (labels[i] != other.labels[i] || children[i] != other.children[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = terminal ? 1 : 0;
+            for (int i = 0; i < childCount; i++) {
+                hash = 31 * hash + labels[i];
+                hash = 31 * hash + System.identityHashCode(children[i]);
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * Incremental construction of a minimal acyclic automaton from words added in sorted order.
+     */
+    private static final class Builder {
+        private final BuildNode root = new BuildNode();
+        private final Map<BuildNode, BuildNode> register = new HashMap<>();
+        private final List<BuildNode> uncheckedParents = new ArrayList<>();
+        private String previousWord = "";
+
+        private void add(String word) {
+            int commonPrefix = 0;
+            int limit = Math.min(word.length(), previousWord.length());
+            while (commonPrefix < limit && word.charAt(commonPrefix) == previousWord.charAt(commonPrefix)) {
+                commonPrefix++;
+            }
+            minimise(commonPrefix);
+
+            BuildNode node = uncheckedParents.isEmpty() ? root : lastChild(uncheckedParents.get(uncheckedParents.size() - 1));
+            for (int i = commonPrefix; i < word.length(); i++) {
+                BuildNode child = new BuildNode();
+                node.addChild(word.charAt(i), child);
+                uncheckedParents.add(node);
+                node = child;
+            }
+            node.terminal = true;
+            previousWord = word;
+        }
+
+        private BuildNode finish() {
+            minimise(0);
+            return root;
+        }
+
+        private static BuildNode lastChild(BuildNode node) {
+            return node.children[node.childCount - 1];
+        }
+
+        // Replace each unchecked node below the given depth with an equivalent registered node, if there is one
+        private void minimise(int downTo) {
+            for (int i = uncheckedParents.size() - 1; i >= downTo; i--) {
+                BuildNode parent = uncheckedParents.remove(i);
+                BuildNode child = lastChild(parent);
+                BuildNode registered = register.get(child);
+                if (registered != null) {
+                    parent.children[parent.childCount - 1] = registered;
+                } else {
+                    register.put(child, child);
+                }
+            }
+        }
+    }
+}
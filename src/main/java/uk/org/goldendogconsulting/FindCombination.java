@@ -1,11 +1,22 @@
 package uk.org.goldendogconsulting;
 
+import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Object that allows a String to be parsed for all combinations of that String.
  * This object allows this parsing to be done within a set of threads.
+ * <p>
+ * Each run of the permutation is copied into a scratch buffer and its arrangements are generated by swapping letters
+ * in place, building up the candidate as a {@link PackedWordSet} code a letter at a time, so probing the dictionary
+ * allocates nothing. A String is only made for a word that is found, or for each combination if they are collected.
+ * <p>
+ * Words and combinations are collected by each search into sets of packed words of its own, so the many found more
+ * than once cost a probe of a private table rather than an insert into a set shared with every other search. They
+ * are added to the shared sets by {@link #merge}, once each, when the search finishes, or sooner if a search holds
+ * {@value #MERGE_THRESHOLD} combinations.
  *
  * @author David Scholefield
  *
@@ -14,29 +25,141 @@ public class FindCombination implements Callable<Boolean> {
 
     private final Set<String> combinationsSet;
     private final Set<String> validWords;
-    private final int expectedCombinationSize;
-    private final String centreLetter;
-    private final Set<String> dictionary;
+    private final long expectedCombinationSize;
+    private final char centreLetter;
+    private final boolean checkWords;
+    private final PackedWordSet dictionary;
+    private final AtomicLong combinationsFound;
+    private final CombinationCoverage coverage;
+    private final SearchControl control;
 
-    private final String permutation;
+    private final PackedCodeSet foundWords = new PackedCodeSet();
+    private final PackedCodeSet foundCombinations;
+    private final Set<String> unpackedCombinations;
+
+    /**
+     * Combinations a search holds before they are merged, so a long search keeps a bounded table per thread.
+     */
+    static final int MERGE_THRESHOLD = 1 << 16;
+
+    private final char[] permutation;
+    private char[] run;
+    private long dictionaryProbes;
+    private long duplicateCombinations;
 
     /**
      *
      * @param permutation : String to be permutated
-     * @param combinationsSet : combinations of String found, this is a thread safe collection
-     * @param validWords : valid words found, this is a thread safe collection
+     * @param combinationsSet : combinations of String found, this is a thread safe collection added to when the search
+     *                        finishes
+     * @param validWords : valid words found, this is a thread safe collection added to when the search finishes
      * @param expectedCombinationSize : for every string, there is a finite number of combinations available. This that limit
      * @param centreLetter : the centre letter of the word wheel all combinations MUST contain this letter
      * @param dictionary : dictionary of known valid words
+     * @param combinationsFound : count of combinations added to the combinations set, shared by every task of the
+     *                          search so that completion can be checked without sizing the set
+     * @param control : cancellation signal shared by every task of the search
      */
     public FindCombination(String permutation, Set<String>combinationsSet, Set<String>validWords,
-                           int expectedCombinationSize, String centreLetter, Set<String>dictionary) {
+                           long expectedCombinationSize, String centreLetter, PackedWordSet dictionary,
+                           AtomicLong combinationsFound, SearchControl control) {
+        this(permutation.toCharArray(), combinationsSet, validWords, expectedCombinationSize, centreLetter,
+                dictionary, combinationsFound, control);
+    }
+
+    /**
+     * Search that collects the combinations found and is reused for many permutations by {@link #search}.
+     *
+     * @param combinationsSet : combinations of String found, this is a thread safe collection added to by
+     *                        {@link #merge}
+     * @param validWords : valid words found, this is a thread safe collection added to by {@link #merge}
+     * @param expectedCombinationSize : for every string, there is a finite number of combinations available. This that limit
+     * @param centreLetter : the centre letter of the word wheel all combinations MUST contain this letter
+     * @param dictionary : dictionary of known valid words
+     * @param combinationsFound : count of combinations added to the combinations set, shared by every task of the
+     *                          search so that completion can be checked without sizing the set
+     * @param control : cancellation signal shared by every task of the search
+     */
+    FindCombination(Set<String>combinationsSet, Set<String>validWords, long expectedCombinationSize,
+                    String centreLetter, PackedWordSet dictionary, AtomicLong combinationsFound,
+                    SearchControl control) {
+        this((char[]) null, combinationsSet, validWords, expectedCombinationSize, centreLetter, dictionary,
+                combinationsFound, control);
+    }
+
+    private FindCombination(char[] permutation, Set<String>combinationsSet, Set<String>validWords,
+                            long expectedCombinationSize, String centreLetter, PackedWordSet dictionary,
+                            AtomicLong combinationsFound, SearchControl control) {
         this.permutation = permutation;
         this.combinationsSet = combinationsSet;
         this.validWords = validWords;
         this.expectedCombinationSize = expectedCombinationSize;
-        this.centreLetter = centreLetter;
+        this.checkWords = centreLetter != null;
+        this.centreLetter = checkWords ? centreLetter.charAt(0) : 0;
         this.dictionary = dictionary;
+        this.combinationsFound = combinationsFound;
+        this.coverage = null;
+        this.control = control;
+        this.foundCombinations = new PackedCodeSet();
+        this.unpackedCombinations = new HashSet<>();
+    }
+
+    /**
+     * Search that does not hold the combinations found, only which letter multisets have been covered.
+     *
+     * @param permutation : String to be permutated
+     * @param coverage : letter multisets of the wheel searched so far, shared by every task of the search
+     * @param validWords : valid words found, this is a thread safe collection added to when the search finishes
+     * @param centreLetter : the centre letter of the word wheel all combinations MUST contain this letter
+     * @param dictionary : dictionary of known valid words
+     * @param control : cancellation signal shared by every task of the search
+     */
+    public FindCombination(String permutation, CombinationCoverage coverage, Set<String>validWords,
+                           String centreLetter, PackedWordSet dictionary, SearchControl control) {
+        this(permutation == null ? null : permutation.toCharArray(), coverage, validWords, centreLetter, dictionary,
+                control);
+    }
+
+    /**
+     * Search that does not hold the combinations found and is reused for many permutations by {@link #search}.
+     *
+     * @param coverage : letter multisets of the wheel searched so far, shared by every task of the search
+     * @param validWords : valid words found, this is a thread safe collection added to by {@link #merge}
+     * @param centreLetter : the centre letter of the word wheel all combinations MUST contain this letter
+     * @param dictionary : dictionary of known valid words
+     * @param control : cancellation signal shared by every task of the search
+     */
+    FindCombination(CombinationCoverage coverage, Set<String>validWords, String centreLetter,
+                    PackedWordSet dictionary, SearchControl control) {
+        this((char[]) null, coverage, validWords, centreLetter, dictionary, control);
+    }
+
+    private FindCombination(char[] permutation, CombinationCoverage coverage, Set<String>validWords,
+                            String centreLetter, PackedWordSet dictionary, SearchControl control) {
+        this.permutation = permutation;
+        this.combinationsSet = null;
+        this.validWords = validWords;
+        this.expectedCombinationSize = coverage.getArrangementsToCover();
+        this.checkWords = centreLetter != null;
+        this.centreLetter = checkWords ? centreLetter.charAt(0) : 0;
+        this.dictionary = dictionary;
+        this.combinationsFound = null;
+        this.coverage = coverage;
+        this.control = control;
+        this.foundCombinations = null;
+        this.unpackedCombinations = null;
+    }
+
+    private boolean isFinished() {
+        if (control.isStopped()) {
+            return true;
+        }
+        if (coverage != null) {
+            return coverage.isComplete();
+        }
+        // Either count alone is at most the number of distinct combinations found
+        return Math.max(combinationsFound.get(), foundCombinations.size() + unpackedCombinations.size())
+                >= expectedCombinationSize;
     }
 
     /**
@@ -45,41 +168,134 @@ public class FindCombination implements Callable<Boolean> {
     // ToDo make the return value a string giving details of what has been found
     @Override
     public Boolean call() throws Exception {
-//        System.out.println("DEBUG: evaluating \"" +permutation +" combinations set size " +combinationsSet.size() +", target set size " +expectedCombinationSize +" valid words size is " +validWords.size());
-        // Otherwise call substring() on the particular permutation passed in
-        for (int i = 0; i < permutation.length(); i++) {
-            // Check if we have exhausted/discovered all the combinations? If so, then exit
-            if (combinationsSet.size() >= expectedCombinationSize) {
+        try {
+            return search(permutation);
+        } finally {
+            merge();
+        }
+    }
+
+    /**
+     * Search every run of the permutation for combinations and words, held by this search until {@link #merge}.
+     * @param permutation letters of the wheel in the order to cut runs from, not changed
+     * @return false if the search finished or was cancelled before every run had been searched
+     */
+    boolean search(char[] permutation) {
+        if (run == null || run.length < permutation.length) {
+            run = new char[permutation.length];
+        }
+        for (int start = 0; start < permutation.length; start++) {
+            // Check if we have exhausted/discovered all the combinations, or been cancelled? If so, then exit
+            if (isFinished()) {
                 return false;
             }
-            substring(permutation, "", i);
+            int lastEnd = coverage == null ? permutation.length : Math.min(permutation.length,
+                    start + coverage.getMaxLength());
+            int firstEnd = coverage == null ? start + 1 : start + coverage.getMinLength();
+            for (int end = firstEnd; end <= lastEnd; end++) {
+                if (control.isStopped()) {
+                    return false;
+                }
+                // Every ordering of a run is generated, so a run whose letters have been covered already adds nothing
+                if (coverage == null || coverage.cover(coverage.index(permutation, start, end))) {
+                    System.arraycopy(permutation, start, run, 0, end - start);
+                    arrange(0, end - start, 0, false);
+                }
+            }
         }
         return true;
     }
 
-    private void substring(String content, String part, int index) {
-        if (index >= content.length()) {
+    private void arrange(int depth, int length, long code, boolean hasCentre) {
+        if (depth == length) {
+            if (combinationsSet != null) {
+                // Letters that cannot be packed are only possible when a caller searches arbitrary text
+                boolean added = code > 0 ? foundCombinations.add(code)
+                        : unpackedCombinations.add(new String(run, 0, length));
+                if (!added) {
+                    duplicateCombinations++;
+                } else if (foundCombinations.size() >= MERGE_THRESHOLD) {
+                    merge();
+                }
+            }
+            if (checkWords && hasCentre) {
+                dictionaryProbes++;
+                if (dictionary.contains(code)) {
+                    foundWords.add(code);
+                }
+            }
             return;
         }
-        String sub = part + content.charAt(index);
+        for (int i = depth; i < length; i++) {
+            char letter = run[i];
+            if (isPlaced(letter, depth, i)) {
+                continue;
+            }
+            run[i] = run[depth];
+            run[depth] = letter;
+            arrange(depth + 1, length, PackedWordSet.append(code, letter), hasCentre || letter == centreLetter);
+            run[depth] = run[i];
+            run[i] = letter;
+        }
+    }
 
-        permutation("", sub);
+    /**
+     * Add the words and combinations found since the last merge to the shared sets, each once however often it was
+     * found.
+     */
+    void merge() {
+        if (combinationsSet != null && !(foundCombinations.isEmpty() && unpackedCombinations.isEmpty())) {
+            long added = 0;
+            for (long code : foundCombinations.toArray()) {
+                if (combinationsSet.add(PackedWordSet.unpack(code))) {
+                    added++;
+                } else {
+                    duplicateCombinations++;
+                }
+            }
+            for (String combination : unpackedCombinations) {
+                if (combinationsSet.add(combination)) {
+                    added++;
+                } else {
+                    duplicateCombinations++;
+                }
+            }
+            foundCombinations.clear();
+            unpackedCombinations.clear();
+            combinationsFound.addAndGet(added);
+        }
+        if (!foundWords.isEmpty()) {
+            for (long code : foundWords.toArray()) {
+                validWords.add(PackedWordSet.unpack(code));
+            }
+            foundWords.clear();
+        }
+    }
+
+    /**
+     *
+     * @return candidates looked up in the dictionary so far, counted here rather than shared so probing stays cheap
+     */
+    long getDictionaryProbes() {
+        return dictionaryProbes;
+    }
 
-        substring(content, sub, index + 1);
+    /**
+     *
+     * @return combinations found again, by this search or already by another, and left out of the combinations set so
+     * far
+     */
+    long getDuplicateCombinations() {
+        return duplicateCombinations;
     }
 
-    private void permutation(String prefix, String str) {
-        int n = str.length();
-        if (n == 0) {
-            combinationsSet.add(prefix);
-            if (centreLetter != null) {
-                if ((prefix.contains(centreLetter)) && (dictionary.contains(prefix)))
-                    validWords.add(prefix);
-            }
-        } else {
-            for (int i = 0; i < n; i++) {
-                permutation(prefix + str.charAt(i), str.substring(0, i) + str.substring(i + 1, n));
+    private boolean isPlaced(char letter, int depth, int index) {
+        // A letter already placed at this depth would only repeat arrangements
+        for (int i = depth; i < index; i++) {
+            if (run[i] == letter) {
+                return true;
             }
         }
+        return false;
     }
 }
@@ -0,0 +1,95 @@
+package uk.org.goldendogconsulting;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Minimal JSON text helpers for the line-delimited and HTTP output, values written are only ever strings, numbers,
+ * booleans, and arrays or objects of strings, so no JSON library is needed.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /**
+     *
+     * @param value String to quote, null is written as JSON null
+     * @return the value as a quoted, escaped JSON string
+     */
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        builder.append(ch);
+                    }
+            }
+        }
+        builder.append('"');
+        return builder.toString();
+    }
+
+    /**
+     *
+     * @param values Strings to write
+     * @return the values as a JSON array of strings
+     */
+    static String array(Collection<String> values) {
+        StringBuilder builder = new StringBuilder();
+        builder.append('[');
+        boolean first = true;
+        for (String value : values) {
+            if (!first) {
+                builder.append(',');
+            }
+            builder.append(quote(value));
+            first = false;
+        }
+        builder.append(']');
+        return builder.toString();
+    }
+
+    /**
+     *
+     * @param values names and String values to write, in the map's order
+     * @return the values as a JSON object of strings
+     */
+    static String object(Map<String, String> values) {
+        StringBuilder builder = new StringBuilder();
+        builder.append('{');
+        boolean first = true;
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            if (!first) {
+                builder.append(',');
+            }
+            builder.append(quote(value.getKey())).append(':').append(quote(value.getValue()));
+            first = false;
+        }
+        builder.append('}');
+        return builder.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package uk.org.goldendogconsulting;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies with a fixed relative precision over the whole range of a long, laid out the way
+ * HdrHistogram does it: values below {@value #SUB_BUCKETS} nanoseconds each have a bucket of their own, and every
+ * power of two above is split into {@value #HALF_SUB_BUCKETS} equal buckets, so a percentile is within about 1.6% of
+ * the true value however long the tail. Safe to record into from any number of threads.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(long nanos) {
+        long sample = Math.max(0, nanos);
+        counts.incrementAndGet(index(sample));
+        count.increment();
+        totalNanos.add(sample);
+        long max;
+        while (sample > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, sample)) {
+            // another thread raised the max, check against its value
+        }
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        // The top SUB_BUCKET_BITS bits of the value, from HALF_SUB_BUCKETS up to SUB_BUCKETS - 1
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        long subBucket = index % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        // The top bucket ends at 2^63 - 1, where the shift wraps round to exactly Long.MAX_VALUE
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    long getMeanNanos() {
+        long samples = count.sum();
+        return samples == 0 ? 0 : totalNanos.sum() / samples;
+    }
+
+    /**
+     *
+     * @param percentile from 0 to 100, e.g. 99.9
+     * @return the highest value of the bucket the percentile falls in, never more than the largest value recorded
+     */
+    long getPercentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(maxNanos.get(), highestValue(i));
+            }
+        }
+        return maxNanos.get();
+    }
+}
@@ -0,0 +1,188 @@
+package uk.org.goldendogconsulting;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Columnar layout of the dictionary for scanning: one column per letter holding how many times that letter occurs in
+ * each word, plus a column of word lengths, all indexed by the word's position in the {@link Dictionary}.
+ * <p>
+ * Whether a word can be built from a set of letters is then a comparison per column, so a whole range of the
+ * dictionary is tested by passing down each column in turn with a loop of plain array arithmetic and no branches,
+ * the shape of loop the JIT compiler turns into SIMD instructions. Words with anything other than 'A' to 'Z' have a
+ * length of 0 in the index so they never match.
+ */
+public final class LetterCountIndex {
+
+    static final int ALPHABET_SIZE = 26;
+    private static final int SHORTFALL_REJECTED = Byte.MAX_VALUE;
+
+    private final byte[][] letterCounts;
+    private final byte[] lengths;
+    private final int[] maxCounts;
+
+    private LetterCountIndex(byte[][] letterCounts, byte[] lengths, int[] maxCounts) {
+        this.letterCounts = letterCounts;
+        this.lengths = lengths;
+        this.maxCounts = maxCounts;
+    }
+
+    /**
+     * Build the columns straight from the dictionary's word table.
+     * @param dictionary dictionary of known valid words
+     * @return the index
+     */
+    static LetterCountIndex of(Dictionary dictionary) {
+        ByteBuffer wordBytes = dictionary.getWordBytes();
+        IntBuffer wordOffsets = dictionary.getWordOffsets();
+        int size = dictionary.size();
+        byte[][] letterCounts = new byte[ALPHABET_SIZE][size];
+        byte[] lengths = new byte[size];
+        int[] maxCounts = new int[ALPHABET_SIZE];
+        for (int word = 0; word < size; word++) {
+            int start = wordOffsets.get(word);
+            int end = wordOffsets.get(word + 1);
+            boolean alpha = end > start && end - start <= Byte.MAX_VALUE;
+            for (int position = start; position < end && alpha; position++) {
+                int letter = wordBytes.get(position) - 'A';
+                if (letter < 0 || letter >= ALPHABET_SIZE) {
+                    alpha = false;
+                } else {
+                    letterCounts[letter][word]++;
+                }
+            }
+            if (alpha) {
+                lengths[word] = (byte) (end - start);
+                for (int letter = 0; letter < ALPHABET_SIZE; letter++) {
+                    maxCounts[letter] = Math.max(maxCounts[letter], letterCounts[letter][word]);
+                }
+            } else {
+                for (int letter = 0; letter < ALPHABET_SIZE; letter++) {
+                    letterCounts[letter][word] = 0;
+                }
+            }
+        }
+        return new LetterCountIndex(letterCounts, lengths, maxCounts);
+    }
+
+    /**
+     * Count the letters A to Z in a String, anything else is ignored.
+     * @param letters upper-case letters
+     * @return number of each letter, 'A' first
+     */
+    static int[] countLetters(String letters) {
+        int[] counts = new int[ALPHABET_SIZE];
+        for (int i = 0; i < letters.length(); i++) {
+            int letter = letters.charAt(i) - 'A';
+            if (letter >= 0 && letter < ALPHABET_SIZE) {
+                counts[letter]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Test a range of the dictionary against a set of letters. On return {@code rejected[i - from]} is 0 for every
+     * word {@code i} that can be built from the letters, within the length bounds and containing the required letter,
+     * and non-zero for every other word. With blanks, a word short of some letters is kept as long as its shortfall
+     * across every letter is no more than the blanks available.
+     * @param available number of each letter available, 'A' first
+     * @param blanks number of blank tiles that can stand for any letter
+     * @param required letter every word must contain, 0 for 'A' up to 25 for 'Z', or -1 for none
+     * @param minLength shortest word wanted, at least 1
+     * @param maxLength longest word wanted
+     * @param from first word to test
+     * @param to end of the range, exclusive
+     * @param rejected scratch of at least {@code to - from} entries, overwritten
+     */
+    void scan(int[] available, int blanks, int required, int minLength, int maxLength, int from, int to,
+              byte[] rejected) {
+        int count = to - from;
+        // A negative difference shifted down to its sign bit is 1, so each loop adds a rejection without a branch
+        for (int i = 0; i < count; i++) {
+            int length = lengths[from + i];
+            rejected[i] = (byte) (((length - minLength) >>> 31) | ((maxLength - length) >>> 31));
+        }
+        if (required >= 0) {
+            byte[] column = letterCounts[required];
+            for (int i = 0; i < count; i++) {
+                rejected[i] |= (byte) ((column[from + i] - 1) >>> 31);
+            }
+        }
+        if (blanks > 0) {
+            scanShortfall(available, blanks, from, count, rejected);
+            return;
+        }
+        for (int letter = 0; letter < ALPHABET_SIZE; letter++) {
+            int limit = available[letter];
+            if (limit >= maxCounts[letter]) {
+                // No word in the dictionary has more of this letter than there are
+                continue;
+            }
+            byte[] column = letterCounts[letter];
+            for (int i = 0; i < count; i++) {
+                rejected[i] |= (byte) ((limit - column[from + i]) >>> 31);
+            }
+        }
+    }
+
+    /**
+     * Add up how many of each letter every word is short of, then reject the words short of more than there are
+     * blanks. A word already rejected starts well above any shortfall the blanks can make up.
+     */
+    private void scanShortfall(int[] available, int blanks, int from, int count, byte[] rejected) {
+        for (int i = 0; i < count; i++) {
+            rejected[i] = (byte) (rejected[i] * SHORTFALL_REJECTED);
+        }
+        for (int letter = 0; letter < ALPHABET_SIZE; letter++) {
+            int limit = available[letter];
+            if (limit >= maxCounts[letter]) {
+                continue;
+            }
+            byte[] column = letterCounts[letter];
+            for (int i = 0; i < count; i++) {
+                int shortfall = column[from + i] - limit;
+                // Negative shortfalls masked to 0 by their own sign
+                rejected[i] = (byte) Math.min(Byte.MAX_VALUE, rejected[i] + (shortfall & ~(shortfall >> 31)));
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            rejected[i] = (byte) ((blanks - rejected[i]) >>> 31);
+        }
+    }
+
+    /**
+     *
+     * @return bytes held by the columns
+     */
+    long getResidentBytes() {
+        return (long) (ALPHABET_SIZE + 1) * lengths.length + (long) maxCounts.length * Integer.BYTES;
+    }
+
+    /**
+     *
+     * @return number of words indexed, the same as the dictionary
+     */
+    public int size() {
+        return lengths.length;
+    }
+
+    /**
+     *
+     * @param word position of the word in the dictionary
+     * @return length of the word, 0 if it holds anything other than 'A' to 'Z'
+     */
+    public int length(int word) {
+        return lengths[word];
+    }
+
+    /**
+     *
+     * @param letter 0 for 'A' up to 25 for 'Z'
+     * @param word position of the word in the dictionary
+     * @return times the letter occurs in the word
+     */
+    public int count(int letter, int word) {
+        return letterCounts[letter][word];
+    }
+}
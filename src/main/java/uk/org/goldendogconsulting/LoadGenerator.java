@@ -0,0 +1,602 @@
+package uk.org.goldendogconsulting;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a corpus of puzzles against an engine in this process, or against a word wheel server, and reports the
+ * latency percentiles, throughput, garbage collection and thread counts while it did.
+ * <p>
+ * A closed loop keeps a fixed number of solves going, each worker starting its next puzzle when the last is answered,
+ * which finds the throughput the target can sustain. An open loop starts solves at a fixed rate whether or not earlier
+ * ones have been answered, and times each one from when it was due to start rather than when it got going, so a
+ * target that falls behind shows the wait in its latencies instead of quietly slowing the load down.
+ */
+public class LoadGenerator {
+
+    private static final Logger LOG = LogManager.getLogger(LoadGenerator.class);
+
+    public static final int DEFAULT_CONCURRENCY = 8;
+    public static final int DEFAULT_GENERATED_PUZZLES = 1000;
+    public static final long DEFAULT_WARMUP_SECONDS = 10;
+    public static final long DEFAULT_DURATION_SECONDS = 30;
+
+    /**
+     * Solves outstanding at once before an open loop drops a solve instead of starting it, so a target that has
+     * stopped answering cannot run the generator out of threads.
+     */
+    static final int MAX_OUTSTANDING = 10000;
+
+    private static final long THOUSAND = 1000;
+    private static final long MILLION = 1000 * THOUSAND;
+    private static final long BILLION = 1000 * MILLION;
+    private static final int HTTP_SERVICE_UNAVAILABLE = 503;
+
+    /**
+     * Something the load is put on.
+     */
+    public interface Target {
+
+        /**
+         *
+         * @param puzzle centre letter followed by the wheel letters
+         * @return true if the puzzle was solved, false if the target turned it away as too busy
+         * @throws Exception if the solve failed
+         */
+        boolean solve(String puzzle) throws Exception;
+    }
+
+    /**
+     *
+     * @param engine solves each puzzle on the calling thread, or on its scheduler if it has one
+     * @return a target that never turns a puzzle away
+     */
+    public static Target engineTarget(WordWheelEngine engine) {
+        return puzzle -> {
+            engine.findWords(puzzle);
+            return true;
+        };
+    }
+
+    /**
+     *
+     * @param baseUrl of a word wheel server, e.g. http://localhost:8080
+     * @return a target that asks the server's /solve for each puzzle, turned away when the server answers 503
+     */
+    public static Target serverTarget(String baseUrl) {
+        String solveUrl = (baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl)
+                +"/solve?letters=";
+        return puzzle -> {
+            URL url = new URL(solveUrl +URLEncoder.encode(puzzle, StandardCharsets.UTF_8.name()));
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            int status = connection.getResponseCode();
+            // Read the body to the end so the connection is kept for the next request
+            try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (body != null) {
+                    body.readAllBytes();
+                }
+            }
+            if (status == HTTP_SERVICE_UNAVAILABLE) {
+                return false;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Server answered " +status +" to " +puzzle);
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Puzzles made from the nine letter words of the dictionary, chosen at random and with the wheel letters
+     * shuffled, so the same word comes up again as a different puzzle.
+     *
+     * @param dictionary to take the nine letter words from
+     * @param count number of puzzles
+     * @param seed of the random choices, the same seed gives the same corpus
+     * @return the puzzles, centre letter first
+     */
+    public static List<String> randomPuzzles(Dictionary dictionary, int count, long seed) {
+        List<String> keys = PuzzleCatalogueBuilder.puzzles(dictionary);
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("Dictionary has no nine letter words to make puzzles from");
+        }
+        Random random = new Random(seed);
+        List<String> puzzles = new ArrayList<>(count);
+        List<Character> wheel = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            wheel.clear();
+            for (int j = 1; j < key.length(); j++) {
+                wheel.add(key.charAt(j));
+            }
+            Collections.shuffle(wheel, random);
+            StringBuilder puzzle = new StringBuilder(key.length()).append(key.charAt(0));
+            for (char letter : wheel) {
+                puzzle.append(letter);
+            }
+            puzzles.add(puzzle.toString());
+        }
+        return puzzles;
+    }
+
+    /**
+     * Puzzles recorded one to a line, as read by the batch solver: blank lines and lines starting with # are
+     * skipped and white space within a line is ignored.
+     *
+     * @param file of recorded puzzles
+     * @return the puzzles in the order recorded
+     * @throws IOException if the file cannot be read
+     */
+    public static List<String> readPuzzles(Path file) throws IOException {
+        List<String> puzzles = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String puzzle = line.trim();
+            if (!puzzle.isEmpty() && !puzzle.startsWith("#")) {
+                puzzles.add(puzzle.replaceAll("\\s+", ""));
+            }
+        }
+        if (puzzles.isEmpty()) {
+            throw new IOException("No puzzles in " +file);
+        }
+        return puzzles;
+    }
+
+    private final Target target;
+    private final List<String> puzzles;
+
+    /**
+     *
+     * @param target to put the load on
+     * @param puzzles replayed in order, round and round for as long as the run lasts
+     */
+    public LoadGenerator(Target target, List<String> puzzles) {
+        if (puzzles.isEmpty()) {
+            throw new IllegalArgumentException("No puzzles to replay");
+        }
+        this.target = target;
+        this.puzzles = new ArrayList<>(puzzles);
+    }
+
+    /**
+     * Keep a fixed number of solves going.
+     *
+     * @param concurrency number of workers, each with one solve outstanding at a time
+     * @param warmup time spent solving before anything is measured
+     * @param duration time measured after the warmup
+     * @param unit of warmup and duration
+     * @return what was measured
+     * @throws InterruptedException if interrupted before the run finished
+     */
+    public Report runClosedLoop(int concurrency, long warmup, long duration, TimeUnit unit)
+            throws InterruptedException {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency " +concurrency +" is less than one");
+        }
+        Measurement measurement = new Measurement();
+        AtomicLong next = new AtomicLong();
+        long measureFrom = System.nanoTime() + unit.toNanos(warmup);
+        long measureTo = measureFrom + unit.toNanos(duration);
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, threadFactory());
+        try {
+            for (int i = 0; i < concurrency; i++) {
+                workers.execute(() -> {
+                    long startTime;
+                    while ((startTime = System.nanoTime()) < measureTo && !Thread.currentThread().isInterrupted()) {
+                        String puzzle = puzzles.get((int) (next.getAndIncrement() % puzzles.size()));
+                        measurement.started();
+                        Outcome outcome = solve(puzzle);
+                        measurement.finishSolve();
+                        if (startTime >= measureFrom) {
+                            measurement.record(outcome, System.nanoTime() - startTime);
+                        }
+                    }
+                });
+            }
+            sleepUntil(measureFrom);
+            measurement.begin();
+            sleepUntil(measureTo);
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            workers.shutdownNow();
+        }
+        return measurement.end("closed loop, concurrency " +concurrency, measureTo - measureFrom);
+    }
+
+    /**
+     * Start solves at a fixed rate, however long the target takes to answer them.
+     *
+     * @param ratePerSecond solves started each second
+     * @param warmup time spent solving before anything is measured
+     * @param duration time measured after the warmup
+     * @param unit of warmup and duration
+     * @return what was measured, the latency of each solve counted from when it was due to start
+     * @throws InterruptedException if interrupted before the run finished
+     */
+    public Report runOpenLoop(double ratePerSecond, long warmup, long duration, TimeUnit unit)
+            throws InterruptedException {
+        if (!(ratePerSecond > 0)) {
+            throw new IllegalArgumentException("Rate " +ratePerSecond +" is not more than zero");
+        }
+        Measurement measurement = new Measurement();
+        double intervalNanos = BILLION / ratePerSecond;
+        long startTime = System.nanoTime();
+        long measureFrom = startTime + unit.toNanos(warmup);
+        long measureTo = measureFrom + unit.toNanos(duration);
+        ExecutorService workers = Executors.newCachedThreadPool(threadFactory());
+        try {
+            boolean measuring = false;
+            for (long i = 0; ; i++) {
+                long dueTime = startTime + (long) (i * intervalNanos);
+                if (dueTime >= measureTo) {
+                    break;
+                }
+                long wait;
+                while ((wait = dueTime - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+                boolean measured = dueTime >= measureFrom;
+                if (measured && !measuring) {
+                    measurement.begin();
+                    measuring = true;
+                }
+                if (!measurement.startSolve()) {
+                    if (measured) {
+                        measurement.dropped.increment();
+                    }
+                    continue;
+                }
+                String puzzle = puzzles.get((int) (i % puzzles.size()));
+                workers.execute(() -> {
+                    Outcome outcome = solve(puzzle);
+                    if (measured) {
+                        measurement.record(outcome, System.nanoTime() - dueTime);
+                    }
+                    measurement.finishSolve();
+                });
+            }
+            if (!measuring) {
+                measurement.begin();
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            workers.shutdownNow();
+        }
+        return measurement.end("open loop, " +ratePerSecond +" solves/sec", measureTo - measureFrom);
+    }
+
+    private Outcome solve(String puzzle) {
+        try {
+            return target.solve(puzzle) ? Outcome.SOLVED : Outcome.REJECTED;
+        } catch (Exception exception) {
+            LOG.debug("Solving " +puzzle +" failed", exception);
+            return Outcome.FAILED;
+        }
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long wait;
+        while ((wait = nanoTime - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "wordwheel-load-" +threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private enum Outcome { SOLVED, REJECTED, FAILED }
+
+    /**
+     * Counts of one run, shared by its workers.
+     */
+    private static final class Measurement {
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger peakOutstanding = new AtomicInteger();
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private long gcCountBefore;
+        private long gcMsecsBefore;
+
+        void begin() {
+            gcCountBefore = gcCount();
+            gcMsecsBefore = gcMsecs();
+            threads.resetPeakThreadCount();
+            peakOutstanding.set(outstanding.get());
+        }
+
+        void record(Outcome outcome, long nanos) {
+            switch (outcome) {
+                case SOLVED:
+                    latencies.record(nanos);
+                    break;
+                case REJECTED:
+                    rejected.increment();
+                    break;
+                default:
+                    failed.increment();
+            }
+        }
+
+        void started() {
+            peakOutstanding.accumulateAndGet(outstanding.incrementAndGet(), Math::max);
+        }
+
+        boolean startSolve() {
+            int now = outstanding.incrementAndGet();
+            if (now > MAX_OUTSTANDING) {
+                outstanding.decrementAndGet();
+                return false;
+            }
+            peakOutstanding.accumulateAndGet(now, Math::max);
+            return true;
+        }
+
+        void finishSolve() {
+            outstanding.decrementAndGet();
+        }
+
+        Report end(String description, long measuredNanos) {
+            return new Report(description, measuredNanos, latencies, rejected.sum(), failed.sum(), dropped.sum(),
+                    gcCount() - gcCountBefore, gcMsecs() - gcMsecsBefore, threads.getThreadCount(),
+                    threads.getPeakThreadCount(), peakOutstanding.get());
+        }
+
+        private static long gcCount() {
+            long total = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(0, collector.getCollectionCount());
+            }
+            return total;
+        }
+
+        private static long gcMsecs() {
+            long total = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(0, collector.getCollectionTime());
+            }
+            return total;
+        }
+    }
+
+    /**
+     * What a run measured, latencies in microseconds. Garbage collection and threads are those of this process, so
+     * of the engine when the target is in process but only of the generator when it is a server.
+     */
+    public static final class Report {
+
+        private final String description;
+        private final long measuredMsecs;
+        private final long solved;
+        private final long rejected;
+        private final long failed;
+        private final long dropped;
+        private final double throughput;
+        private final long meanMicros;
+        private final long p50Micros;
+        private final long p90Micros;
+        private final long p99Micros;
+        private final long p999Micros;
+        private final long maxMicros;
+        private final long gcCount;
+        private final long gcMsecs;
+        private final int threadCount;
+        private final int peakThreadCount;
+        private final int peakOutstanding;
+
+        Report(String description, long measuredNanos, LatencyHistogram latencies, long rejected, long failed,
+               long dropped, long gcCount, long gcMsecs, int threadCount, int peakThreadCount, int peakOutstanding) {
+            this.description = description;
+            this.measuredMsecs = measuredNanos / MILLION;
+            this.solved = latencies.getCount();
+            this.rejected = rejected;
+            this.failed = failed;
+            this.dropped = dropped;
+            this.throughput = measuredNanos == 0 ? 0 : solved * (double) BILLION / measuredNanos;
+            this.meanMicros = latencies.getMeanNanos() / THOUSAND;
+            this.p50Micros = latencies.getPercentileNanos(50) / THOUSAND;
+            this.p90Micros = latencies.getPercentileNanos(90) / THOUSAND;
+            this.p99Micros = latencies.getPercentileNanos(99) / THOUSAND;
+            this.p999Micros = latencies.getPercentileNanos(99.9) / THOUSAND;
+            this.maxMicros = latencies.getMaxNanos() / THOUSAND;
+            this.gcCount = gcCount;
+            this.gcMsecs = gcMsecs;
+            this.threadCount = threadCount;
+            this.peakThreadCount = peakThreadCount;
+            this.peakOutstanding = peakOutstanding;
+        }
+
+        public long getSolved() {
+            return solved;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         *
+         * @return solves an open loop never started because {@value #MAX_OUTSTANDING} were already outstanding
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        /**
+         *
+         * @return puzzles solved per second over the measured time
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public long getMeanMicros() {
+            return meanMicros;
+        }
+
+        public long getP50Micros() {
+            return p50Micros;
+        }
+
+        public long getP90Micros() {
+            return p90Micros;
+        }
+
+        public long getP99Micros() {
+            return p99Micros;
+        }
+
+        public long getP999Micros() {
+            return p999Micros;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+
+        /**
+         *
+         * @return collections over the measured time, with {@link #getGcMsecs()} standing in for the pauses as the
+         * platform reports time spent collecting rather than each pause
+         */
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        public long getGcMsecs() {
+            return gcMsecs;
+        }
+
+        public int getThreadCount() {
+            return threadCount;
+        }
+
+        public int getPeakThreadCount() {
+            return peakThreadCount;
+        }
+
+        public int getPeakOutstanding() {
+            return peakOutstanding;
+        }
+
+        public String toJson() {
+            return "{\"run\":" +Json.quote(description)
+                    +",\"measuredMsecs\":" +measuredMsecs
+                    +",\"solved\":" +solved
+                    +",\"rejected\":" +rejected
+                    +",\"failed\":" +failed
+                    +",\"dropped\":" +dropped
+                    +",\"throughput\":" +String.format(Locale.ROOT, "%.1f", throughput)
+                    +",\"meanMicros\":" +meanMicros
+                    +",\"p50Micros\":" +p50Micros
+                    +",\"p90Micros\":" +p90Micros
+                    +",\"p99Micros\":" +p99Micros
+                    +",\"p999Micros\":" +p999Micros
+                    +",\"maxMicros\":" +maxMicros
+                    +",\"gcCount\":" +gcCount
+                    +",\"gcMsecs\":" +gcMsecs
+                    +",\"threads\":" +threadCount
+                    +",\"peakThreads\":" +peakThreadCount
+                    +",\"peakOutstanding\":" +peakOutstanding +"}";
+        }
+
+        @Override
+        public String toString() {
+            return description +" for " +measuredMsecs +" msecs\n"
+                    +"solved " +solved +", rejected " +rejected +", failed " +failed +", dropped " +dropped
+                    +", " +String.format("%.1f", throughput) +" solves/sec\n"
+                    +"latency usecs mean " +meanMicros +", p50 " +p50Micros +", p90 " +p90Micros +", p99 "
+                    +p99Micros +", p99.9 " +p999Micros +", max " +maxMicros +"\n"
+                    +"gc " +gcCount +" collections taking " +gcMsecs +" msecs, threads " +threadCount +" (peak "
+                    +peakThreadCount +"), peak outstanding solves " +peakOutstanding;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Options options = new Options();
+        options.addOption("c", true, "solves kept going at once, closed loop");
+        options.addOption("r", true, "solves started each second, open loop");
+        options.addOption("t", true, "seconds measured");
+        options.addOption("w", true, "seconds of warmup before measuring");
+        options.addOption("f", true, "file of recorded puzzles to replay");
+        options.addOption("n", true, "number of puzzles to generate from the dictionary");
+        options.addOption("u", true, "URL of a word wheel server to put the load on, e.g. http://localhost:8080");
+        options.addOption("s", true, "solver strategy of the in process engine");
+        options.addOption("j", false, "report as JSON");
+
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        } catch (ParseException parseException) {
+            System.err.println(parseException.getMessage());
+            new HelpFormatter().printHelp("LoadGenerator", options);
+            return;
+        }
+
+        List<String> corpus = cmd.hasOption("f") ? readPuzzles(Paths.get(cmd.getOptionValue("f")))
+                : randomPuzzles(Dictionary.getDefault(),
+                        Integer.parseInt(cmd.getOptionValue("n", String.valueOf(DEFAULT_GENERATED_PUZZLES))), 0);
+        Target target = cmd.hasOption("u") ? serverTarget(cmd.getOptionValue("u"))
+                : engineTarget(new WordWheelEngine(SolverStrategy.valueOf(cmd.getOptionValue("s", "TRIE")),
+                        Dictionary.getDefault()));
+        long warmup = Long.parseLong(cmd.getOptionValue("w", String.valueOf(DEFAULT_WARMUP_SECONDS)));
+        long duration = Long.parseLong(cmd.getOptionValue("t", String.valueOf(DEFAULT_DURATION_SECONDS)));
+
+        LoadGenerator loadGenerator = new LoadGenerator(target, corpus);
+        Report report = cmd.hasOption("r")
+                ? loadGenerator.runOpenLoop(Double.parseDouble(cmd.getOptionValue("r")), warmup, duration,
+                        TimeUnit.SECONDS)
+                : loadGenerator.runClosedLoop(
+                        Integer.parseInt(cmd.getOptionValue("c", String.valueOf(DEFAULT_CONCURRENCY))), warmup,
+                        duration, TimeUnit.SECONDS);
+        System.out.println(cmd.hasOption("j") ? report.toJson() : report.toString());
+    }
+}
@@ -0,0 +1,151 @@
+package uk.org.goldendogconsulting;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The dictionary's words indexed by anagram key, the word's letters in alphabetical order, packed into a long as a
+ * {@link PackedWordSet} packs a word. An open-addressing table of keys gives for each key a run of dictionary word
+ * indexes, so the whole index is a few megabytes of primitives. Words longer than {@link PackedWordSet#MAX_LENGTH}
+ * letters, or with anything other than 'A' to 'Z', are left out.
+ * <p>
+ * The words a wheel can make are looked up one letter multiset at a time, and each letter can be held to a range of
+ * counts, so a search can be confined to the multisets that must, or must not, contain some letter.
+ */
+final class PackedAnagramIndex {
+
+    private static final int ALPHABET_SIZE = 26;
+    private static final long EMPTY = 0;
+
+    private final Dictionary dictionary;
+    private final long[] keys;
+    // Word indexes of the key in slot s run from starts[s] up to starts[s + 1]
+    private final int[] starts;
+    private final int[] words;
+
+    private PackedAnagramIndex(Dictionary dictionary, long[] keys, int[] starts, int[] words) {
+        this.dictionary = dictionary;
+        this.keys = keys;
+        this.starts = starts;
+        this.words = words;
+    }
+
+    /**
+     * Index every word of a dictionary that can be packed, read straight from its word table.
+     * @param dictionary dictionary of known valid words
+     * @return the index
+     */
+    static PackedAnagramIndex of(Dictionary dictionary) {
+        ByteBuffer wordBytes = dictionary.getWordBytes();
+        IntBuffer wordOffsets = dictionary.getWordOffsets();
+        long[] wordKeys = new long[dictionary.size()];
+        long[] keys = new long[Math.max(16, Integer.highestOneBit(Math.max(dictionary.size(), 1)) << 2)];
+        int mask = keys.length - 1;
+        int[] starts = new int[keys.length + 1];
+        int[] letterCounts = new int[ALPHABET_SIZE];
+        // Count the words of each key in its slot, then turn the counts into the end of each slot's run
+        for (int i = 0; i < wordKeys.length; i++) {
+            wordKeys[i] = anagramKey(wordBytes, wordOffsets.get(i), wordOffsets.get(i + 1), letterCounts);
+            if (wordKeys[i] > 0) {
+                starts[slot(keys, mask, wordKeys[i])]++;
+            }
+        }
+        int indexed = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            indexed += starts[slot];
+            starts[slot] = indexed;
+        }
+        starts[keys.length] = indexed;
+        int[] words = new int[indexed];
+        // Each run is filled back from its end to its start, keeping the words of a key in dictionary order
+        for (int i = wordKeys.length - 1; i >= 0; i--) {
+            if (wordKeys[i] > 0) {
+                words[--starts[slot(keys, mask, wordKeys[i])]] = i;
+            }
+        }
+        return new PackedAnagramIndex(dictionary, keys, starts, words);
+    }
+
+    // Slot of the key, claimed for it if it is not in the table yet
+    private static int slot(long[] keys, int mask, long key) {
+        int slot = PackedWordSet.hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        return slot;
+    }
+
+    private static long anagramKey(ByteBuffer wordBytes, int start, int end, int[] letterCounts) {
+        if (end - start > PackedWordSet.MAX_LENGTH) {
+            return -1;
+        }
+        for (int position = start; position < end; position++) {
+            int letter = (wordBytes.get(position) & 0xff) - 'A';
+            if (letter < 0 || letter >= ALPHABET_SIZE) {
+                Arrays.fill(letterCounts, 0);
+                return -1;
+            }
+            letterCounts[letter]++;
+        }
+        long key = 0;
+        for (int letter = 0; letter < ALPHABET_SIZE; letter++) {
+            for (; letterCounts[letter] > 0; letterCounts[letter]--) {
+                key = PackedWordSet.append(key, (char) ('A' + letter));
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Add the words made of some of the letters, with the count of each letter between its least and most.
+     * @param leastCounts fewest copies of each letter, 0 for A up to 25 for Z, a word must have
+     * @param mostCounts most copies of each letter a word may have, the letters available
+     * @param validWords words found are added to this collection, this is a thread safe collection
+     */
+    void findWords(int[] leastCounts, int[] mostCounts, Set<String> validWords) {
+        subMultisets(leastCounts, mostCounts, 0, 0, 0, validWords);
+    }
+
+    // Keys are built in alphabetical order as the letters are visited in order, so each is already an anagram key
+    private void subMultisets(int[] leastCounts, int[] mostCounts, int letter, long key, int keyLength,
+                              Set<String> validWords) {
+        if (letter == ALPHABET_SIZE) {
+            if (keyLength > 0) {
+                addWords(key, validWords);
+            }
+            return;
+        }
+        long extended = key;
+        for (int count = 0; count <= mostCounts[letter] && keyLength + count <= PackedWordSet.MAX_LENGTH; count++) {
+            if (count >= leastCounts[letter]) {
+                subMultisets(leastCounts, mostCounts, letter + 1, extended, keyLength + count, validWords);
+            }
+            extended = PackedWordSet.append(extended, (char) ('A' + letter));
+        }
+    }
+
+    private void addWords(long key, Set<String> validWords) {
+        int mask = keys.length - 1;
+        int slot = PackedWordSet.hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                for (int i = starts[slot]; i < starts[slot + 1]; i++) {
+                    validWords.add(dictionary.getWord(words[i]));
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     *
+     * @return bytes held by the key table and word indexes
+     */
+    long getResidentBytes() {
+        return (long) keys.length * Long.BYTES + ((long) starts.length + words.length) * Integer.BYTES;
+    }
+}
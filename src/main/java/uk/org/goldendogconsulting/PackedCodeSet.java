@@ -0,0 +1,84 @@
+package uk.org.goldendogconsulting;
+
+import java.util.Arrays;
+
+/**
+ * Growable set of packed words, see {@link PackedWordSet}, for one thread to collect into without sharing. An
+ * open-addressing table of primitives, so adding a word already held allocates nothing. Not thread safe.
+ */
+final class PackedCodeSet {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long EMPTY = 0;
+
+    private long[] table = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     *
+     * @param code packed word, greater than zero
+     * @return true if the word was not already in the set
+     */
+    boolean add(long code) {
+        int mask = table.length - 1;
+        int slot = PackedWordSet.hash(code) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == code) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = code;
+        // Kept at most half full so probe sequences stay short
+        if (++size > table.length >>> 1) {
+            grow();
+        }
+        return true;
+    }
+
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length << 1];
+        int mask = table.length - 1;
+        for (long code : old) {
+            if (code != EMPTY) {
+                int slot = PackedWordSet.hash(code) & mask;
+                while (table[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = code;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     *
+     * @return the packed words in no particular order
+     */
+    long[] toArray() {
+        long[] codes = new long[size];
+        int count = 0;
+        for (long code : table) {
+            if (code != EMPTY) {
+                codes[count++] = code;
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Empty the set, keeping the table it has grown to.
+     */
+    void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+    }
+}
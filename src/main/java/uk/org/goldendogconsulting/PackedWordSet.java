@@ -0,0 +1,176 @@
+package uk.org.goldendogconsulting;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Set of upper-case words each packed into a single {@code long}, five bits per letter, held in an open-addressing
+ * table of primitives.
+ * <p>
+ * A letter is stored as 1 for 'A' to 26 for 'Z', so no packed word is 0, which marks an empty slot, and words of
+ * different lengths never share a code. Twelve letters fit in the 60 low bits; longer words, or words with anything
+ * other than 'A' to 'Z', cannot be packed and are left out. Probing the set with a code built up a letter at a time
+ * allocates nothing, a String is only needed for words that are found.
+ */
+public final class PackedWordSet {
+
+    /**
+     * Longest word that can be packed.
+     */
+    public static final int MAX_LENGTH = 12;
+
+    private static final int BITS_PER_LETTER = 5;
+    private static final int LETTER_MASK = (1 << BITS_PER_LETTER) - 1;
+    private static final long EMPTY = 0;
+
+    private final long[] table;
+    private final int mask;
+    private final int size;
+
+    private PackedWordSet(long[] table, int size) {
+        this.table = table;
+        this.mask = table.length - 1;
+        this.size = size;
+    }
+
+    /**
+     * Pack every word of a dictionary that can be packed, read straight from its word table.
+     * @param dictionary dictionary of known valid words
+     * @return the packed words
+     */
+    static PackedWordSet of(Dictionary dictionary) {
+        ByteBuffer wordBytes = dictionary.getWordBytes();
+        IntBuffer wordOffsets = dictionary.getWordOffsets();
+        long[] table = new long[capacityFor(dictionary.size())];
+        int size = 0;
+        for (int i = 0; i < dictionary.size(); i++) {
+            int start = wordOffsets.get(i);
+            int end = wordOffsets.get(i + 1);
+            if (end - start > MAX_LENGTH) {
+                continue;
+            }
+            long code = 0;
+            for (int position = start; position < end && code >= 0; position++) {
+                code = append(code, (char) (wordBytes.get(position) & 0xff));
+            }
+            if (code > 0 && insert(table, code)) {
+                size++;
+            }
+        }
+        return new PackedWordSet(table, size);
+    }
+
+    private static int capacityFor(int words) {
+        // Kept at most half full so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(words, 1)) << 2;
+        return Math.max(capacity, 16);
+    }
+
+    private static boolean insert(long[] table, long code) {
+        int mask = table.length - 1;
+        int slot = hash(code) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == code) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = code;
+        return true;
+    }
+
+    static int hash(long code) {
+        // Finalizer of MurmurHash3, spreads the low bits the letters occupy across the whole word
+        code ^= code >>> 33;
+        code *= 0xff51afd7ed558ccdL;
+        code ^= code >>> 33;
+        code *= 0xc4ceb9fe1a85ec53L;
+        code ^= code >>> 33;
+        return (int) code;
+    }
+
+    /**
+     * Extend a packed word by one letter.
+     * @param code packed word so far, 0 for the empty word
+     * @param letter upper-case letter to add
+     * @return the packed word, or -1 if the letter is not 'A' to 'Z' or the word is already twelve letters long
+     */
+    public static long append(long code, char letter) {
+        if (letter < 'A' || letter > 'Z' || code < 0 || code >>> (BITS_PER_LETTER * (MAX_LENGTH - 1)) != 0) {
+            return -1;
+        }
+        return (code << BITS_PER_LETTER) | (letter - 'A' + 1);
+    }
+
+    /**
+     *
+     * @param word upper-case word
+     * @return the packed word, or -1 if it cannot be packed
+     */
+    public static long pack(CharSequence word) {
+        if (word.length() == 0) {
+            return -1;
+        }
+        long code = 0;
+        for (int i = 0; i < word.length() && code >= 0; i++) {
+            code = append(code, word.charAt(i));
+        }
+        return code;
+    }
+
+    /**
+     *
+     * @param code packed word
+     * @return the word
+     */
+    public static String unpack(long code) {
+        int length = (Long.SIZE - Long.numberOfLeadingZeros(code) + BITS_PER_LETTER - 1) / BITS_PER_LETTER;
+        char[] letters = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            letters[i] = (char) ('A' - 1 + (int) (code & LETTER_MASK));
+            code >>>= BITS_PER_LETTER;
+        }
+        return new String(letters);
+    }
+
+    /**
+     *
+     * @param code packed word
+     * @return true if the word is in the set
+     */
+    public boolean contains(long code) {
+        if (code <= 0) {
+            return false;
+        }
+        int slot = hash(code) & mask;
+        long entry;
+        while ((entry = table[slot]) != EMPTY) {
+            if (entry == code) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     *
+     * @param word upper-case word
+     * @return true if the word is in the set
+     */
+    public boolean contains(CharSequence word) {
+        return contains(pack(word));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     *
+     * @return bytes held by the table
+     */
+    long getResidentBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+}
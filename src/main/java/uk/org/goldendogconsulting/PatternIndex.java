@@ -0,0 +1,266 @@
+package uk.org.goldendogconsulting;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The dictionary's words indexed by the letter at each position, for crossword style pattern queries such as
+ * "A?P??E". Words are partitioned by length, and within a partition each (position, letter) pair has a posting list
+ * of the partition's words with that letter there, kept the way a compressed bitmap keeps it: a sorted array of
+ * ordinals while it is sparse, a bitmap once it holds more than one word in {@value #DENSE_FRACTION}, whichever is the
+ * smaller. Words with anything other than 'A' to 'Z' are left out.
+ * <p>
+ * A query intersects the postings of the pattern's fixed letters, smallest first, so it costs in proportion to the
+ * words matching them rather than to the dictionary, and only those words are checked against the letters available
+ * for the open squares.
+ */
+final class PatternIndex {
+
+    private static final int ALPHABET_SIZE = 26;
+    // An int ordinal is 32 bits and a bitmap 1 bit per word, so an array is the smaller below 1 word in 32
+    private static final int DENSE_FRACTION = 32;
+
+    private final Dictionary dictionary;
+    // Indexed by word length, null where the dictionary has no words of that length
+    private final Partition[] partitions;
+
+    private PatternIndex(Dictionary dictionary, Partition[] partitions) {
+        this.dictionary = dictionary;
+        this.partitions = partitions;
+    }
+
+    /**
+     * Words of one length, with a posting list for each letter at each position.
+     */
+    private static final class Partition {
+        // Dictionary indexes of the words in sorted order, a word's ordinal is its place here
+        private final int[] words;
+        // Indexed by position * ALPHABET_SIZE + letter, at most one of the two is set, neither if there are no words
+        private final int[][] sparse;
+        private final long[][] dense;
+        private final int[] cardinalities;
+
+        private Partition(int[] words, int length) {
+            this.words = words;
+            this.sparse = new int[length * ALPHABET_SIZE][];
+            this.dense = new long[length * ALPHABET_SIZE][];
+            this.cardinalities = new int[length * ALPHABET_SIZE];
+        }
+
+        private boolean contains(int posting, int ordinal) {
+            if (dense[posting] != null) {
+                return (dense[posting][ordinal >>> 6] & (1L << ordinal)) != 0;
+            }
+            return Arrays.binarySearch(sparse[posting], ordinal) >= 0;
+        }
+
+        private long getResidentBytes() {
+            long bytes = (long) words.length * Integer.BYTES + (long) cardinalities.length * Integer.BYTES;
+            for (int posting = 0; posting < cardinalities.length; posting++) {
+                if (sparse[posting] != null) {
+                    bytes += (long) sparse[posting].length * Integer.BYTES;
+                } else if (dense[posting] != null) {
+                    bytes += (long) dense[posting].length * Long.BYTES;
+                }
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Index every word of a dictionary made only of 'A' to 'Z', read straight from its word table.
+     * @param dictionary dictionary of known valid words
+     * @return the index
+     */
+    static PatternIndex of(Dictionary dictionary) {
+        ByteBuffer wordBytes = dictionary.getWordBytes();
+        IntBuffer wordOffsets = dictionary.getWordOffsets();
+        int[] lengths = new int[dictionary.size()];
+        int[] lengthCounts = new int[Byte.MAX_VALUE + 1];
+        int maxLength = 0;
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = alphaLength(wordBytes, wordOffsets.get(i), wordOffsets.get(i + 1));
+            if (lengths[i] > 0) {
+                lengthCounts[lengths[i]]++;
+                maxLength = Math.max(maxLength, lengths[i]);
+            }
+        }
+        int[][] lengthWords = new int[maxLength + 1][];
+        for (int length = 1; length <= maxLength; length++) {
+            lengthWords[length] = new int[lengthCounts[length]];
+            lengthCounts[length] = 0;
+        }
+        for (int i = 0; i < lengths.length; i++) {
+            if (lengths[i] > 0) {
+                lengthWords[lengths[i]][lengthCounts[lengths[i]]++] = i;
+            }
+        }
+        Partition[] partitions = new Partition[maxLength + 1];
+        for (int length = 1; length <= maxLength; length++) {
+            if (lengthWords[length].length > 0) {
+                partitions[length] = partition(wordBytes, wordOffsets, lengthWords[length], length);
+            }
+        }
+        return new PatternIndex(dictionary, partitions);
+    }
+
+    // Length of the word if it is all 'A' to 'Z' and no longer than Byte.MAX_VALUE, otherwise 0
+    private static int alphaLength(ByteBuffer wordBytes, int start, int end) {
+        if (end - start > Byte.MAX_VALUE) {
+            return 0;
+        }
+        for (int position = start; position < end; position++) {
+            int letter = wordBytes.get(position) - 'A';
+            if (letter < 0 || letter >= ALPHABET_SIZE) {
+                return 0;
+            }
+        }
+        return end - start;
+    }
+
+    private static Partition partition(ByteBuffer wordBytes, IntBuffer wordOffsets, int[] words, int length) {
+        Partition partition = new Partition(words, length);
+        // Count each posting first, so each can be given the smaller of the two forms before it is filled
+        for (int word : words) {
+            int start = wordOffsets.get(word);
+            for (int position = 0; position < length; position++) {
+                partition.cardinalities[position * ALPHABET_SIZE + wordBytes.get(start + position) - 'A']++;
+            }
+        }
+        for (int posting = 0; posting < partition.cardinalities.length; posting++) {
+            int cardinality = partition.cardinalities[posting];
+            if (cardinality > words.length / DENSE_FRACTION) {
+                partition.dense[posting] = new long[(words.length + Long.SIZE - 1) / Long.SIZE];
+            } else if (cardinality > 0) {
+                partition.sparse[posting] = new int[cardinality];
+            }
+        }
+        int[] filled = new int[partition.cardinalities.length];
+        for (int ordinal = 0; ordinal < words.length; ordinal++) {
+            int start = wordOffsets.get(words[ordinal]);
+            for (int position = 0; position < length; position++) {
+                int posting = position * ALPHABET_SIZE + wordBytes.get(start + position) - 'A';
+                if (partition.dense[posting] != null) {
+                    partition.dense[posting][ordinal >>> 6] |= 1L << ordinal;
+                } else {
+                    partition.sparse[posting][filled[posting]++] = ordinal;
+                }
+            }
+        }
+        return partition;
+    }
+
+    /**
+     * Find the words that match a pattern, the open squares filled from the letters available.
+     * @param pattern upper-case letters 'A' to 'Z' fixed in place and {@link WordWheelEngine#BLANK} for each open square
+     * @param available number of each letter, 'A' first, that may fill the open squares
+     * @param blanks number of blank tiles, each may fill an open square with any letter
+     * @return the matching words in dictionary order
+     */
+    List<String> findWords(String pattern, int[] available, int blanks) {
+        List<String> matches = new ArrayList<>();
+        int length = pattern.length();
+        Partition partition = length < partitions.length ? partitions[length] : null;
+        if (partition == null) {
+            return matches;
+        }
+        int[] fixed = new int[length];
+        int fixedCount = 0;
+        for (int position = 0; position < length; position++) {
+            if (pattern.charAt(position) != WordWheelEngine.BLANK) {
+                int posting = position * ALPHABET_SIZE + pattern.charAt(position) - 'A';
+                if (partition.cardinalities[posting] == 0) {
+                    return matches;
+                }
+                fixed[fixedCount++] = posting;
+            }
+        }
+        int tiles = blanks;
+        for (int count : available) {
+            tiles += count;
+        }
+        if (length - fixedCount > tiles) {
+            return matches;
+        }
+        // Smallest first, so the lead posting bounds the words visited and the rest are only probed
+        Integer[] order = new Integer[fixedCount];
+        for (int i = 0; i < fixedCount; i++) {
+            order[i] = fixed[i];
+        }
+        Arrays.sort(order, (left, right) -> Integer.compare(partition.cardinalities[left],
+                partition.cardinalities[right]));
+        ByteBuffer wordBytes = dictionary.getWordBytes();
+        IntBuffer wordOffsets = dictionary.getWordOffsets();
+        int[] remaining = new int[ALPHABET_SIZE];
+        if (fixedCount == 0) {
+            for (int ordinal = 0; ordinal < partition.words.length; ordinal++) {
+                addIfFilled(partition.words[ordinal], pattern, available, blanks, remaining, wordBytes, wordOffsets,
+                        matches);
+            }
+        } else if (partition.sparse[order[0]] != null) {
+            for (int ordinal : partition.sparse[order[0]]) {
+                boolean matched = true;
+                for (int i = 1; i < fixedCount && matched; i++) {
+                    matched = partition.contains(order[i], ordinal);
+                }
+                if (matched) {
+                    addIfFilled(partition.words[ordinal], pattern, available, blanks, remaining, wordBytes,
+                            wordOffsets, matches);
+                }
+            }
+        } else {
+            // The smallest is dense so every posting is, they are ANDed a word of bits at a time
+            long[] lead = partition.dense[order[0]];
+            for (int block = 0; block < lead.length; block++) {
+                long bits = lead[block];
+                for (int i = 1; i < fixedCount && bits != 0; i++) {
+                    bits &= partition.dense[order[i]][block];
+                }
+                for (; bits != 0; bits &= bits - 1) {
+                    int ordinal = block * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                    addIfFilled(partition.words[ordinal], pattern, available, blanks, remaining, wordBytes,
+                            wordOffsets, matches);
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Add the word if the letters in its open squares can be taken from those available, with blanks for the rest
+    private void addIfFilled(int word, String pattern, int[] available, int blanks, int[] remaining,
+                             ByteBuffer wordBytes, IntBuffer wordOffsets, List<String> matches) {
+        System.arraycopy(available, 0, remaining, 0, ALPHABET_SIZE);
+        int start = wordOffsets.get(word);
+        int blanksLeft = blanks;
+        for (int position = 0; position < pattern.length(); position++) {
+            if (pattern.charAt(position) == WordWheelEngine.BLANK) {
+                int letter = wordBytes.get(start + position) - 'A';
+                if (remaining[letter] > 0) {
+                    remaining[letter]--;
+                } else if (blanksLeft > 0) {
+                    blanksLeft--;
+                } else {
+                    return;
+                }
+            }
+        }
+        matches.add(dictionary.getWord(word));
+    }
+
+    /**
+     *
+     * @return bytes held by the partitions and their postings
+     */
+    long getResidentBytes() {
+        long bytes = 0;
+        for (Partition partition : partitions) {
+            if (partition != null) {
+                bytes += partition.getResidentBytes();
+            }
+        }
+        return bytes;
+    }
+}
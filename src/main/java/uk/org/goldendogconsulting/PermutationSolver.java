@@ -0,0 +1,319 @@
+package uk.org.goldendogconsulting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Brute force solver, every permutation of the wheel is generated and each is searched by a {@link FindCombination}
+ * for all combinations of its letters. Slow, but kept as the reference implementation the other solvers are checked
+ * against.
+ * <p>
+ * The number of distinct combinations to find is counted from the letter multiplicities by {@link CombinationCounter}.
+ * Built without a combinations set the solver holds neither the permutations nor the combinations, each permutation is
+ * unranked from its index when searched and a {@link CombinationCoverage} records which letter multisets have been
+ * expanded, so a solve needs kilobytes rather than hundreds of megabytes and the counts are kept only as statistics.
+ * Each task collects what it finds privately and merges it into the shared sets when its range is done.
+ * The work still grows with the factorial of the wheel size, so wheels longer than {@value #MAX_LETTERS} letters are
+ * left to the other solvers.
+ */
+public class PermutationSolver implements WordSolver {
+    private final PackedWordSet dictionary;
+    private final Set<String> permutations;
+    private final Set<String> combinationsSet;
+    private final SolverScheduler scheduler;
+    private volatile long combinationsToFind;
+    private volatile long combinationsFound;
+
+    private static final int PERMUTATIONS_PER_TASK = 64;
+    // Generation is timed for one permutation in this many, so the clock is not read for every permutation
+    private static final int GENERATION_SAMPLE_INTERVAL = 16;
+
+    /**
+     * Most letters a wheel may have to be searched by permutation, 10! permutations already take seconds.
+     */
+    public static final int MAX_LETTERS = 10;
+
+    private static final Logger LOG = LogManager.getLogger(PermutationSolver.class);
+
+    /**
+     *
+     * @param dictionary : dictionary of known valid words
+     * @param permutations : permutations of the wheel found
+     * @param combinationsSet : combinations of the wheel found, this is a thread safe collection
+     * @param scheduler : pool the permutations are searched across
+     */
+    public PermutationSolver(PackedWordSet dictionary, Set<String> permutations, Set<String> combinationsSet,
+                             SolverScheduler scheduler) {
+        this.dictionary = dictionary;
+        this.permutations = permutations;
+        this.combinationsSet = combinationsSet;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Solver that keeps neither the permutations nor the combinations it searches.
+     *
+     * @param dictionary : dictionary of known valid words
+     * @param scheduler : pool the permutations are searched across
+     */
+    public PermutationSolver(PackedWordSet dictionary, SolverScheduler scheduler) {
+        this(dictionary, null, null, scheduler);
+    }
+
+    /**
+     * Permutation of the letters with the given rank, the rank's factorial number system digits pick each letter in
+     * turn from those not yet used.
+     * @param letters letters to arrange, at most 31
+     * @param rank index of the permutation, from 0 to letters.length()! - 1
+     * @param permutation filled with the permutation, at least as long as the letters
+     */
+    static void permutationAt(String letters, int rank, char[] permutation) {
+        int length = letters.length();
+        int factorial = 1;
+        for (int i = 2; i < length; i++) {
+            factorial *= i;
+        }
+        int used = 0;
+        for (int position = 0; position < length; position++) {
+            int digit = rank / factorial;
+            rank %= factorial;
+            int index = -1;
+            for (int skipped = -1; skipped < digit; ) {
+                index++;
+                if ((used & (1 << index)) == 0) {
+                    skipped++;
+                }
+            }
+            used |= 1 << index;
+            permutation[position] = letters.charAt(index);
+            if (position < length - 1) {
+                factorial /= length - 1 - position;
+            }
+        }
+    }
+
+    static String permutationAt(String letters, int rank) {
+        char[] permutation = new char[letters.length()];
+        permutationAt(letters, rank, permutation);
+        return new String(permutation);
+    }
+
+    private void findPermutation(String str, String ans) {
+        // If string is empty, this is the bottom of the recursive call when a permutation has been found
+        if (str.length() == 0) {
+            permutations.add(ans);
+            return;
+        }
+
+        for (int i = 0; i < str.length(); i++) {
+            // ith character of str
+            char ch = str.charAt(i);
+
+            // Rest of the string after excluding the ith character
+            String ros = str.substring(0, i) + str.substring(i + 1);
+
+            // Recursive call
+            findPermutation(ros, ans + ch);
+        }
+    }
+
+    @Override
+    public boolean findWords(String letters, Set<String> validWords, SearchControl control) {
+        String centreLetter = letters.substring(0, 1);
+        combinationsToFind = CombinationCounter.distinctArrangements(CombinationCounter.multiplicities(letters));
+
+        LOG.debug("Looking for " +combinationsToFind +" combinations of \"" +letters +"\"");
+
+        if (combinationsSet == null) {
+            return findWordsUncollected(letters, centreLetter, new CombinationCoverage(letters), validWords, control);
+        }
+        SolverMetrics metrics = SolverMetrics.getDefault();
+        long generationStart = metrics.start();
+        findPermutation(letters, "");
+        metrics.record(SolverMetrics.Phase.PERMUTATION_GENERATION, generationStart);
+        metrics.add(SolverMetrics.Counter.PERMUTATIONS_GENERATED, permutations.size());
+        // Kept in hash order, each permutation only covers combinations that are runs of its letters so neighbouring
+        // permutations that share a long prefix would find few new combinations between them
+        List<String> permutationList = new ArrayList<>(permutations);
+        AtomicLong found = new AtomicLong();
+        try {
+            scheduler.invoke(new PermutationRange(permutationList, letters, 0, permutationList.size(), validWords,
+                    centreLetter, found, null, control));
+        } catch (RuntimeException exception) {
+            LOG.error("Exception " +exception.getClass().getName() +"occurred : " +exception.getMessage(), exception);
+            return false;
+        } finally {
+            combinationsFound = found.get();
+        }
+        return !control.isStopped() || found.get() >= combinationsToFind;
+    }
+
+    /**
+     * Without a combinations set only runs within the length range are searched; a solver collecting combinations
+     * searches them all.
+     */
+    @Override
+    public boolean findWords(String letters, int minLength, int maxLength, Set<String> validWords,
+                             SearchControl control) {
+        if (combinationsSet != null) {
+            return findWords(letters, validWords, control);
+        }
+        combinationsToFind = CombinationCounter.distinctArrangements(CombinationCounter.multiplicities(letters));
+        return findWordsUncollected(letters, letters.substring(0, 1),
+                new CombinationCoverage(letters, minLength, maxLength), validWords, control);
+    }
+
+    private boolean findWordsUncollected(String letters, String centreLetter, CombinationCoverage coverage,
+                                         Set<String> validWords, SearchControl control) {
+        int permutationCount = 1;
+        for (int i = 2; i <= letters.length(); i++) {
+            permutationCount *= i;
+        }
+        try {
+            // Repeated letters make some ranks the same permutation, these find every run already covered
+            scheduler.invoke(new PermutationRange(null, letters, 0, permutationCount, validWords, centreLetter,
+                    null, coverage, control));
+        } catch (RuntimeException exception) {
+            LOG.error("Exception " +exception.getClass().getName() +"occurred : " +exception.getMessage(), exception);
+            return false;
+        } finally {
+            combinationsFound = coverage.getArrangementsCovered();
+        }
+        return !control.isStopped() || coverage.isComplete();
+    }
+
+    /**
+     * Range of the permutations, split in half until small enough to search with {@link FindCombination}.
+     */
+    private final class PermutationRange extends RecursiveAction {
+        private final List<String> permutationList;
+        private final String letters;
+        private final int from;
+        private final int to;
+        private final Set<String> validWords;
+        private final String centreLetter;
+        private final AtomicLong combinationsFound;
+        private final CombinationCoverage coverage;
+        private final SearchControl control;
+
+        private PermutationRange(List<String> permutationList, String letters, int from, int to,
+                                 Set<String> validWords, String centreLetter, AtomicLong combinationsFound,
+                                 CombinationCoverage coverage, SearchControl control) {
+            this.permutationList = permutationList;
+            this.letters = letters;
+            this.from = from;
+            this.to = to;
+            this.validWords = validWords;
+            this.centreLetter = centreLetter;
+            this.combinationsFound = combinationsFound;
+            this.coverage = coverage;
+            this.control = control;
+        }
+
+        private boolean isFinished() {
+            if (control.isStopped()) {
+                return true;
+            }
+            return coverage == null ? combinationsFound.get() >= combinationsToFind : coverage.isComplete();
+        }
+
+        @Override
+        protected void compute() {
+            if (isFinished()) {
+                return;
+            }
+            if (to - from > PERMUTATIONS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PermutationRange(permutationList, letters, from, middle, validWords, centreLetter,
+                                combinationsFound, coverage, control),
+                        new PermutationRange(permutationList, letters, middle, to, validWords, centreLetter,
+                                combinationsFound, coverage, control));
+                return;
+            }
+            SolverMetrics metrics = SolverMetrics.getDefault();
+            // The clock is only read when recording, around the range and a sample of the permutations generated,
+            // and the counts are added once for the whole range
+            boolean timed = metrics.isEnabled();
+            long startNanos = timed ? System.nanoTime() : 0;
+            long sampledGenerationNanos = 0;
+            long generationSamples = 0;
+            long permutationsGenerated = 0;
+            long dictionaryProbes = 0;
+            long duplicateCombinations = 0;
+            try {
+                if (coverage != null) {
+                    // One search and buffer for the whole range, so nothing is allocated per permutation
+                    FindCombination findCombination = new FindCombination(coverage, validWords, centreLetter,
+                            dictionary, control);
+                    char[] permutation = new char[letters.length()];
+                    try {
+                        for (int i = from; i < to; i++) {
+                            if (timed && (i - from) % GENERATION_SAMPLE_INTERVAL == 0) {
+                                long generationStart = System.nanoTime();
+                                permutationAt(letters, i, permutation);
+                                sampledGenerationNanos += System.nanoTime() - generationStart;
+                                generationSamples++;
+                            } else {
+                                permutationAt(letters, i, permutation);
+                            }
+                            permutationsGenerated++;
+                            if (!findCombination.search(permutation)) {
+                                return;
+                            }
+                        }
+                    } finally {
+                        findCombination.merge();
+                        dictionaryProbes = findCombination.getDictionaryProbes();
+                    }
+                    return;
+                }
+                // One search for the whole range, what it finds is merged into the shared sets once at the end
+                FindCombination findCombination = new FindCombination(combinationsSet, validWords, combinationsToFind,
+                        centreLetter, dictionary, combinationsFound, control);
+                try {
+                    for (int i = from; i < to; i++) {
+                        if (!findCombination.search(permutationList.get(i).toCharArray())) {
+                            return;
+                        }
+                    }
+                } finally {
+                    findCombination.merge();
+                    dictionaryProbes = findCombination.getDictionaryProbes();
+                    duplicateCombinations = findCombination.getDuplicateCombinations();
+                }
+            } finally {
+                if (timed) {
+                    // Scaled up from the sample to every permutation the range generated
+                    long generationNanos = generationSamples == 0 ? 0
+                            : sampledGenerationNanos * permutationsGenerated / generationSamples;
+                    if (coverage != null) {
+                        metrics.recordNanos(SolverMetrics.Phase.PERMUTATION_GENERATION, generationNanos);
+                    }
+                    metrics.recordNanos(SolverMetrics.Phase.COMBINATION_SEARCH,
+                            System.nanoTime() - startNanos - generationNanos);
+                    metrics.add(SolverMetrics.Counter.PERMUTATIONS_GENERATED, permutationsGenerated);
+                    metrics.add(SolverMetrics.Counter.DICTIONARY_PROBES, dictionaryProbes);
+                    metrics.add(SolverMetrics.Counter.DUPLICATE_COMBINATIONS, duplicateCombinations);
+                }
+            }
+        }
+    }
+
+    public long getCombinationsToFind() {
+        return combinationsToFind;
+    }
+
+    /**
+     *
+     * @return distinct combinations searched by the last call, counted even when they were not collected
+     */
+    public long getCombinationsFound() {
+        return combinationsFound;
+    }
+}
@@ -0,0 +1,366 @@
+package uk.org.goldendogconsulting;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Precomputed answers to every puzzle made from a nine letter dictionary word, built by
+ * {@link PuzzleCatalogueBuilder}.
+ * <p>
+ * A puzzle is catalogued under its canonical key, the centre letter followed by the other letters sorted, since the
+ * order of the wheel letters does not change the answer. Each entry holds the number of words, the number of each
+ * length and the nine letter words; the words themselves are not held, so a catalogue of every puzzle is a few
+ * megabytes. The file is a header, holding a magic number, the format version, a CRC32 of the body and a fingerprint
+ * of the dictionary the answers came from, followed by one record per puzzle in key order. When loaded the keys are
+ * put in an open-addressing table, so looking a puzzle up costs the same however many are catalogued.
+ */
+public final class PuzzleCatalogue {
+
+    /**
+     * System property giving the location of the catalogue, {@value #DEFAULT_CATALOGUE} if not set.
+     */
+    public static final String CATALOGUE_PROPERTY = "wordwheel.catalogue";
+    public static final String DEFAULT_CATALOGUE = "puzzles.catalogue";
+
+    static final int WHEEL_SIZE = 9;
+    static final int MAGIC = 0x57575043; // "WWPC"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    private final long dictionaryFingerprint;
+    private final long[] slotKeys;
+    private final int[] slotEntries;
+    private final long[] keys;
+    private final int[] wordCounts;
+    private final char[] lengthCounts;
+    private final int[] nineLetterOffsets;
+    private final long[] nineLetterWords;
+
+    private static final Logger LOG = LogManager.getLogger(PuzzleCatalogue.class);
+
+    private PuzzleCatalogue(long dictionaryFingerprint, long[] keys, int[] wordCounts, char[] lengthCounts,
+                            int[] nineLetterOffsets, long[] nineLetterWords) {
+        this.dictionaryFingerprint = dictionaryFingerprint;
+        this.keys = keys;
+        this.wordCounts = wordCounts;
+        this.lengthCounts = lengthCounts;
+        this.nineLetterOffsets = nineLetterOffsets;
+        this.nineLetterWords = nineLetterWords;
+        int capacity = Math.max(16, Integer.highestOneBit(Math.max(keys.length, 1)) << 2);
+        slotKeys = new long[capacity];
+        slotEntries = new int[capacity];
+        for (int entry = 0; entry < keys.length; entry++) {
+            int slot = slot(keys[entry]);
+            while (slotKeys[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            slotKeys[slot] = keys[entry];
+            slotEntries[slot] = entry;
+        }
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash >>> 32) & (slotKeys.length - 1);
+    }
+
+    /**
+     * The key a puzzle is catalogued under, the order of the wheel letters does not change its answer.
+     * @param letters upper-case wheel letters, the first letter is the centre letter
+     * @return the centre letter followed by the other letters in alphabetical order
+     */
+    public static String canonicalKey(String letters) {
+        if (letters.isEmpty()) {
+            return letters;
+        }
+        char[] wheel = letters.substring(1).toCharArray();
+        Arrays.sort(wheel);
+        return letters.charAt(0) + new String(wheel);
+    }
+
+    /**
+     * A fingerprint of the words of a dictionary, a catalogue is only used with the dictionary it was built from.
+     * @param dictionary dictionary of known valid words
+     * @return CRC32 of the word table
+     */
+    static long fingerprint(Dictionary dictionary) {
+        CRC32 crc = new CRC32();
+        crc.update(dictionary.getWordBytes());
+        IntBuffer offsets = dictionary.getWordOffsets();
+        ByteBuffer offsetBytes = ByteBuffer.allocate(offsets.remaining() * Integer.BYTES);
+        offsetBytes.asIntBuffer().put(offsets);
+        crc.update(offsetBytes);
+        return crc.getValue();
+    }
+
+    /**
+     * Load the catalogue named by {@link #CATALOGUE_PROPERTY}.
+     * @param dictionary dictionary the catalogue must have been built from
+     * @return the catalogue, null if there is none or it is not valid for the dictionary
+     */
+    public static PuzzleCatalogue loadDefault(Dictionary dictionary) {
+        return load(Paths.get(System.getProperty(CATALOGUE_PROPERTY, DEFAULT_CATALOGUE)), dictionary);
+    }
+
+    /**
+     *
+     * @param catalogue path of the catalogue file
+     * @param dictionary dictionary the catalogue must have been built from
+     * @return the catalogue, null if there is no catalogue or it is not valid for the dictionary
+     */
+    public static PuzzleCatalogue load(Path catalogue, Dictionary dictionary) {
+        ByteBuffer contents;
+        try (FileChannel channel = FileChannel.open(catalogue, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                LOG.warn("Puzzle catalogue " +catalogue +" has invalid size " +size +", ignoring it");
+                return null;
+            }
+            contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (NoSuchFileException noSuchFileException) {
+            LOG.debug("No puzzle catalogue at " +catalogue);
+            return null;
+        } catch (IOException ioException) {
+            LOG.warn("Unable to read puzzle catalogue " +catalogue +" : " +ioException.getMessage());
+            return null;
+        }
+        if (contents.getInt(0) != MAGIC || contents.getInt(4) != VERSION) {
+            LOG.warn("Puzzle catalogue " +catalogue +" is not a version " +VERSION +" catalogue, ignoring it");
+            return null;
+        }
+        long checksum = contents.getLong(8);
+        long fingerprint = contents.getLong(16);
+        int puzzleCount = contents.getInt(24);
+        if (contents.getInt(28) != WHEEL_SIZE || puzzleCount < 0) {
+            LOG.warn("Puzzle catalogue " +catalogue +" has an invalid header, ignoring it");
+            return null;
+        }
+        if (fingerprint != fingerprint(dictionary)) {
+            LOG.warn("Puzzle catalogue " +catalogue +" was built from a different dictionary, ignoring it");
+            return null;
+        }
+        ByteBuffer body = contents.duplicate();
+        body.position(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if (crc.getValue() != checksum) {
+            LOG.warn("Puzzle catalogue " +catalogue +" checksum does not match, ignoring it");
+            return null;
+        }
+        PuzzleCatalogue puzzleCatalogue = read(body, puzzleCount, fingerprint);
+        if (puzzleCatalogue == null) {
+            LOG.warn("Puzzle catalogue " +catalogue +" records are inconsistent, ignoring it");
+        } else {
+            LOG.debug("Loaded puzzle catalogue " +catalogue +" of " +puzzleCount +" puzzles");
+        }
+        return puzzleCatalogue;
+    }
+
+    private static PuzzleCatalogue read(ByteBuffer body, int puzzleCount, long fingerprint) {
+        long[] keys = new long[puzzleCount];
+        int[] wordCounts = new int[puzzleCount];
+        char[] lengthCounts = new char[puzzleCount * WHEEL_SIZE];
+        int[] nineLetterOffsets = new int[puzzleCount + 1];
+        List<Long> nineLetterList = new ArrayList<>();
+        for (int entry = 0; entry < puzzleCount; entry++) {
+            if (body.remaining() < Record.FIXED_SIZE) {
+                return null;
+            }
+            Record record = Record.read(body);
+            if (record == null) {
+                return null;
+            }
+            keys[entry] = record.key;
+            wordCounts[entry] = record.wordCount;
+            System.arraycopy(record.lengthCounts, 0, lengthCounts, entry * WHEEL_SIZE, WHEEL_SIZE);
+            for (long word : record.nineLetterWords) {
+                nineLetterList.add(word);
+            }
+            nineLetterOffsets[entry + 1] = nineLetterList.size();
+        }
+        if (body.hasRemaining()) {
+            return null;
+        }
+        long[] nineLetterWords = new long[nineLetterList.size()];
+        for (int i = 0; i < nineLetterWords.length; i++) {
+            nineLetterWords[i] = nineLetterList.get(i);
+        }
+        return new PuzzleCatalogue(fingerprint, keys, wordCounts, lengthCounts, nineLetterOffsets, nineLetterWords);
+    }
+
+    /**
+     *
+     * @param letters upper-case wheel letters, the first letter is the centre letter, in any order
+     * @return the catalogued answer, null if the puzzle is not catalogued
+     */
+    public Entry lookup(String letters) {
+        if (letters.length() != WHEEL_SIZE) {
+            return null;
+        }
+        long key = PackedWordSet.pack(canonicalKey(letters));
+        if (key <= 0) {
+            return null;
+        }
+        int slot = slot(key);
+        long slotKey;
+        while ((slotKey = slotKeys[slot]) != 0) {
+            if (slotKey == key) {
+                return new Entry(slotEntries[slot]);
+            }
+            slot = (slot + 1) & (slotKeys.length - 1);
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @return number of puzzles catalogued
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    long getDictionaryFingerprint() {
+        return dictionaryFingerprint;
+    }
+
+    /**
+     * The catalogued answer to one puzzle.
+     */
+    public final class Entry {
+        private final int entry;
+
+        private Entry(int entry) {
+            this.entry = entry;
+        }
+
+        /**
+         *
+         * @return canonical key of the puzzle
+         */
+        public String getKey() {
+            return PackedWordSet.unpack(keys[entry]);
+        }
+
+        public int getWordCount() {
+            return wordCounts[entry];
+        }
+
+        /**
+         *
+         * @param length word length
+         * @return number of words of that length
+         */
+        public int getWordCount(int length) {
+            return length >= 1 && length <= WHEEL_SIZE ? lengthCounts[entry * WHEEL_SIZE + length - 1] : 0;
+        }
+
+        /**
+         *
+         * @return the words that use every letter of the wheel, in alphabetical order
+         */
+        public List<String> getNineLetterWords() {
+            List<String> words = new ArrayList<>(nineLetterOffsets[entry + 1] - nineLetterOffsets[entry]);
+            for (int i = nineLetterOffsets[entry]; i < nineLetterOffsets[entry + 1]; i++) {
+                words.add(PackedWordSet.unpack(nineLetterWords[i]));
+            }
+            return Collections.unmodifiableList(words);
+        }
+    }
+
+    /**
+     * One puzzle's answer as written to the catalogue and to a partial build: the packed key, the word count, the
+     * count of each length from 1 to 9 and the packed nine letter words preceded by how many there are.
+     */
+    static final class Record {
+        static final int FIXED_SIZE = Long.BYTES + Integer.BYTES + WHEEL_SIZE * Character.BYTES + 1;
+
+        final long key;
+        final int wordCount;
+        final char[] lengthCounts;
+        final long[] nineLetterWords;
+
+        private Record(long key, int wordCount, char[] lengthCounts, long[] nineLetterWords) {
+            this.key = key;
+            this.wordCount = wordCount;
+            this.lengthCounts = lengthCounts;
+            this.nineLetterWords = nineLetterWords;
+        }
+
+        /**
+         *
+         * @param key canonical key of the puzzle
+         * @param result the puzzle solved
+         * @return the record of the result
+         */
+        static Record of(String key, WordWheelResult result) {
+            char[] lengthCounts = new char[WHEEL_SIZE];
+            for (int length = 1; length <= WHEEL_SIZE; length++) {
+                lengthCounts[length - 1] = (char) Math.min(Character.MAX_VALUE, result.getWordCount(length));
+            }
+            List<String> nineLetter = result.getNineLetterWords();
+            long[] packed = new long[Math.min(nineLetter.size(), Byte.MAX_VALUE)];
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = PackedWordSet.pack(nineLetter.get(i));
+            }
+            return new Record(PackedWordSet.pack(key), result.getWordCount(), lengthCounts, packed);
+        }
+
+        int size() {
+            return FIXED_SIZE + nineLetterWords.length * Long.BYTES;
+        }
+
+        void write(ByteBuffer buffer) {
+            buffer.putLong(key).putInt(wordCount);
+            for (char count : lengthCounts) {
+                buffer.putChar(count);
+            }
+            buffer.put((byte) nineLetterWords.length);
+            for (long word : nineLetterWords) {
+                buffer.putLong(word);
+            }
+        }
+
+        /**
+         *
+         * @param buffer positioned at the start of a record
+         * @return the record, with the buffer positioned after it, or null if the buffer ends part way through
+         */
+        static Record read(ByteBuffer buffer) {
+            if (buffer.remaining() < FIXED_SIZE) {
+                return null;
+            }
+            int start = buffer.position();
+            long key = buffer.getLong();
+            int wordCount = buffer.getInt();
+            char[] lengthCounts = new char[WHEEL_SIZE];
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                lengthCounts[i] = buffer.getChar();
+            }
+            int nineLetterCount = buffer.get();
+            if (key <= 0 || nineLetterCount < 0 || buffer.remaining() < nineLetterCount * Long.BYTES) {
+                buffer.position(start);
+                return null;
+            }
+            long[] nineLetterWords = new long[nineLetterCount];
+            for (int i = 0; i < nineLetterCount; i++) {
+                nineLetterWords[i] = buffer.getLong();
+            }
+            return new Record(key, wordCount, lengthCounts, nineLetterWords);
+        }
+    }
+}
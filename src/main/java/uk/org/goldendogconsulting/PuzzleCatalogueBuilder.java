@@ -0,0 +1,301 @@
+package uk.org.goldendogconsulting;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Builds a {@link PuzzleCatalogue} of every puzzle that can be made from the dictionary: each nine letter word with
+ * each of its distinct letters as the centre letter.
+ * <p>
+ * Puzzles are solved in batches of {@value #BATCH_SIZE}, each batch split across the {@link SolverScheduler} of the
+ * engine, and every finished batch is appended to a partial file next to the catalogue and forced to disk before the
+ * next is started. A build that is interrupted picks up from the last batch in the partial file, so only the batch in
+ * flight is solved again. Once every puzzle is solved the catalogue is written and replaced atomically and the
+ * partial file removed.
+ */
+public class PuzzleCatalogueBuilder {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int PUZZLES_PER_TASK = 16;
+    private static final int PARTIAL_MAGIC = 0x57575050; // "WWPP"
+    private static final int PARTIAL_HEADER_SIZE = 24;
+    private static final long MILLION = 1000000;
+
+    private final WordWheelEngine engine;
+    private final int batchSize;
+
+    private static final Logger LOG = LogManager.getLogger(PuzzleCatalogueBuilder.class);
+
+    /**
+     *
+     * @param engine : engine the puzzles are solved on, its dictionary is the one catalogued
+     */
+    public PuzzleCatalogueBuilder(WordWheelEngine engine) {
+        this(engine, BATCH_SIZE);
+    }
+
+    PuzzleCatalogueBuilder(WordWheelEngine engine, int batchSize) {
+        this.engine = engine;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Every distinct puzzle the dictionary's nine letter words make, by canonical key.
+     * @param dictionary dictionary of known valid words
+     * @return the canonical keys in alphabetical order
+     */
+    static List<String> puzzles(Dictionary dictionary) {
+        TreeSet<String> keys = new TreeSet<>();
+        for (int i = 0; i < dictionary.size(); i++) {
+            String word = dictionary.getWord(i);
+            if (word.length() != PuzzleCatalogue.WHEEL_SIZE || PackedWordSet.pack(word) <= 0) {
+                continue;
+            }
+            char[] letters = word.toCharArray();
+            Arrays.sort(letters);
+            for (int centre = 0; centre < letters.length; centre++) {
+                if (centre > 0 && letters[centre] == letters[centre - 1]) {
+                    continue;
+                }
+                // The sorted letters with the centre moved to the front
+                keys.add(letters[centre] + new String(letters, 0, centre)
+                        + new String(letters, centre + 1, letters.length - centre - 1));
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Solve every puzzle and write the catalogue, carrying on from a partial file left by an earlier build.
+     * @param catalogue path of the catalogue file
+     * @return the catalogue written
+     * @throws IOException if the catalogue cannot be written
+     */
+    public PuzzleCatalogue build(Path catalogue) throws IOException {
+        Dictionary dictionary = engine.getDictionary();
+        long fingerprint = PuzzleCatalogue.fingerprint(dictionary);
+        List<String> puzzles = puzzles(dictionary);
+        Path absolute = catalogue.toAbsolutePath();
+        Path partial = absolute.resolveSibling(absolute.getFileName() + ".partial");
+
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            int done = resume(channel, puzzles, fingerprint, batchSize);
+            if (done > 0) {
+                LOG.info("Resuming puzzle catalogue build after " +done +" of " +puzzles.size() +" puzzles");
+            }
+            SolverScheduler scheduler = engine.getScheduler() == null ? SolverScheduler.getDefault()
+                    : engine.getScheduler();
+            long startTime = System.nanoTime();
+            int solvedThisRun = 0;
+            while (done < puzzles.size()) {
+                int end = Math.min(done + batchSize, puzzles.size());
+                PuzzleCatalogue.Record[] records = scheduler.invoke(new SolveRange(puzzles, done, end));
+                append(channel, records);
+                solvedThisRun += end - done;
+                done = end;
+                progress(done, puzzles.size(), solvedThisRun, System.nanoTime() - startTime);
+            }
+            write(channel, absolute, puzzles.size(), fingerprint);
+        }
+        Files.delete(partial);
+        return PuzzleCatalogue.load(absolute, dictionary);
+    }
+
+    /**
+     * Report a batch written to the partial file.
+     * @param done puzzles solved so far, including those from an earlier build
+     * @param total puzzles in the catalogue
+     * @param solvedThisRun puzzles solved by this build
+     * @param elapsedNanos time spent by this build
+     */
+    void progress(int done, int total, int solvedThisRun, long elapsedNanos) {
+        long elapsedMsecs = Math.max(1, elapsedNanos / MILLION);
+        LOG.info("Catalogued " +done +" of " +total +" puzzles (" +(100L * done / total) +"%), "
+                +(solvedThisRun * 1000L / elapsedMsecs) +" puzzles/sec");
+    }
+
+    /**
+     * Check the partial file belongs to this build and count the puzzles it holds, cutting off a record that was
+     * only partly written. A partial file from another dictionary, or in any other state, is started again.
+     */
+    private static int resume(FileChannel channel, List<String> puzzles, long fingerprint, int batchSize)
+            throws IOException {
+        long size = channel.size();
+        if (size >= PARTIAL_HEADER_SIZE && size <= Integer.MAX_VALUE) {
+            ByteBuffer contents = ByteBuffer.allocate((int) size);
+            while (contents.hasRemaining() && channel.read(contents, contents.position()) >= 0) {
+                // read until full
+            }
+            contents.flip();
+            if (contents.getInt() == PARTIAL_MAGIC && contents.getInt() == PuzzleCatalogue.VERSION
+                    && contents.getLong() == fingerprint && contents.getInt() == puzzles.size()
+                    && contents.getInt() == PuzzleCatalogue.WHEEL_SIZE) {
+                int done = 0;
+                PuzzleCatalogue.Record record;
+                while (done < puzzles.size() && (record = PuzzleCatalogue.Record.read(contents)) != null
+                        && record.key == PackedWordSet.pack(puzzles.get(done))) {
+                    done++;
+                }
+                // Only a whole batch is ever forced to disk, anything after the last one was cut short
+                if (done < puzzles.size()) {
+                    done -= done % batchSize;
+                }
+                channel.truncate(position(contents, done));
+                channel.position(channel.size());
+                return done;
+            }
+            LOG.warn("Partial puzzle catalogue does not match this build, starting again");
+        }
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(PARTIAL_HEADER_SIZE);
+        header.putInt(PARTIAL_MAGIC)
+                .putInt(PuzzleCatalogue.VERSION)
+                .putLong(fingerprint)
+                .putInt(puzzles.size())
+                .putInt(PuzzleCatalogue.WHEEL_SIZE);
+        header.flip();
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(true);
+        return 0;
+    }
+
+    private static long position(ByteBuffer contents, int records) {
+        ByteBuffer buffer = contents.duplicate();
+        buffer.position(PARTIAL_HEADER_SIZE);
+        for (int i = 0; i < records; i++) {
+            PuzzleCatalogue.Record.read(buffer);
+        }
+        return buffer.position();
+    }
+
+    private static void append(FileChannel channel, PuzzleCatalogue.Record[] records) throws IOException {
+        int size = 0;
+        for (PuzzleCatalogue.Record record : records) {
+            size += record.size();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (PuzzleCatalogue.Record record : records) {
+            record.write(buffer);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Write the catalogue from the records in the partial file, replaced atomically so a reader never loads a
+     * partial catalogue.
+     */
+    private static void write(FileChannel partial, Path catalogue, int puzzleCount, long fingerprint)
+            throws IOException {
+        long bodySize = partial.size() - PARTIAL_HEADER_SIZE;
+        if (bodySize > Integer.MAX_VALUE - PuzzleCatalogue.HEADER_SIZE) {
+            throw new IOException("Puzzle catalogue of " +bodySize +" bytes is too large");
+        }
+        ByteBuffer body = ByteBuffer.allocate((int) bodySize);
+        while (body.hasRemaining() && partial.read(body, PARTIAL_HEADER_SIZE + body.position()) >= 0) {
+            // read until full
+        }
+        body.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(PuzzleCatalogue.HEADER_SIZE);
+        header.putInt(PuzzleCatalogue.MAGIC)
+                .putInt(PuzzleCatalogue.VERSION)
+                .putLong(crc.getValue())
+                .putLong(fingerprint)
+                .putInt(puzzleCount)
+                .putInt(PuzzleCatalogue.WHEEL_SIZE);
+        header.flip();
+
+        Path temporary = Files.createTempFile(catalogue.getParent(), catalogue.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, catalogue, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Range of puzzles, split in half until it is small enough to solve in turn.
+     */
+    private final class SolveRange extends RecursiveTask<PuzzleCatalogue.Record[]> {
+        private final List<String> puzzles;
+        private final int from;
+        private final int to;
+
+        private SolveRange(List<String> puzzles, int from, int to) {
+            this.puzzles = puzzles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected PuzzleCatalogue.Record[] compute() {
+            if (to - from > PUZZLES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                SolveRange right = new SolveRange(puzzles, middle, to);
+                right.fork();
+                PuzzleCatalogue.Record[] left = new SolveRange(puzzles, from, middle).compute();
+                PuzzleCatalogue.Record[] rightRecords = right.join();
+                PuzzleCatalogue.Record[] records = Arrays.copyOf(left, to - from);
+                System.arraycopy(rightRecords, 0, records, left.length, rightRecords.length);
+                return records;
+            }
+            PuzzleCatalogue.Record[] records = new PuzzleCatalogue.Record[to - from];
+            for (int i = from; i < to; i++) {
+                String puzzle = puzzles.get(i);
+                try {
+                    records[i - from] = PuzzleCatalogue.Record.of(puzzle, engine.findWords(puzzle));
+                } catch (PermutateStringException permutateStringException) {
+                    // Every puzzle is nine letters from 'A' to 'Z'
+                    throw new IllegalStateException(permutateStringException);
+                }
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Build the catalogue of the default dictionary.
+     * @param args output path of the catalogue, defaults to {@value PuzzleCatalogue#DEFAULT_CATALOGUE}
+     * @throws IOException if the catalogue cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get(args.length > 0 ? args[0] : PuzzleCatalogue.DEFAULT_CATALOGUE);
+        PuzzleCatalogueBuilder builder = new PuzzleCatalogueBuilder(new WordWheelEngine());
+        long startTime = System.nanoTime();
+        PuzzleCatalogue catalogue = builder.build(output);
+        System.out.println("Wrote " +(catalogue == null ? 0 : catalogue.size()) +" puzzles to "
+                +output.toAbsolutePath() +" in " +((System.nanoTime() - startTime) / MILLION) +" msecs");
+    }
+}
@@ -0,0 +1,451 @@
+package uk.org.goldendogconsulting;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded cache of solved puzzles, put in front of the solver by {@link WordWheelEngine}.
+ * <p>
+ * The order of the wheel letters does not change the answer, so results are cached under the puzzle's
+ * {@link PuzzleCatalogue#canonicalKey canonical key} and a hit for the same letters in another order is handed back
+ * with the letters asked for. The least recently used result is evicted once there are more than the maximum number
+ * of entries, or their estimated size is over the maximum number of bytes. A puzzle is only solved once however many
+ * threads ask for it at the same time: the first solves it and the others wait for its result, each for no longer than
+ * its own search may run. Only complete results are cached.
+ * <p>
+ * A cache answers for one dictionary, so each engine should have its own. It can be written to a file and read back
+ * into a new cache, so results survive a restart; the file holds a fingerprint of the dictionary and is ignored by a
+ * cache for any other.
+ */
+public final class ResultCache {
+
+    /**
+     * System property giving a file the command line keeps its cache in, no file if not set.
+     */
+    public static final String CACHE_PROPERTY = "wordwheel.cache";
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private static final int MAGIC = 0x57575243; // "WWRC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    // Rough heap cost of a result and of each word in it
+    private static final int ENTRY_BYTES = 256;
+    private static final int WORD_BYTES = 64;
+    private static final long AWAIT_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, WordWheelResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<WordWheelResult>> loading = new ConcurrentHashMap<>();
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static final Logger LOG = LogManager.getLogger(ResultCache.class);
+
+    /**
+     *
+     * @param maxEntries : most results held
+     */
+    public ResultCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     *
+     * @param maxEntries : most results held
+     * @param maxBytes : most estimated heap the results may take
+     */
+    public ResultCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("cache must hold at least one entry, not " +maxEntries
+                    +" entries of " +maxBytes +" bytes");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Find the result for the letters, solving the puzzle if it is not cached and no other thread is solving it.
+     * @param letters upper-case wheel letters, the first letter is the centre letter
+     * @param solver solves the puzzle on a miss
+     * @return the result, with the letters asked for
+     * @throws PermutateStringException if the solver fails
+     */
+    WordWheelResult get(String letters, Solver solver) throws PermutateStringException {
+        return get(letters, SearchControl.unbounded(), solver);
+    }
+
+    /**
+     * Find the result for the letters, solving the puzzle if it is not cached and no other thread is solving it. A
+     * wait for another thread's search ends when the control stops, then the solver is left to give the incomplete
+     * result a stopped search returns, so a caller is never held past its own deadline by a slower caller's search.
+     * @param letters upper-case wheel letters, the first letter is the centre letter
+     * @param control cancellation signal of the caller's search, also used by the solver
+     * @param solver solves the puzzle on a miss
+     * @return the result, with the letters asked for
+     * @throws PermutateStringException if the solver fails
+     */
+    WordWheelResult get(String letters, SearchControl control, Solver solver) throws PermutateStringException {
+        long startTime = System.nanoTime();
+        String key = PuzzleCatalogue.canonicalKey(letters);
+        WordWheelResult cached = lookup(key);
+        if (cached != null) {
+            return cached.withLetters(letters, System.nanoTime() - startTime);
+        }
+        CompletableFuture<WordWheelResult> solving = new CompletableFuture<>();
+        CompletableFuture<WordWheelResult> other = loading.putIfAbsent(key, solving);
+        if (other != null) {
+            WordWheelResult result = await(other, control);
+            if (result != null && result.isComplete()) {
+                synchronized (this) {
+                    hits++;
+                }
+                return result.withLetters(letters, System.nanoTime() - startTime);
+            }
+            // The other search failed, was cut short by its own deadline or outlasted this one's, so this one runs
+            // its own, which returns straight away if this caller's control has stopped
+            synchronized (this) {
+                misses++;
+            }
+            return solver.solve(letters);
+        }
+        try {
+            // Solved and cached between the lookup and taking over loading
+            cached = peek(key);
+            if (cached != null) {
+                solving.complete(cached);
+                return cached.withLetters(letters, System.nanoTime() - startTime);
+            }
+            synchronized (this) {
+                misses++;
+            }
+            WordWheelResult result = solver.solve(letters);
+            if (result.isComplete()) {
+                put(key, result);
+            }
+            solving.complete(result);
+            return result;
+        } catch (PermutateStringException | RuntimeException | Error exception) {
+            solving.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            loading.remove(key, solving);
+        }
+    }
+
+    /**
+     * Search for the words of a puzzle that is not cached.
+     */
+    interface Solver {
+        WordWheelResult solve(String letters) throws PermutateStringException;
+    }
+
+    // The other search's result, or null if it failed or the control stopped first
+    private static WordWheelResult await(CompletableFuture<WordWheelResult> other, SearchControl control) {
+        try {
+            while (!control.isStopped()) {
+                try {
+                    // Woken now and then to notice the control being cancelled as well as its deadline passing
+                    return other.get(Math.max(1, Math.min(control.getRemainingNanos(), AWAIT_POLL_NANOS)),
+                            TimeUnit.NANOSECONDS);
+                } catch (TimeoutException timeoutException) {
+                    // look at the control again
+                }
+            }
+            return null;
+        } catch (ExecutionException | CancellationException exception) {
+            return null;
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private synchronized WordWheelResult lookup(String key) {
+        WordWheelResult result = entries.get(key);
+        if (result != null) {
+            hits++;
+        }
+        return result;
+    }
+
+    private synchronized WordWheelResult peek(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(String key, WordWheelResult result) {
+        WordWheelResult previous = entries.put(key, result);
+        if (previous != null) {
+            bytes -= weigh(previous);
+        }
+        bytes += weigh(result);
+        Iterator<WordWheelResult> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || (bytes > maxBytes && entries.size() > 1)) {
+            WordWheelResult evicted = eldest.next();
+            eldest.remove();
+            bytes -= weigh(evicted);
+            evictions++;
+        }
+    }
+
+    private static long weigh(WordWheelResult result) {
+        long weight = ENTRY_BYTES + (long) result.getCombinations().size() * WORD_BYTES;
+        for (String word : result.getValidWords()) {
+            weight += WORD_BYTES + 2L * word.length();
+        }
+        return weight;
+    }
+
+    /**
+     * Remove every result, the statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     *
+     * @return estimated heap taken by the results held
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     *
+     * @return the counts so far, taken together
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    /**
+     * Write every complete result held to a file, replaced atomically so a reader never loads a partial cache.
+     * Combinations collected by the permutation solver are left out, a result holding them is not written.
+     * @param file path of the cache file
+     * @param dictionary dictionary the results came from
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file, Dictionary dictionary) throws IOException {
+        List<Map.Entry<String, WordWheelResult>> saved = new ArrayList<>();
+        synchronized (this) {
+            // Least recently used first, so reading them back in order keeps the order
+            for (Map.Entry<String, WordWheelResult> entry : entries.entrySet()) {
+                if (entry.getValue().getCombinations().isEmpty()) {
+                    saved.add(entry);
+                }
+            }
+        }
+        int bodySize = 0;
+        for (Map.Entry<String, WordWheelResult> entry : saved) {
+            bodySize += Short.BYTES + entry.getKey().getBytes(StandardCharsets.UTF_8).length + Long.BYTES
+                    + Integer.BYTES;
+            for (String word : entry.getValue().getValidWords()) {
+                bodySize += Short.BYTES + word.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        ByteBuffer body = ByteBuffer.allocate(bodySize);
+        for (Map.Entry<String, WordWheelResult> entry : saved) {
+            putString(body, entry.getKey());
+            body.putLong(entry.getValue().getCombinationsFound());
+            body.putInt(entry.getValue().getWordCount());
+            for (String word : entry.getValue().getValidWords()) {
+                putString(body, word);
+            }
+        }
+        body.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(crc.getValue())
+                .putLong(PuzzleCatalogue.fingerprint(dictionary))
+                .putInt(saved.size());
+        header.position(HEADER_SIZE);
+        header.flip();
+
+        Path absolute = file.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.debug("Saved " +saved.size() +" cached results to " +absolute);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read results written by {@link #save} into this cache, evicting as usual if they do not all fit.
+     * @param file path of the cache file
+     * @param dictionary dictionary the results must have come from
+     * @return number of results read, 0 if there is no file or it is not valid for the dictionary
+     */
+    public int load(Path file, Dictionary dictionary) {
+        ByteBuffer contents;
+        try {
+            contents = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (NoSuchFileException noSuchFileException) {
+            LOG.debug("No result cache at " +file);
+            return 0;
+        } catch (IOException ioException) {
+            LOG.warn("Unable to read result cache " +file +" : " +ioException.getMessage());
+            return 0;
+        }
+        if (contents.capacity() < HEADER_SIZE || contents.getInt(0) != MAGIC || contents.getInt(4) != VERSION) {
+            LOG.warn("Result cache " +file +" is not a version " +VERSION +" cache, ignoring it");
+            return 0;
+        }
+        if (contents.getLong(16) != PuzzleCatalogue.fingerprint(dictionary)) {
+            LOG.warn("Result cache " +file +" was saved for a different dictionary, ignoring it");
+            return 0;
+        }
+        int count = contents.getInt(24);
+        contents.position(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(contents.duplicate());
+        if (crc.getValue() != contents.getLong(8) || count < 0) {
+            LOG.warn("Result cache " +file +" checksum does not match, ignoring it");
+            return 0;
+        }
+        List<String> keys = new ArrayList<>(count);
+        List<WordWheelResult> results = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                String key = getString(contents);
+                long combinationsFound = contents.getLong();
+                int wordCount = contents.getInt();
+                List<String> words = new ArrayList<>(Math.min(wordCount, contents.remaining()));
+                for (int word = 0; word < wordCount; word++) {
+                    words.add(getString(contents));
+                }
+                keys.add(key);
+                results.add(new WordWheelResult(key, new TreeSet<>(words), true, 0, combinationsFound,
+                        Collections.emptySet(), 0, true));
+            }
+        } catch (RuntimeException runtimeException) {
+            LOG.warn("Result cache " +file +" records are inconsistent, ignoring it");
+            return 0;
+        }
+        for (int i = 0; i < count; i++) {
+            put(keys.get(i), results.get(i));
+        }
+        LOG.debug("Loaded " +count +" cached results from " +file);
+        return count;
+    }
+
+    /**
+     * Counts of how the cache has been used, taken at one moment.
+     */
+    public static final class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+        private final long bytes;
+
+        private Statistics(long hits, long misses, long evictions, int size, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+            this.bytes = bytes;
+        }
+
+        /**
+         *
+         * @return requests answered without a search, including those that waited for another thread's search
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         *
+         * @return requests that were searched for
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         *
+         * @return fraction of requests answered without a search, 0 if there have been none
+         */
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" +hits +", misses=" +misses +", evictions=" +evictions +", size=" +size +", bytes="
+                    +bytes +", hitRate=" +String.format(Locale.ROOT, "%.3f", getHitRate());
+        }
+    }
+}
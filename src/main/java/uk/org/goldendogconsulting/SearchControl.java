@@ -0,0 +1,96 @@
+package uk.org.goldendogconsulting;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cooperative cancellation signal shared by every task working on one search. Tasks poll {@link #isStopped()} as
+ * they go, which is a volatile read plus, when a deadline has been set, a clock read; once a search is stopped it
+ * stays stopped. A child control stops with its parent but can also be cancelled on its own, so part of the work can
+ * be ended without ending the whole search.
+ */
+public final class SearchControl {
+
+    private final long deadlineNanos;
+    private final boolean hasDeadline;
+    private final SearchControl parent;
+    private volatile boolean stopped;
+    private volatile boolean timedOut;
+
+    private SearchControl(boolean hasDeadline, long deadlineNanos, SearchControl parent) {
+        this.hasDeadline = hasDeadline;
+        this.deadlineNanos = deadlineNanos;
+        this.parent = parent;
+    }
+
+    /**
+     *
+     * @return control for a search that runs until it completes or is cancelled
+     */
+    public static SearchControl unbounded() {
+        return new SearchControl(false, 0, null);
+    }
+
+    /**
+     *
+     * @param timeout longest the search may run for
+     * @param unit unit of the timeout
+     * @return control for a search that stops once the timeout has passed
+     */
+    public static SearchControl withTimeout(long timeout, TimeUnit unit) {
+        return new SearchControl(true, System.nanoTime() + unit.toNanos(timeout), null);
+    }
+
+    /**
+     *
+     * @return control that stops when this one does, or when cancelled itself without stopping this one
+     */
+    public SearchControl child() {
+        return new SearchControl(false, 0, this);
+    }
+
+    /**
+     * Ask every task of the search to stop.
+     */
+    public void cancel() {
+        stopped = true;
+    }
+
+    /**
+     *
+     * @return true once the search has been cancelled or its deadline has passed
+     */
+    public boolean isStopped() {
+        if (stopped) {
+            return true;
+        }
+        if (parent != null && parent.isStopped()) {
+            timedOut = parent.isTimedOut();
+            stopped = true;
+            return true;
+        }
+        if (hasDeadline && System.nanoTime() - deadlineNanos > 0) {
+            timedOut = true;
+            stopped = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     *
+     * @return time left before this control's deadline, or the nearest of its parents', Long.MAX_VALUE if none has
+     * a deadline
+     */
+    long getRemainingNanos() {
+        long remaining = hasDeadline ? deadlineNanos - System.nanoTime() : Long.MAX_VALUE;
+        return parent == null ? remaining : Math.min(remaining, parent.getRemainingNanos());
+    }
+
+    /**
+     *
+     * @return true if the search was stopped because its deadline passed
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+}
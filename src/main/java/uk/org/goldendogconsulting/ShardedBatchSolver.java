@@ -0,0 +1,423 @@
+package uk.org.goldendogconsulting;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Coordinates a batch of puzzles solved by {@link BatchWorker} processes, each with a warm engine and a heap of its
+ * own, so a large batch is not bound by one JVM's heap and garbage collector.
+ * <p>
+ * The puzzles are read as {@link BatchSolver} reads them and split into work units of consecutive puzzles. Workers
+ * connect over a socket, bound to the loopback address, and ask for a unit at a time, sending back a result line for
+ * each puzzle as it is solved. A unit held by a worker whose connection is lost is put back for the next worker to
+ * ask, and once nothing is left to hand out, a unit held for longer than the unit timeout is handed to another worker
+ * as well, the first result for each puzzle being kept. Results are written in input order with a summary line last,
+ * in the same format as {@link BatchSolver} writes them.
+ * <p>
+ * The protocol is lines of UTF-8 text. A worker sends {@value #READY} for work; the coordinator answers
+ * {@value #UNIT} with the unit's id, puzzle count and output format, followed by a line of index and puzzle for each,
+ * or {@value #DONE} once the batch is finished. The worker sends {@value #RESULT} with the puzzle's index, 1 if it
+ * failed or 0, and the result line, then {@value #READY} again.
+ */
+public class ShardedBatchSolver implements Closeable {
+
+    public static final int DEFAULT_UNIT_SIZE = 64;
+    public static final long DEFAULT_UNIT_TIMEOUT_MSECS = 60000;
+
+    static final String READY = "READY";
+    static final String UNIT = "UNIT";
+    static final String RESULT = "RESULT";
+    static final String DONE = "DONE";
+
+    private static final long MILLION = 1000000;
+    // How often a waiting worker looks for units that have run past their timeout
+    private static final long CHECK_INTERVAL_MSECS = 1000;
+
+    private final ServerSocket serverSocket;
+    private final int unitSize;
+    private final long unitTimeoutNanos;
+    private final BatchSolver.OutputFormat format;
+    private final List<Process> processes = new ArrayList<>();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger workerCount = new AtomicInteger();
+
+    // The batch being solved, guarded by this
+    private List<Unit> units;
+    private final Deque<Unit> pending = new ArrayDeque<>();
+    private String[] lines;
+    private int resultCount;
+    private long failed;
+    private long reassignedUnits;
+    private int liveWorkers;
+    private boolean finished;
+
+    private static final Logger LOG = LogManager.getLogger(ShardedBatchSolver.class);
+
+    /**
+     *
+     * @param port : port on the loopback address workers connect to, 0 for any free port
+     * @param unitSize : number of puzzles in a work unit
+     * @param unitTimeout : how long a unit may be held before it is handed to another worker as well
+     * @param unit : unit of the timeout
+     * @param format : format of the result lines
+     * @throws IOException if the port cannot be bound
+     */
+    public ShardedBatchSolver(int port, int unitSize, long unitTimeout, TimeUnit unit, BatchSolver.OutputFormat format)
+            throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.unitSize = Math.max(1, unitSize);
+        this.unitTimeoutNanos = unit.toNanos(unitTimeout);
+        this.format = format;
+        Thread acceptor = new Thread(this::accept, "batch-coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Start worker JVMs on this machine, with this JVM's class path, which connect to the coordinator and solve
+     * until the batch is finished. Their standard output, where they log, is discarded; errors are passed through.
+     * @param count : number of worker processes
+     * @throws IOException if a process cannot be started
+     */
+    public void launchWorkers(int count) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        String snapshot = System.getProperty(Dictionary.SNAPSHOT_PROPERTY);
+        if (snapshot != null) {
+            command.add("-D" +Dictionary.SNAPSHOT_PROPERTY +"=" +snapshot);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(WordWheelCommandLine.class.getName());
+        command.add("-g");
+        command.add(serverSocket.getInetAddress().getHostAddress() +":" +getPort());
+        for (int i = 0; i < count; i++) {
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            synchronized (this) {
+                processes.add(builder.start());
+            }
+        }
+        LOG.info("Started " +count +" worker processes for port " +getPort());
+    }
+
+    /**
+     * Solve every puzzle read on the workers connected, writing a result line for each in input order and a summary
+     * line at the end. Waits for workers if none are connected, failing only if every worker process launched has
+     * exited.
+     * @param input puzzles, one per line
+     * @param output destination of the result lines, flushed but not closed
+     * @return counts for the batch
+     * @throws IOException if reading or writing fails, or every worker process has exited
+     */
+    public BatchSolver.Summary solve(BufferedReader input, Writer output) throws IOException {
+        long startTime = System.nanoTime();
+        List<String> puzzles = new ArrayList<>();
+        String line;
+        while ((line = input.readLine()) != null) {
+            String puzzle = line.trim();
+            if (!puzzle.isEmpty() && !puzzle.startsWith("#")) {
+                puzzles.add(puzzle);
+            }
+        }
+        synchronized (this) {
+            units = new ArrayList<>();
+            for (int first = 0; first < puzzles.size(); first += unitSize) {
+                Unit unit = new Unit(units.size(), first, puzzles.subList(first, Math.min(puzzles.size(),
+                        first + unitSize)));
+                units.add(unit);
+                pending.add(unit);
+            }
+            lines = new String[puzzles.size()];
+            notifyAll();
+        }
+        LOG.info("Sharded " +puzzles.size() +" puzzles into " +(puzzles.size() + unitSize - 1) / unitSize +" units");
+
+        int nextToWrite = 0;
+        List<String> ready = new ArrayList<>();
+        try {
+            while (nextToWrite < puzzles.size()) {
+                synchronized (this) {
+                    while (lines[nextToWrite] == null) {
+                        checkWorkers();
+                        wait(CHECK_INTERVAL_MSECS);
+                    }
+                    while (nextToWrite < lines.length && lines[nextToWrite] != null) {
+                        ready.add(lines[nextToWrite]);
+                        // Dropped once taken, so a large batch only holds the results still out of order
+                        lines[nextToWrite++] = "";
+                    }
+                }
+                for (String result : ready) {
+                    output.write(result);
+                    output.write(System.lineSeparator());
+                }
+                ready.clear();
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for puzzle results", interruptedException);
+        } finally {
+            synchronized (this) {
+                finished = true;
+                notifyAll();
+            }
+        }
+        BatchSolver.Summary summary;
+        synchronized (this) {
+            summary = new BatchSolver.Summary(puzzles.size(), failed, System.nanoTime() - startTime);
+        }
+        output.write(summary.format(format));
+        output.write(System.lineSeparator());
+        output.flush();
+        LOG.info(summary.toString() +", " +getReassignedUnits() +" units reassigned");
+        return summary;
+    }
+
+    // Only called holding the lock
+    private void checkWorkers() throws IOException {
+        if (liveWorkers == 0 && !processes.isEmpty() && processes.stream().noneMatch(Process::isAlive)) {
+            throw new IOException("Every worker process has exited with " +(lines.length - resultCount)
+                    +" puzzles unsolved");
+        }
+    }
+
+    /**
+     *
+     * @return number of times a unit was handed to another worker, after its worker was lost or ran past the timeout
+     */
+    public synchronized long getReassignedUnits() {
+        return reassignedUnits;
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.add(socket);
+                Thread handler = new Thread(() -> serve(socket), "batch-worker-" +workerCount.incrementAndGet());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException ioException) {
+                if (!serverSocket.isClosed()) {
+                    LOG.warn("Failed to accept a worker : " +ioException.getMessage());
+                }
+            }
+        }
+    }
+
+    // Answers one worker's requests until the batch is finished or the worker is lost
+    private void serve(Socket socket) {
+        synchronized (this) {
+            liveWorkers++;
+        }
+        Unit held = null;
+        boolean done = false;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+            String line;
+            while (!done && (line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT + " ")) {
+                    record(line);
+                } else if (line.equals(READY)) {
+                    Unit finishedUnit = held;
+                    held = null;
+                    held = nextUnit(finishedUnit);
+                    if (held == null) {
+                        writer.write(DONE + "\n");
+                        done = true;
+                    } else {
+                        writer.write(UNIT + " " +held.id +" " +held.puzzles.size() +" " +format +"\n");
+                        for (int i = 0; i < held.puzzles.size(); i++) {
+                            writer.write((held.first + i) +" " +held.puzzles.get(i) +"\n");
+                        }
+                    }
+                    writer.flush();
+                } else {
+                    LOG.warn("Unexpected line from " +Thread.currentThread().getName() +" : " +line);
+                }
+            }
+        } catch (IOException ioException) {
+            LOG.debug("Lost " +Thread.currentThread().getName() +" : " +ioException.getMessage());
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                liveWorkers--;
+                if (held != null) {
+                    release(held, !done);
+                }
+                notifyAll();
+            }
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private synchronized void record(String line) throws IOException {
+        String[] fields = line.split(" ", 4);
+        try {
+            int index = Integer.parseInt(fields[1]);
+            if (lines == null || index < 0 || index >= lines.length || fields.length < 4) {
+                throw new IOException("Result for no puzzle of the batch : " +line);
+            }
+            // A unit handed out twice is solved twice, only the first result counts
+            if (lines[index] == null) {
+                lines[index] = fields[3];
+                resultCount++;
+                if ("1".equals(fields[2])) {
+                    failed++;
+                }
+                units.get(index / unitSize).remaining--;
+                notifyAll();
+            }
+        } catch (NumberFormatException numberFormatException) {
+            throw new IOException("Malformed result : " +line, numberFormatException);
+        }
+    }
+
+    // The next unit for a worker that has finished with the one it held, null once the batch is finished
+    private synchronized Unit nextUnit(Unit finishedUnit) throws InterruptedException {
+        if (finishedUnit != null) {
+            release(finishedUnit, false);
+        }
+        while (!finished) {
+            if (units != null) {
+                if (resultCount == lines.length) {
+                    return null;
+                }
+                Unit unit;
+                while ((unit = pending.poll()) != null) {
+                    unit.queued = false;
+                    if (unit.remaining > 0) {
+                        return assign(unit);
+                    }
+                }
+                // Nothing waiting, so back up the unit that has been held longest past the timeout
+                Unit slowest = null;
+                long now = System.nanoTime();
+                for (Unit candidate : units) {
+                    if (candidate.remaining > 0 && candidate.holders > 0
+                            && now - candidate.assignedNanos > unitTimeoutNanos
+                            && (slowest == null || candidate.assignedNanos < slowest.assignedNanos)) {
+                        slowest = candidate;
+                    }
+                }
+                if (slowest != null) {
+                    reassignedUnits++;
+                    LOG.info("Unit " +slowest.id +" held for over " +unitTimeoutNanos / MILLION
+                            +" msecs, handing it to another worker");
+                    return assign(slowest);
+                }
+            }
+            wait(Math.max(1, Math.min(CHECK_INTERVAL_MSECS, unitTimeoutNanos / MILLION)));
+        }
+        return null;
+    }
+
+    // Only called holding the lock
+    private Unit assign(Unit unit) {
+        unit.holders++;
+        unit.assignedNanos = System.nanoTime();
+        return unit;
+    }
+
+    // Only called holding the lock; a unit left unfinished with no worker on it goes back to the front of the queue
+    private void release(Unit unit, boolean lost) {
+        unit.holders--;
+        if (unit.remaining > 0 && unit.holders == 0 && !unit.queued && !finished) {
+            unit.queued = true;
+            pending.addFirst(unit);
+            if (lost) {
+                reassignedUnits++;
+                LOG.info("Worker lost, unit " +unit.id +" put back with " +unit.remaining +" puzzles unsolved");
+            }
+        }
+    }
+
+    /**
+     * Stop accepting workers, disconnect those still connected and wait briefly for launched processes to exit,
+     * destroying any that do not.
+     */
+    @Override
+    public void close() {
+        closeQuietly(serverSocket);
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+        List<Process> launched;
+        synchronized (this) {
+            finished = true;
+            notifyAll();
+            launched = new ArrayList<>(processes);
+        }
+        for (Process process : launched) {
+            try {
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException interruptedException) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ioException) {
+            LOG.debug("Failed to close : " +ioException.getMessage());
+        }
+    }
+
+    /**
+     * Consecutive puzzles handed to a worker together.
+     */
+    private static final class Unit {
+        private final int id;
+        private final int first;
+        private final List<String> puzzles;
+        // Guarded by the coordinator
+        private int remaining;
+        private int holders;
+        private long assignedNanos;
+        private boolean queued = true;
+
+        private Unit(int id, int first, List<String> puzzles) {
+            this.id = id;
+            this.first = first;
+            this.puzzles = puzzles;
+            this.remaining = puzzles.size();
+        }
+    }
+}
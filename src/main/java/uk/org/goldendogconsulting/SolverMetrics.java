@@ -0,0 +1,327 @@
+package uk.org.goldendogconsulting;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Counters and latency histograms for each phase of solving, kept for the whole process and published over JMX.
+ * <p>
+ * Recording is a handful of uncontended adds, and the hottest counts, dictionary probes and duplicate combinations,
+ * are summed by each search task and added once when it finishes, so the metrics can be left on. Setting
+ * {@value #ENABLED_PROPERTY} to false, or {@link #setEnabled} at run time, turns recording off entirely; the solvers
+ * then do not even read the clock. Latencies are held in buckets of powers of two nanoseconds, so percentiles are
+ * accurate to within a factor of two.
+ */
+public final class SolverMetrics implements SolverMetricsMBean {
+
+    /**
+     * System property that turns the metrics off when set to false.
+     */
+    public static final String ENABLED_PROPERTY = "wordwheel.metrics";
+    public static final String OBJECT_NAME = "uk.org.goldendogconsulting:type=SolverMetrics";
+
+    /**
+     * A timed part of solving.
+     */
+    public enum Phase {
+        /**
+         * Loading the dictionary, from its snapshot or text.
+         */
+        DICTIONARY_LOAD,
+        /**
+         * Generating the permutations of a wheel, one sample per search task, or per solve when the permutations are
+         * collected.
+         */
+        PERMUTATION_GENERATION,
+        /**
+         * Searching permutations for combinations and words, one sample per search task.
+         */
+        COMBINATION_SEARCH,
+        /**
+         * Waiting for a worker between a solve or puzzle being submitted and starting.
+         */
+        QUEUE_WAIT,
+        /**
+         * A whole solve by the engine.
+         */
+        SOLVE
+    }
+
+    /**
+     * A counted event.
+     */
+    public enum Counter {
+        SOLVES,
+        PERMUTATIONS_GENERATED,
+        DICTIONARY_PROBES,
+        /**
+         * Combinations found again by the permutation solver and left out of the combinations set.
+         */
+        DUPLICATE_COMBINATIONS
+    }
+
+    private static final int BUCKETS = Long.SIZE;
+
+    private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+    private final Map<Phase, Histogram> histograms = new EnumMap<>(Phase.class);
+    private volatile boolean enabled;
+
+    private static final Logger LOG = LogManager.getLogger(SolverMetrics.class);
+
+    /**
+     *
+     * @param enabled true to record from the start
+     */
+    SolverMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new LongAdder());
+        }
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new Histogram());
+        }
+    }
+
+    /**
+     * The metrics every engine records to, registered over JMX on first use.
+     * @return the default metrics
+     */
+    public static SolverMetrics getDefault() {
+        return DefaultHolder.DEFAULT;
+    }
+
+    private static final class DefaultHolder {
+        private static final SolverMetrics DEFAULT = register(new SolverMetrics(
+                !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY))));
+    }
+
+    private static SolverMetrics register(SolverMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        } catch (JMException jmException) {
+            LOG.warn("Unable to register solver metrics : " +jmException.getMessage());
+        }
+        return metrics;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     *
+     * @return the clock reading to pass to {@link #record(Phase, long)}, 0 if recording is off
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time since {@link #start()}.
+     * @param phase phase timed
+     * @param startNanos value returned by start
+     */
+    public void record(Phase phase, long startNanos) {
+        if (enabled && startNanos != 0) {
+            histograms.get(phase).record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     *
+     * @param phase phase timed
+     * @param nanos time taken
+     */
+    public void recordNanos(Phase phase, long nanos) {
+        if (enabled) {
+            histograms.get(phase).record(nanos);
+        }
+    }
+
+    /**
+     *
+     * @param counter counter to add to
+     * @param count number of events
+     */
+    public void add(Counter counter, long count) {
+        if (enabled && count != 0) {
+            counters.get(counter).add(count);
+        }
+    }
+
+    public long getCount(Counter counter) {
+        return counters.get(counter).sum();
+    }
+
+    /**
+     *
+     * @param phase phase timed
+     * @return number of samples recorded
+     */
+    public long getCount(Phase phase) {
+        return histograms.get(phase).count.sum();
+    }
+
+    public long getTotalNanos(Phase phase) {
+        return histograms.get(phase).totalNanos.sum();
+    }
+
+    public long getMaxNanos(Phase phase) {
+        return histograms.get(phase).maxNanos.get();
+    }
+
+    /**
+     *
+     * @param phase phase timed
+     * @param percentile from 0 to 100
+     * @return upper bound of the bucket holding the percentile, 0 if nothing has been recorded
+     */
+    public long getPercentileNanos(Phase phase, double percentile) {
+        return histograms.get(phase).percentile(percentile);
+    }
+
+    @Override
+    public long getSolves() {
+        return getCount(Counter.SOLVES);
+    }
+
+    @Override
+    public long getPermutationsGenerated() {
+        return getCount(Counter.PERMUTATIONS_GENERATED);
+    }
+
+    @Override
+    public long getDictionaryProbes() {
+        return getCount(Counter.DICTIONARY_PROBES);
+    }
+
+    @Override
+    public long getDuplicateCombinations() {
+        return getCount(Counter.DUPLICATE_COMBINATIONS);
+    }
+
+    @Override
+    public String[] getPhases() {
+        String[] phases = new String[Phase.values().length];
+        for (Phase phase : Phase.values()) {
+            long count = getCount(phase);
+            phases[phase.ordinal()] = phase.name().toLowerCase(Locale.ROOT) +" count=" +count
+                    +" meanNanos=" +(count == 0 ? 0 : getTotalNanos(phase) / count)
+                    +" p50Nanos=" +getPercentileNanos(phase, 50)
+                    +" p99Nanos=" +getPercentileNanos(phase, 99)
+                    +" maxNanos=" +getMaxNanos(phase);
+        }
+        return phases;
+    }
+
+    /**
+     * Every counter and phase as text in the Prometheus exposition format, for pulling over HTTP.
+     * @return one value per line
+     */
+    @Override
+    public String snapshot() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("wordwheel_metrics_enabled ").append(enabled ? 1 : 0).append('\n');
+        for (Counter counter : Counter.values()) {
+            builder.append("wordwheel_").append(counter.name().toLowerCase(Locale.ROOT)).append("_total ")
+                    .append(getCount(counter)).append('\n');
+        }
+        for (Phase phase : Phase.values()) {
+            String label = "{phase=\"" +phase.name().toLowerCase(Locale.ROOT) +"\"";
+            builder.append("wordwheel_phase_count").append(label).append("} ").append(getCount(phase)).append('\n');
+            builder.append("wordwheel_phase_nanos_total").append(label).append("} ").append(getTotalNanos(phase))
+                    .append('\n');
+            builder.append("wordwheel_phase_nanos_max").append(label).append("} ").append(getMaxNanos(phase))
+                    .append('\n');
+            for (int percentile : new int[] { 50, 90, 99 }) {
+                builder.append("wordwheel_phase_nanos").append(label).append(",quantile=\"0.").append(percentile)
+                        .append("\"} ").append(getPercentileNanos(phase, percentile)).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Latencies bucketed by the position of their highest bit.
+     */
+    private static final class Histogram {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private void record(long nanos) {
+            long sample = Math.max(0, nanos);
+            count.increment();
+            totalNanos.add(sample);
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(sample) - (sample == 0 ? 0 : 1));
+            long max;
+            while (sample > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, sample)) {
+                // another thread raised the max, check against its value
+            }
+        }
+
+        private void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+        }
+
+        private long percentile(double percentile) {
+            long total = 0;
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) {
+                    // Upper bound of the bucket, but never more than the largest sample
+                    return Math.min(maxNanos.get(), i >= Long.SIZE - 2 ? Long.MAX_VALUE : (2L << i) - 1);
+                }
+            }
+            return maxNanos.get();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package uk.org.goldendogconsulting;
+
+/**
+ * Management interface of {@link SolverMetrics}, published over JMX as
+ * {@value SolverMetrics#OBJECT_NAME}.
+ */
+public interface SolverMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getSolves();
+
+    long getPermutationsGenerated();
+
+    long getDictionaryProbes();
+
+    long getDuplicateCombinations();
+
+    /**
+     *
+     * @return one line per phase giving its count and latencies
+     */
+    String[] getPhases();
+
+    /**
+     *
+     * @return every counter and phase as text, one value per line
+     */
+    String snapshot();
+
+    void reset();
+}
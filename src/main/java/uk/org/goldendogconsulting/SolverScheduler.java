@@ -0,0 +1,104 @@
+package uk.org.goldendogconsulting;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Work-stealing pool the solvers split their searches across. One scheduler is meant to be shared by every search in
+ * the process, rather than each search starting and stopping threads of its own.
+ */
+public class SolverScheduler {
+
+    /**
+     * System property giving the parallelism of the default scheduler, the number of available processors if not set.
+     */
+    public static final String PARALLELISM_PROPERTY = "wordwheel.parallelism";
+
+    private final ForkJoinPool pool;
+
+    private static final Logger LOG = LogManager.getLogger(SolverScheduler.class);
+
+    /**
+     *
+     * @param parallelism number of worker threads
+     */
+    public SolverScheduler(int parallelism) {
+        pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, false);
+        LOG.debug("Solver scheduler started with parallelism " +parallelism);
+    }
+
+    /**
+     * The scheduler shared by every engine that is not given one of its own, its threads are daemons so it never
+     * needs shutting down.
+     * @return the default scheduler
+     */
+    public static SolverScheduler getDefault() {
+        return DefaultHolder.DEFAULT;
+    }
+
+    private static final class DefaultHolder {
+        private static final SolverScheduler DEFAULT = new SolverScheduler(
+                Math.max(1, Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors())));
+    }
+
+    /**
+     * Run a task on the pool and wait for it, a task already running on a pool worker is run directly so that the
+     * worker keeps stealing work rather than blocking.
+     * @param task task to run
+     * @param <T> type of the task result
+     * @return the result of the task
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        if (ForkJoinTask.getPool() == pool) {
+            return task.invoke();
+        }
+        SolverMetrics metrics = SolverMetrics.getDefault();
+        long submittedNanos = metrics.start();
+        if (submittedNanos == 0) {
+            return pool.invoke(task);
+        }
+        return pool.invoke(new QueuedTask<>(task, submittedNanos, metrics));
+    }
+
+    /**
+     * Task submitted from outside the pool, records how long it waited for a worker before running.
+     */
+    private static final class QueuedTask<T> extends RecursiveTask<T> {
+        private final ForkJoinTask<T> task;
+        private final long submittedNanos;
+        private final SolverMetrics metrics;
+
+        private QueuedTask(ForkJoinTask<T> task, long submittedNanos, SolverMetrics metrics) {
+            this.task = task;
+            this.submittedNanos = submittedNanos;
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected T compute() {
+            metrics.record(SolverMetrics.Phase.QUEUE_WAIT, submittedNanos);
+            return task.invoke();
+        }
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stop accepting work and wait for running searches to finish.
+     * @param timeout longest time to wait
+     * @param unit unit of the timeout
+     * @return true if the pool terminated within the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        pool.shutdown();
+        return pool.awaitTermination(timeout, unit);
+    }
+}
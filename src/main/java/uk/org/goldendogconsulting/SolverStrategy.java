@@ -0,0 +1,23 @@
+package uk.org.goldendogconsulting;
+
+/**
+ * The solver implementations a {@link WordWheel} can be built with.
+ */
+public enum SolverStrategy {
+    /**
+     * Brute force search of every permutation of the wheel, kept as the reference implementation.
+     */
+    PERMUTATION,
+    /**
+     * Dictionary indexed by sorted letters, searched by looking up each sub-multiset of the wheel.
+     */
+    ANAGRAM_KEY,
+    /**
+     * Dictionary held as a minimised word graph, searched depth first within the budget of letters on the wheel.
+     */
+    TRIE,
+    /**
+     * Dictionary held as columns of letter counts, every word tested against the wheel in one pass.
+     */
+    SCAN
+}
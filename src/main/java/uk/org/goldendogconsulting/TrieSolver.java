@@ -0,0 +1,216 @@
+package uk.org.goldendogconsulting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solver that walks a {@link DictionaryTrie} depth first with a budget of the letters remaining on the wheel. A
+ * branch is abandoned as soon as its prefix is not the start of any dictionary word, or as soon as the wheel has no
+ * letter left for it, so only prefixes of real words are ever visited however many duplicate letters the wheel has.
+ * <p>
+ * When given a {@link SolverScheduler} the search is split by first letter, one task per distinct letter on the wheel.
+ * A search for words of a minimum length also abandons a branch once no word below it is long enough. The cost of a
+ * search is bounded by the prefixes the dictionary and the wheel have in common, not by the number of orderings of
+ * the wheel, so it grows slowly with the size of the wheel.
+ * <p>
+ * Blank tiles, {@code ?} on the wheel, are kept in the same budget: a branch may take any letter once the wheel has
+ * none of it left as long as a blank remains, so a blank widens the branches searched rather than repeating the
+ * search for every letter it could be. A word's own letters are always used before a blank.
+ */
+public class TrieSolver implements WordSolver {
+
+    private static final int ALPHABET_SIZE = 26;
+    private static final int NO_CENTRE = -1;
+    // Budget slot of the blank tiles, after the letters
+    private static final int BLANK = ALPHABET_SIZE;
+
+    private final DictionaryTrie trie;
+    private final SolverScheduler scheduler;
+
+    /**
+     *
+     * @param trie : dictionary of known valid words
+     */
+    public TrieSolver(DictionaryTrie trie) {
+        this(trie, null);
+    }
+
+    /**
+     *
+     * @param trie : dictionary of known valid words
+     * @param scheduler : pool the search is split across, null to search on the calling thread
+     */
+    public TrieSolver(DictionaryTrie trie, SolverScheduler scheduler) {
+        this.trie = trie;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public boolean findWords(String letters, Set<String> validWords, SearchControl control) {
+        return findWords(letters, 1, letters.length(), validWords, control);
+    }
+
+    @Override
+    public boolean findWords(String letters, int minLength, int maxLength, Set<String> validWords,
+                             SearchControl control) {
+        int centre = letters.charAt(0) - 'A';
+        if (centre < 0 || centre >= ALPHABET_SIZE) {
+            // No word in the trie can contain a centre letter outside A-Z
+            return true;
+        }
+        return search(letters, centre, minLength, maxLength, validWords, control);
+    }
+
+    @Override
+    public boolean findWordsWithoutCentre(String letters, int minLength, int maxLength, Set<String> validWords,
+                                          SearchControl control) {
+        return search(letters, NO_CENTRE, minLength, maxLength, validWords, control);
+    }
+
+    private boolean search(String letters, int centre, int minLength, int maxLength, Set<String> validWords,
+                           SearchControl control) {
+        int[] letterBudget = new int[ALPHABET_SIZE + 1];
+        for (int i = 0; i < letters.length(); i++) {
+            int letter = letters.charAt(i) - 'A';
+            if (letter >= 0 && letter < ALPHABET_SIZE) {
+                letterBudget[letter]++;
+            } else if (letters.charAt(i) == WordWheelEngine.BLANK) {
+                letterBudget[BLANK]++;
+            }
+        }
+        Bounds bounds = new Bounds(Math.max(1, minLength), Math.min(maxLength, letters.length()));
+        if (bounds.minLength > bounds.maxLength) {
+            return true;
+        }
+        if (scheduler == null) {
+            search(DictionaryTrie.ROOT, letterBudget, centre, centreCount(letterBudget, centre),
+                    new char[bounds.maxLength], 0, bounds, validWords, control);
+        } else {
+            scheduler.invoke(new PrefixSearch(letterBudget, centre, bounds, validWords, control));
+        }
+        return !control.isStopped();
+    }
+
+    private static int centreCount(int[] letterBudget, int centre) {
+        return centre == NO_CENTRE ? 0 : letterBudget[centre];
+    }
+
+    // The centre letter has been used once its budget has dropped below the number of copies on the wheel
+    private static boolean hasCentre(int[] letterBudget, int centre, int centreCount) {
+        return centre == NO_CENTRE || letterBudget[centre] < centreCount;
+    }
+
+    private void search(int node, int[] letterBudget, int centre, int centreCount, char[] prefix, int depth,
+                        Bounds bounds, Set<String> validWords, SearchControl control) {
+        if (control.isStopped()) {
+            return;
+        }
+        for (int edge = trie.firstEdge(node); edge < trie.endEdge(node); edge++) {
+            int letter = trie.edgeLetter(edge);
+            int tile = letterBudget[letter] > 0 ? letter : BLANK;
+            if (letterBudget[tile] == 0) {
+                continue;
+            }
+            int child = trie.edgeTarget(edge);
+            if (bounds.minLength > 1 && depth + 1 + trie.height(child) < bounds.minLength) {
+                continue;
+            }
+            letterBudget[tile]--;
+            prefix[depth] = (char) ('A' + letter);
+            if (trie.isTerminal(child) && hasCentre(letterBudget, centre, centreCount)
+                    && depth + 1 >= bounds.minLength) {
+                validWords.add(new String(prefix, 0, depth + 1));
+            }
+            if (depth + 1 < prefix.length) {
+                search(child, letterBudget, centre, centreCount, prefix, depth + 1, bounds, validWords, control);
+            }
+            letterBudget[tile]++;
+        }
+    }
+
+    /**
+     * Lengths of the words wanted, the prefix buffer is only as long as the longest.
+     */
+    private static final class Bounds {
+        private final int minLength;
+        private final int maxLength;
+
+        private Bounds(int minLength, int maxLength) {
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+        }
+    }
+
+    /**
+     * Forks one {@link FirstLetterSearch} for every root edge the wheel has a letter for.
+     */
+    private final class PrefixSearch extends RecursiveAction {
+        private final int[] letterBudget;
+        private final int centre;
+        private final Bounds bounds;
+        private final Set<String> validWords;
+        private final SearchControl control;
+
+        private PrefixSearch(int[] letterBudget, int centre, Bounds bounds, Set<String> validWords,
+                             SearchControl control) {
+            this.letterBudget = letterBudget;
+            this.centre = centre;
+            this.bounds = bounds;
+            this.validWords = validWords;
+            this.control = control;
+        }
+
+        @Override
+        protected void compute() {
+            List<FirstLetterSearch> searches = new ArrayList<>();
+            for (int edge = trie.firstEdge(DictionaryTrie.ROOT); edge < trie.endEdge(DictionaryTrie.ROOT); edge++) {
+                if ((letterBudget[trie.edgeLetter(edge)] > 0 || letterBudget[BLANK] > 0)
+                        && (bounds.minLength == 1 || 1 + trie.height(trie.edgeTarget(edge)) >= bounds.minLength)) {
+                    searches.add(new FirstLetterSearch(edge, letterBudget.clone(), centre, bounds, validWords,
+                            control));
+                }
+            }
+            invokeAll(searches);
+        }
+    }
+
+    /**
+     * Search of every word starting with the letter of one root edge, with its own copy of the letter budget.
+     */
+    private final class FirstLetterSearch extends RecursiveAction {
+        private final int edge;
+        private final int[] letterBudget;
+        private final int centre;
+        private final Bounds bounds;
+        private final Set<String> validWords;
+        private final SearchControl control;
+
+        private FirstLetterSearch(int edge, int[] letterBudget, int centre, Bounds bounds, Set<String> validWords,
+                                  SearchControl control) {
+            this.edge = edge;
+            this.letterBudget = letterBudget;
+            this.centre = centre;
+            this.bounds = bounds;
+            this.validWords = validWords;
+            this.control = control;
+        }
+
+        @Override
+        protected void compute() {
+            int centreCount = centreCount(letterBudget, centre);
+            int letter = trie.edgeLetter(edge);
+            char[] prefix = new char[bounds.maxLength];
+            letterBudget[letterBudget[letter] > 0 ? letter : BLANK]--;
+            prefix[0] = (char) ('A' + letter);
+            int child = trie.edgeTarget(edge);
+            if (trie.isTerminal(child) && hasCentre(letterBudget, centre, centreCount) && bounds.minLength == 1) {
+                validWords.add(new String(prefix, 0, 1));
+            }
+            if (bounds.maxLength > 1) {
+                search(child, letterBudget, centre, centreCount, prefix, 1, bounds, validWords, control);
+            }
+        }
+    }
+}
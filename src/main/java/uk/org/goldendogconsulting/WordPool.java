@@ -0,0 +1,33 @@
+package uk.org.goldendogconsulting;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Words shared between dictionaries, so a word in several lists is held as one String. The pool only holds words
+ * weakly, a word is dropped once no dictionary uses it.
+ */
+final class WordPool {
+
+    private final Map<String, WeakReference<String>> words = new WeakHashMap<>();
+
+    /**
+     *
+     * @param word word to share
+     * @return the pooled String equal to the word, the word itself if it was not pooled
+     */
+    synchronized String share(String word) {
+        WeakReference<String> reference = words.get(word);
+        String shared = reference == null ? null : reference.get();
+        if (shared == null) {
+            words.put(word, new WeakReference<>(word));
+            shared = word;
+        }
+        return shared;
+    }
+
+    synchronized int size() {
+        return words.size();
+    }
+}
@@ -0,0 +1,104 @@
+package uk.org.goldendogconsulting;
+
+/**
+ * What a streaming search is asked to find, see {@link WordWheelEngine#findWords(String, WordQuery,
+ * java.util.function.Consumer, SearchControl)}.
+ * <p>
+ * A query bounds the length of the words wanted and may limit how many are wanted. Solvers are told the length bounds
+ * so they can leave out branches that cannot produce a word long enough, and the search is stopped as soon as the
+ * limit is reached, so the time taken depends on the answer rather than on the whole wheel. Words must contain the
+ * centre letter unless the query is made {@link #withoutCentre()}.
+ */
+public final class WordQuery {
+
+    private static final WordQuery ALL = new WordQuery(1, Integer.MAX_VALUE, false, true);
+
+    private final int minLength;
+    private final int limit;
+    private final boolean longestFirst;
+    private final boolean centreRequired;
+
+    private WordQuery(int minLength, int limit, boolean longestFirst, boolean centreRequired) {
+        this.minLength = minLength;
+        this.limit = limit;
+        this.longestFirst = longestFirst;
+        this.centreRequired = centreRequired;
+    }
+
+    /**
+     *
+     * @return query for every word, the same answer as an ordinary search
+     */
+    public static WordQuery all() {
+        return ALL;
+    }
+
+    /**
+     *
+     * @param length shortest word wanted
+     * @return query for every word of at least the given length
+     */
+    public static WordQuery minimumLength(int length) {
+        return new WordQuery(Math.max(1, length), Integer.MAX_VALUE, false, true);
+    }
+
+    /**
+     *
+     * @return query that stops at the first word found that uses every letter of the wheel
+     */
+    public static WordQuery firstNineLetterWord() {
+        return new WordQuery(Integer.MAX_VALUE, 1, false, true);
+    }
+
+    /**
+     * Words are searched for a length at a time, longest first, and the search stops once enough have been found.
+     * Which words are kept among those of the shortest length included is the order they happen to be found in.
+     * @param count number of words wanted
+     * @return query for the longest words
+     */
+    public static WordQuery longest(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count " +count +" must be at least 1");
+        }
+        return new WordQuery(1, count, true, true);
+    }
+
+    /**
+     *
+     * @return the same query for every word that can be built from the wheel, whether or not it has the centre letter
+     */
+    public WordQuery withoutCentre() {
+        return new WordQuery(minLength, limit, longestFirst, false);
+    }
+
+    /**
+     *
+     * @param wheelSize number of letters on the wheel
+     * @return shortest word wanted from a wheel of that size
+     */
+    public int getMinLength(int wheelSize) {
+        return Math.min(minLength, wheelSize);
+    }
+
+    /**
+     *
+     * @return most words wanted, Integer.MAX_VALUE if there is no limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isLongestFirst() {
+        return longestFirst;
+    }
+
+    public boolean isCentreRequired() {
+        return centreRequired;
+    }
+
+    @Override
+    public String toString() {
+        return "WordQuery{minLength=" +minLength +", limit=" +limit +", longestFirst=" +longestFirst
+                +", centreRequired=" +centreRequired +"}";
+    }
+}
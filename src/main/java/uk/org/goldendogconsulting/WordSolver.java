@@ -0,0 +1,75 @@
+package uk.org.goldendogconsulting;
+
+import java.util.Set;
+
+/**
+ * A strategy for finding all the valid words within a word wheel.
+ * <p>
+ * Implementations are handed the upper-case wheel letters with the centre letter first, and must add every
+ * dictionary word that can be built from those letters (each letter used at most once) and which contains the
+ * centre letter to the collection passed in. Implementations must be safe to call from several threads at once.
+ */
+public interface WordSolver {
+
+    /**
+     *
+     * @param letters : upper-case wheel letters, the first letter is the centre letter
+     * @param validWords : valid words found are added to this collection, this is a thread safe collection
+     * @param control : cancellation signal, the search stops early once it is stopped
+     * @return true if the search ran to completion, false if it was abandoned
+     * @throws PermutateStringException exception thrown if an error in searching is encountered
+     */
+    boolean findWords(String letters, Set<String> validWords, SearchControl control) throws PermutateStringException;
+
+    /**
+     * Search for words within a range of lengths only. Solvers that can leave out branches too short or too long to
+     * matter override this, the default searches for every word; either way words outside the range may be added and
+     * callers must filter them.
+     * @param letters : upper-case wheel letters, the first letter is the centre letter
+     * @param minLength : shortest word wanted
+     * @param maxLength : longest word wanted
+     * @param validWords : valid words found are added to this collection, this is a thread safe collection
+     * @param control : cancellation signal, the search stops early once it is stopped
+     * @return true if the search ran to completion, false if it was abandoned
+     * @throws PermutateStringException exception thrown if an error in searching is encountered
+     */
+    default boolean findWords(String letters, int minLength, int maxLength, Set<String> validWords,
+                              SearchControl control) throws PermutateStringException {
+        return findWords(letters, validWords, control);
+    }
+
+    /**
+     * Search for every word that can be built from the wheel, whether or not it contains the centre letter. Every such
+     * word has at least one of the wheel's letters, so the default searches once with each distinct letter as the
+     * centre; solvers that can search without a centre letter override this. Words outside the range may be added.
+     * @param letters : upper-case wheel letters
+     * @param minLength : shortest word wanted
+     * @param maxLength : longest word wanted
+     * @param validWords : valid words found are added to this collection, this is a thread safe collection
+     * @param control : cancellation signal, the search stops early once it is stopped
+     * @return true if the search ran to completion, false if it was abandoned
+     * @throws PermutateStringException exception thrown if an error in searching is encountered
+     */
+    default boolean findWordsWithoutCentre(String letters, int minLength, int maxLength, Set<String> validWords,
+                                           SearchControl control) throws PermutateStringException {
+        boolean complete = true;
+        for (int i = 0; i < letters.length() && !control.isStopped(); i++) {
+            if (letters.indexOf(letters.charAt(i)) == i) {
+                String centred = letters.charAt(i) + letters.substring(0, i) + letters.substring(i + 1);
+                complete &= findWords(centred, minLength, maxLength, validWords, control);
+            }
+        }
+        return complete && !control.isStopped();
+    }
+
+    /**
+     * Search without any deadline.
+     * @param letters : upper-case wheel letters, the first letter is the centre letter
+     * @param validWords : valid words found are added to this collection, this is a thread safe collection
+     * @return true if the search ran to completion, false if it was abandoned
+     * @throws PermutateStringException exception thrown if an error in searching is encountered
+     */
+    default boolean findWords(String letters, Set<String> validWords) throws PermutateStringException {
+        return findWords(letters, validWords, SearchControl.unbounded());
+    }
+}
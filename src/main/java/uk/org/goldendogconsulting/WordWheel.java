@@ -1,37 +1,31 @@
 package uk.org.goldendogconsulting;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Scanner;
 import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * Engine to parse a String for valid words
+ * <p>
+ * Each call to {@link #findWords(String)} is solved by a shared {@link WordWheelEngine} and starts from nothing, so an
+ * instance can be reused for any number of puzzles; the accessors report the most recent search. Callers that solve
+ * puzzles from several threads should use the engine directly, which returns an immutable result per call.
+ * <p>
+ * Given a {@link PuzzleCatalogue}, a catalogued puzzle is answered by looking it up: its word counts and nine letter
+ * words come from the catalogue, and the words themselves are only searched for if one of the accessors needing them
+ * is called. Every other puzzle is solved as it always has been.
  *
  * @author davidscholefield
  */
 public class WordWheel {
-    private final Set<String> dictionary;
-    private final Set<String> permutations;
-    private final Map<String, String> permutationCombinationsLookup;
-    private final Set<String> combinationsSet;
-    private final Set<String> validWords;
-    private String centreLetter = "";
-    private String wheelLetters = "";
-    private int uniqueCharacterCount;
-    private int combinationsToFind;
+    private final WordWheelEngine engine;
+    private final PuzzleCatalogue catalogue;
+    private WordWheelResult result = WordWheelResult.empty();
+    private PuzzleCatalogue.Entry catalogued;
+    private String cataloguedLetters;
 
     private static final Logger LOG = LogManager.getLogger(WordWheel.class);
 
@@ -39,102 +33,43 @@ public class WordWheel {
      *
      */
     public WordWheel() throws PermutateStringException {
-        // Check validity of string passed
-
-        dictionary = new HashSet<>();
-        permutations = new HashSet<>();
-        permutationCombinationsLookup = new HashMap<>();
-
-        // Note use of thread safe Set object
-        combinationsSet = new ConcurrentSkipListSet<>();
-        validWords = new ConcurrentSkipListSet<>();
-
-        loadDictionary();
-        loadPermutationsCombinationsLookup();
-
-    }
-
-    // Private class methods
-    private static boolean isAlpha(String s) {
-        return s != null && s.length() == 9 && s.chars().allMatch(Character::isLetter);
-    }
-
-    private int findUniqueCharacterCount(String word) {
-        Set<Character> charSet = new HashSet<>();
-        for (Character character : word.toCharArray()) {
-            charSet.add(character);
-        }
-        return charSet.size();
-    }
-
-    private void findPermutation(String str, String ans) {
-        // If string is empty, this is the bottom of the recursive call when a permutation has been found
-        if (str.length() == 0) {
-            permutations.add(ans);
-            return;
-        }
-
-        for (int i = 0; i < str.length(); i++) {
-            // ith character of str
-            char ch = str.charAt(i);
-
-            // Rest of the string after excluding the ith character
-            String ros = str.substring(0, i) + str.substring(i + 1);
-
-            // Recursive call
-            findPermutation(ros, ans + ch);
-        }
+        this(SolverStrategy.TRIE);
     }
 
-    private void loadDictionary() {
-        try (Scanner scanner = new Scanner(Objects.requireNonNull(WordWheel.class.getResourceAsStream("/dictionary.txt")))) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                if (!line.startsWith("--")) {
-                    dictionary.add(line);
-                }
-            }
-        }
+    /**
+     *
+     * @param strategy the solver implementation used to search for words
+     */
+    public WordWheel(SolverStrategy strategy) throws PermutateStringException {
+        this(strategy, Dictionary.getDefault());
     }
 
-    private void loadPermutationsCombinationsLookup() {
-        try (Scanner scanner = new Scanner(Objects.requireNonNull(WordWheel.class.getResourceAsStream("/permutationLookup.txt")))) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] lineParts = line.split(":");
-
-                // first part is name, second is number
-                String key = lineParts[0].trim();
-                String value = lineParts[1].trim();
-                permutationCombinationsLookup.put(key, value);
-            }
-        }
+    /**
+     *
+     * @param strategy the solver implementation used to search for words
+     * @param dictionary dictionary of known valid words
+     */
+    public WordWheel(SolverStrategy strategy, Dictionary dictionary) throws PermutateStringException {
+        // Collects the combinations so that getCombinationsSet() reports them as it always has
+        this(new WordWheelEngine(strategy, dictionary, SolverScheduler.getDefault(), true));
     }
 
-    private void substring(String content, String part, int index) {
-        if (index >= content.length()) {
-            return;
-        }
-        String sub = part + content.charAt(index);
-
-        permutation("", sub);
-
-        substring(content, sub, index + 1);
+    /**
+     *
+     * @param engine engine, possibly shared with other callers, used to search for words
+     */
+    public WordWheel(WordWheelEngine engine) {
+        this(engine, null);
     }
 
-    private void permutation(String prefix, String str) {
-        int n = str.length();
-        if (n == 0) {
-            combinationsSet.add(prefix);
-            if (centreLetter != null) {
-                if ((prefix.contains(centreLetter)) && (dictionary.contains(prefix)))
-                    validWords.add(prefix);
-            }
-        } else {
-            for (int i = 0; i < n; i++) {
-                permutation(prefix + str.charAt(i), str.substring(0, i) + str.substring(i + 1, n));
-            }
-        }
+    /**
+     *
+     * @param engine engine, possibly shared with other callers, used to search for words
+     * @param catalogue answers to look puzzles up in before searching, null to search for every puzzle
+     */
+    public WordWheel(WordWheelEngine engine, PuzzleCatalogue catalogue) {
+        this.engine = engine;
+        this.catalogue = catalogue;
     }
 
     // Public methods
@@ -146,41 +81,72 @@ public class WordWheel {
      * @return true if the source string has been searched and all possible combinations have been found but there are
      * more combinations still to be found, false if there are no more combinations to be found
      */
-    public boolean findWords(String word) throws PermutateStringException {
-        if (!isAlpha(word)) {
-            throw new PermutateStringException("word " +word
-                    +" is invalid (null, not nine characters in length or contains non alpha characters");
+    public synchronized boolean findWords(String word) throws PermutateStringException {
+        PuzzleCatalogue.Entry entry = lookup(word);
+        if (entry != null) {
+            LOG.debug("Puzzle " +word +" answered from the catalogue");
+            catalogued = entry;
+            cataloguedLetters = word.toUpperCase();
+            result = null;
+            return true;
         }
-        centreLetter = word.toUpperCase().substring(0,1);
-        wheelLetters = word.toUpperCase().substring(1);
-        uniqueCharacterCount = findUniqueCharacterCount(word);
-        findPermutation(word.toUpperCase(), "");
-        // Calculate permutations
-        combinationsToFind = Integer.parseInt(permutationCombinationsLookup.get(uniqueCharacterCount +Integer.toString(permutations.size())));
-
-        LOG.debug("Looking for " +combinationsToFind +" combinations of \"" +word +"\"");
-
-        List<Future<Boolean>> resultList = new ArrayList<>();
-        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(40);
-        for (String permutation : permutations) {
-                FindCombination findCombination = new FindCombination(permutation, combinationsSet, validWords,
-                        combinationsToFind,  centreLetter, dictionary);
-                Future<Boolean> result = executor.submit(findCombination);
-                resultList.add(result);
+        long startTime = System.nanoTime();
+        WordWheelResult wordWheelResult = engine.findWords(word);
+        LOG.debug("Solved " +word +" in " +computeMsecTime(startTime) +" msecs");
+        catalogued = null;
+        cataloguedLetters = null;
+        result = wordWheelResult;
+        return wordWheelResult.isComplete();
+    }
+
+    /**
+     * Search for only the words a query wants, such as words of a minimum length or words without the centre letter.
+     * Never answered from the catalogue, which holds every word of the puzzle.
+     *  @param word letters of the puzzle, centre letter first
+     *  @param query the words wanted
+     *  @throws PermutateStringException exception thrown if an error in parsing is encountered
+     * @return true if the search ran to completion
+     */
+    public synchronized boolean findWords(String word, WordQuery query) throws PermutateStringException {
+        long startTime = System.nanoTime();
+        WordWheelResult wordWheelResult = engine.findWords(word, query, null);
+        LOG.debug("Solved " +word +" for " +query +" in " +computeMsecTime(startTime) +" msecs");
+        catalogued = null;
+        cataloguedLetters = null;
+        result = wordWheelResult;
+        return wordWheelResult.isComplete();
+    }
+
+    private PuzzleCatalogue.Entry lookup(String word) {
+        if (catalogue == null || !WordWheelEngine.isWheel(word)) {
+            return null;
         }
-        for(Future<Boolean> future : resultList)
-        {
+        return catalogue.lookup(word.toUpperCase());
+    }
+
+    /**
+     *
+     * @param word letters of the puzzle, centre letter first
+     * @return true if the puzzle is answered from the catalogue rather than searched for
+     */
+    public boolean isCatalogued(String word) {
+        return lookup(word) != null;
+    }
+
+    /**
+     * The result of the most recent search, searching for the words now if the puzzle was answered from the
+     * catalogue.
+     */
+    private synchronized WordWheelResult result() {
+        if (result == null) {
             try {
-                future.get();
-            }
-            catch (InterruptedException | ExecutionException exception) {
-                LOG.error("Exception " +exception.getClass().getName() +"occurred : " +exception.getMessage(), exception);
-                return false;
+                result = engine.findWords(cataloguedLetters);
+            } catch (PermutateStringException permutateStringException) {
+                // The letters were checked when the puzzle was looked up
+                throw new IllegalStateException(permutateStringException);
             }
         }
-        // Shut down the executor service
-        executor.shutdown();
-        return true;
+        return result;
     }
 
     private long computeMsecTime(long startTime) {
@@ -198,43 +164,76 @@ public class WordWheel {
      * The first set can be easily searched for any valid words against a known dictionary list
      * @return List of Valid nine-letter words within the dictionary that have been found
      */
-    public List<String> findNineLetterWords() {
-        List<String> nineLetterWords = new ArrayList<>();
-        for (String permutation : permutations) {
-            if (dictionary.contains(permutation)) {
-                nineLetterWords.add(permutation);
-            }
-        }
+    public synchronized List<String> findNineLetterWords() {
+        List<String> nineLetterWords = new ArrayList<>(catalogued != null ? catalogued.getNineLetterWords()
+                : result().getNineLetterWords());
         LOG.debug("Found " +nineLetterWords.size() +" nine letter word(s)");
         return nineLetterWords;
     }
 
     // Accessors and mutators
+    public WordWheelEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     *
+     * @return the immutable result of the most recent search
+     */
+    public WordWheelResult getResult() {
+        return result();
+    }
+
+    /**
+     *
+     * @return number of valid words found by the most recent search
+     */
+    public synchronized int getWordCount() {
+        return catalogued != null ? catalogued.getWordCount() : result().getWordCount();
+    }
+
+    /**
+     *
+     * @param length word length
+     * @return number of valid words of that length found by the most recent search
+     */
+    public synchronized int getWordCount(int length) {
+        return catalogued != null ? catalogued.getWordCount(length) : result().getWordCount(length);
+    }
+
+    public PuzzleCatalogue getCatalogue() {
+        return catalogue;
+    }
+
     public int getUniqueCharacterCount() {
-        return uniqueCharacterCount;
+        return result().getUniqueCharacterCount();
     }
 
     public String getCentreLetter() {
-        return centreLetter;
+        return result().getCentreLetter();
     }
 
     public String getWheelLetters() {
-        return wheelLetters;
+        return result().getWheelLetters();
+    }
+
+    public SolverStrategy getStrategy() {
+        return engine.getStrategy();
     }
 
     public long getPermutationsSize() {
-        return permutations.size();
+        return result().getPermutationsSize();
     }
 
     public int getCombinationsToFind() {
-        return combinationsToFind;
+        return Math.toIntExact(result().getCombinationsToFind());
     }
 
     public Set<String> getCombinationsSet() {
-        return combinationsSet;
+        return result().getCombinations();
     }
 
     public Set<String> getValidWords() {
-        return validWords;
+        return result().getValidWords();
     }
 }
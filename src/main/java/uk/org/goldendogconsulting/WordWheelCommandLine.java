@@ -6,8 +6,21 @@ import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class WordWheelCommandLine {
 
@@ -27,6 +40,28 @@ public class WordWheelCommandLine {
         options.addOption("l", false, "list valid words found");
         // add option "-s"
         options.addOption("s", false, "display statistics found");
+        // add option "-m"
+        options.addOption("m", true, "minimum word length");
+        // add option "-a"
+        options.addOption("a", false, "words need not contain the centre letter");
+        // add option "-b"
+        options.addOption("b", true, "batch file of puzzles, - for stdin");
+        // add option "-j"
+        options.addOption("j", false, "batch results as JSON lines");
+        // add option "-u"
+        options.addOption("u", false, "batch results as completed rather than in input order");
+        // add option "-n"
+        options.addOption("n", true, "number of batch puzzles solved at once");
+        // add option "-p"
+        options.addOption("p", true, "serve puzzles over HTTP on this port");
+        // add option "-d"
+        options.addOption("d", true, "dictionary the server may solve against, as name=path");
+        // add option "-x"
+        options.addOption("x", true, "pattern of letters and ? for open squares, filled from the wheel letters");
+        // add option "-k"
+        options.addOption("k", true, "number of worker processes a batch is sharded across");
+        // add option "-g"
+        options.addOption("g", true, "solve batch work units for the coordinator at host:port");
 
         //***Parsing Stage***
         //Create a parser
@@ -44,48 +79,80 @@ public class WordWheelCommandLine {
         if (cmd == null) {
             System.out.println("Null object produced on parsing.");
             printArgs();
+        } else if (cmd.hasOption("g")) {
+            runWorker(cmd);
+        } else if (cmd.hasOption("b") && cmd.hasOption("k")) {
+            runShardedBatch(cmd);
+        } else if (cmd.hasOption("b")) {
+            runBatch(cmd);
+        } else if (cmd.hasOption("p")) {
+            runServer(cmd);
+        } else if (cmd.hasOption("x")) {
+            runPattern(cmd);
         } else if (cmd.hasOption("c") && (cmd.hasOption("w"))) {
             String centre = cmd.getOptionValue("c").toUpperCase();
             String wheel = cmd.getOptionValue("w").toUpperCase();
             System.out.println("centre : " + centre + ", wheel : " + wheel);
             try {
-                WordWheel wordWheel = new WordWheel();
-                wordWheel.findWords(centre + wheel);
-                Set<String> validWords = wordWheel.getValidWords();
+                WordWheelEngine engine = new WordWheelEngine();
+                WordWheel wordWheel = new WordWheel(engine, PuzzleCatalogue.loadDefault(engine.getDictionary()));
+                String letters = centre + wheel;
+                WordQuery query = WordQuery.all();
+                if (cmd.hasOption("m")) {
+                    query = WordQuery.minimumLength(Integer.parseInt(cmd.getOptionValue("m")));
+                }
+                if (cmd.hasOption("a")) {
+                    query = query.withoutCentre();
+                }
+                int minLength = cmd.hasOption("m") ? query.getMinLength(letters.length()) : 2;
+                // A catalogued puzzle is answered straight away, anything else is only solved if asked for
+                boolean catalogued = query == WordQuery.all() && wordWheel.isCatalogued(letters);
+                if (catalogued) {
+                    wordWheel.findWords(letters);
+                }
                 if (cmd.hasOption("9")) {
                     System.out.println("CL looking for nine letter words");
-                    List<String> words = wordWheel.findNineLetterWords();
-                    if ((words == null) || words.isEmpty()) {
+                    List<String> words;
+                    if (catalogued) {
+                        words = wordWheel.findNineLetterWords();
+                        words.forEach(System.out::println);
+                    } else {
+                        // Printed as they are found, only branches long enough to make a nine letter word are searched
+                        words = engine.findWords(letters, WordQuery.minimumLength(letters.length()),
+                                System.out::println).getNineLetterWords();
+                    }
+                    if (words.isEmpty()) {
                         System.out.println("No nine letter words found");
+                    }
+                }
+                if (!catalogued && (cmd.hasOption("t") || cmd.hasOption("s") || cmd.hasOption("l"))) {
+                    if (query == WordQuery.all()) {
+                        wordWheel.findWords(letters);
                     } else {
-                        for (String word : words) {
-                            System.out.println(word);
-                        }
+                        wordWheel.findWords(letters, query);
                     }
                 }
                 if (cmd.hasOption("t")) {
-                    System.out.println("Found " +validWords.size() + " valid words");
+                    System.out.println("Found " +wordWheel.getWordCount() + " valid words");
                 }
                 if (cmd.hasOption("s")) {
                     System.out.println("Stats on words found");
-                    for (int idx = 2; idx < 9; idx++ ) {
-                        int wordCount = 0;
-                        for (String word : validWords) {
-                            if (word.length() == idx) {
-                                wordCount +=1;
-                            }
-                        }
-                        System.out.println(idx +" - " +wordCount);
+                    for (int idx = minLength; idx < letters.length(); idx++ ) {
+                        System.out.println(idx +" - " +wordWheel.getWordCount(idx));
                     }
                 }
                 if (cmd.hasOption("l")) {
+                    Set<String> validWords = wordWheel.getValidWords();
+                    // Words that needed a blank are followed by the letters the blanks stood for
+                    Map<String, String> blankLetters = wordWheel.getResult().getBlankLetters();
                     System.out.println("Words found");
-                    for (int idx = 2; idx < 9; idx++ ) {
+                    for (int idx = minLength; idx < letters.length(); idx++ ) {
                         System.out.println("Words of " +idx +" characters in length.");
                         int lineWordCount = 0;
                         for (String word : validWords) {
                             if (word.length() == idx) {
-                                System.out.print(word +" ");
+                                System.out.print(word +(blankLetters.containsKey(word)
+                                        ? "(" +blankLetters.get(word) +")" : "") +" ");
                                 lineWordCount +=1;
                                 if (lineWordCount %8 == 0) {
                                     System.out.println();
@@ -99,6 +166,9 @@ public class WordWheelCommandLine {
             } catch (PermutateStringException permutateStringException) {
                 System.out.println(permutateStringException.getMessage());
                 printArgs();
+            } catch (NumberFormatException numberFormatException) {
+                System.err.println("Error, -m must be a number, " +numberFormatException.getMessage());
+                printArgs();
             }
         } else  {
             System.err.println("Error, mandatory command line arguments not present.");
@@ -106,14 +176,157 @@ public class WordWheelCommandLine {
         }
     }
 
+    private static void runBatch(CommandLine cmd) {
+        String source = cmd.getOptionValue("b");
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        try {
+            if (cmd.hasOption("n")) {
+                parallelism = Integer.parseInt(cmd.getOptionValue("n"));
+            }
+        } catch (NumberFormatException numberFormatException) {
+            System.err.println("Error, -n must be a number, " +numberFormatException.getMessage());
+            printArgs();
+            return;
+        }
+        // Repeated puzzles, with their wheel letters in any order, are only solved once
+        Dictionary dictionary = Dictionary.getDefault();
+        ResultCache cache = new ResultCache(ResultCache.DEFAULT_MAX_ENTRIES);
+        String cacheFile = System.getProperty(ResultCache.CACHE_PROPERTY);
+        if (cacheFile != null) {
+            cache.load(Paths.get(cacheFile), dictionary);
+        }
+        WordWheelEngine engine = new WordWheelEngine(SolverStrategy.TRIE, dictionary, SolverScheduler.getDefault(),
+                false, cache);
+        BatchSolver batchSolver = new BatchSolver(engine, parallelism,
+                cmd.hasOption("j") ? BatchSolver.OutputFormat.JSON : BatchSolver.OutputFormat.TEXT, !cmd.hasOption("u"));
+        Writer output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        try (BufferedReader input = "-".equals(source)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)) {
+            BatchSolver.Summary summary = batchSolver.solve(input, output);
+            if (cacheFile != null) {
+                cache.save(Paths.get(cacheFile), dictionary);
+            }
+            if (summary.getFailed() > 0) {
+                System.exit(1);
+            }
+        } catch (IOException ioException) {
+            System.err.println("Error, batch failed : " +ioException.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private static void runShardedBatch(CommandLine cmd) {
+        String source = cmd.getOptionValue("b");
+        int workers;
+        try {
+            workers = Integer.parseInt(cmd.getOptionValue("k"));
+        } catch (NumberFormatException numberFormatException) {
+            System.err.println("Error, -k must be a number, " +numberFormatException.getMessage());
+            printArgs();
+            return;
+        }
+        Writer output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        try (ShardedBatchSolver coordinator = new ShardedBatchSolver(0, ShardedBatchSolver.DEFAULT_UNIT_SIZE,
+                ShardedBatchSolver.DEFAULT_UNIT_TIMEOUT_MSECS, TimeUnit.MILLISECONDS,
+                cmd.hasOption("j") ? BatchSolver.OutputFormat.JSON : BatchSolver.OutputFormat.TEXT);
+             BufferedReader input = "-".equals(source)
+                     ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                     : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)) {
+            coordinator.launchWorkers(workers);
+            BatchSolver.Summary summary = coordinator.solve(input, output);
+            if (summary.getFailed() > 0) {
+                System.exit(1);
+            }
+        } catch (IOException ioException) {
+            System.err.println("Error, batch failed : " +ioException.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private static void runWorker(CommandLine cmd) {
+        String coordinator = cmd.getOptionValue("g");
+        int separator = coordinator.lastIndexOf(':');
+        try {
+            // Warm for every unit the coordinator hands out, as a single batch's engine is
+            WordWheelEngine engine = new WordWheelEngine(SolverStrategy.TRIE, Dictionary.getDefault(),
+                    SolverScheduler.getDefault(), false, new ResultCache(ResultCache.DEFAULT_MAX_ENTRIES));
+            new BatchWorker(engine).run(coordinator.substring(0, Math.max(0, separator)),
+                    Integer.parseInt(coordinator.substring(separator + 1)));
+        } catch (NumberFormatException numberFormatException) {
+            System.err.println("Error, -g must be host:port, " +numberFormatException.getMessage());
+            printArgs();
+        } catch (IOException ioException) {
+            System.err.println("Error, worker failed : " +ioException.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private static void runPattern(CommandLine cmd) {
+        String pattern = cmd.getOptionValue("x").toUpperCase();
+        // The centre letter is only one more letter to fill the open squares with
+        String letters = (cmd.hasOption("c") ? cmd.getOptionValue("c") : "")
+                + (cmd.hasOption("w") ? cmd.getOptionValue("w") : "");
+        System.out.println("pattern : " + pattern + ", letters : " + letters.toUpperCase());
+        try {
+            List<String> words = new WordWheelEngine().findPattern(pattern, letters);
+            words.forEach(System.out::println);
+            System.out.println("Found " +words.size() +" words matching " +pattern);
+        } catch (PermutateStringException permutateStringException) {
+            System.out.println(permutateStringException.getMessage());
+            printArgs();
+        }
+    }
+
+    private static void runServer(CommandLine cmd) {
+        try {
+            // Runs until the JVM is stopped, then finishes the requests in progress
+            List<String> serverArgs = new ArrayList<>();
+            serverArgs.add(cmd.getOptionValue("p"));
+            if (cmd.hasOption("d")) {
+                serverArgs.addAll(Arrays.asList(cmd.getOptionValues("d")));
+            }
+            WordWheelServer.main(serverArgs.toArray(new String[0]));
+        } catch (NumberFormatException numberFormatException) {
+            System.err.println("Error, -p must be a port number, " +numberFormatException.getMessage());
+            printArgs();
+        } catch (IllegalArgumentException illegalArgumentException) {
+            System.err.println("Error, " +illegalArgumentException.getMessage());
+            printArgs();
+        } catch (IOException ioException) {
+            System.err.println("Error, unable to start server : " +ioException.getMessage());
+            System.exit(2);
+        }
+    }
+
     public static void printArgs() {
-        System.out.println("-c and -w mandatory options, all other optional");
-        System.out.println("syntax java org.goldendogconsulting.com -c <Centre letter> -w <Wheel letters> -9 -t -l -s ");
+        System.out.println("-c and -w mandatory options, all other optional, or -b to solve a batch of puzzles,"
+                +" or -p to serve them, or -x to match a pattern");
+        System.out.println("syntax java org.goldendogconsulting.com -c <Centre letter> -w <Wheel letters> -9 -t -l -s -m <Length> -a");
+        System.out.println("   or java org.goldendogconsulting.com -b <Puzzle file or -> -j -u -n <Threads>");
+        System.out.println("   or java org.goldendogconsulting.com -b <Puzzle file or -> -j -k <Worker processes>");
+        System.out.println("   or java org.goldendogconsulting.com -g <Coordinator host:port>");
+        System.out.println("   or java org.goldendogconsulting.com -p <Port> -d <Name=Dictionary file>");
+        System.out.println("   or java org.goldendogconsulting.com -x <Pattern> -w <Letters>");
         System.out.println("\t-c - Centre Letter");
-        System.out.println("\t-w - Wheel letters, must be 8 letters, no white space non alpha characters");
+        System.out.println("\t-w - Wheel letters, " +(WordWheelEngine.MIN_WHEEL_SIZE - 1) +" to "
+                +(WordWheelEngine.MAX_WHEEL_SIZE - 1) +" letters, usually 8, no white space non alpha characters"
+                +" except " +WordWheelEngine.BLANK +" for a blank tile");
         System.out.println("\t-9 - list nine letter words found");
         System.out.println("\t-t - give total number of valid words found");
         System.out.println("\t-l - list the words found, ordered by size, minimum word length is 2 characters");
         System.out.println("\t-s - give stats on all valid words");
+        System.out.println("\t-m - only words of at least this many characters, for -t -l -s");
+        System.out.println("\t-a - words need not contain the centre letter, for -t -l -s");
+        System.out.println("\t-b - solve every puzzle in a file, or stdin if -, one per line, centre letter first");
+        System.out.println("\t-j - write batch results as JSON lines");
+        System.out.println("\t-u - write batch results as they complete rather than in input order");
+        System.out.println("\t-n - number of batch puzzles solved at once, defaults to the number of cores");
+        System.out.println("\t-k - shard the batch across this many worker processes, results in input order");
+        System.out.println("\t-g - join the batch coordinator at host:port as a worker process");
+        System.out.println("\t-p - answer /solve, /nine, /stats and /status requests over HTTP on the port");
+        System.out.println("\t-d - dictionary a server query may name with dictionary=<Name>, may be repeated");
+        System.out.println("\t-x - list the words matching a pattern such as A?P??E, each " +WordWheelEngine.BLANK
+                +" filled by one of the -c and -w letters");
     }
 }
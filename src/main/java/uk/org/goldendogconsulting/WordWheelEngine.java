@@ -0,0 +1,527 @@
+package uk.org.goldendogconsulting;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Long-lived engine that owns a loaded dictionary and solves word wheels against it.
+ * <p>
+ * An engine holds no per-puzzle state, every call to {@link #findWords(String)} works on its own collections and
+ * returns an immutable {@link WordWheelResult}, so one engine can be shared by any number of threads solving
+ * different puzzles at the same time. Searches are split across a shared {@link SolverScheduler} and may be given a
+ * deadline, a search that runs past its deadline is cancelled and returns the words found so far, marked incomplete.
+ * A search may also be given a {@link WordQuery}, in which case words are handed to a listener as they are found and
+ * the search stops as soon as the query has its answer. Given a {@link ResultCache}, a puzzle already solved, with
+ * its wheel letters in any order, is answered from the cache.
+ * <p>
+ * A wheel may have from {@value #MIN_WHEEL_SIZE} to {@value #MAX_WHEEL_SIZE} letters, nine being the usual puzzle.
+ * The permutation solver takes factorial time in the size of the wheel and refuses wheels longer than
+ * {@value PermutationSolver#MAX_LETTERS} letters; the other solvers' cost grows with the dictionary and the subsets of
+ * the wheel's letters instead.
+ * <p>
+ * Any letter of the wheel but the centre may be a blank tile, {@value #BLANK}, standing for any letter. Blanks are
+ * made up within a single search by the trie and scan solvers, the other strategies hand a wheel with blanks to a
+ * trie search; {@link WordWheelResult#getBlankLetters()} reports the letter each blank took.
+ * <p>
+ * A wheel one letter different from one already solved, as when a puzzle is being edited, can be solved from the
+ * earlier result by {@link #replaceLetter} or {@link #swapCentre}, which keep the earlier words the new wheel still
+ * allows and look up in the dictionary's {@link PackedAnagramIndex} only the letter multisets of words the change
+ * makes possible, whatever the strategy.
+ * <p>
+ * Besides wheels, {@link #findPattern} finds the words matching a crossword style pattern such as "A?P??E" with the
+ * open squares filled from a set of letters, using the dictionary's {@link PatternIndex}.
+ */
+public class WordWheelEngine {
+
+    public static final int MIN_WHEEL_SIZE = 3;
+    public static final int MAX_WHEEL_SIZE = 16;
+    public static final char BLANK = '?';
+
+    private final Dictionary dictionary;
+    private final SolverStrategy strategy;
+    private final SolverScheduler scheduler;
+    private final WordSolver solver;
+    private final WordSolver blankSolver;
+    private final boolean collectCombinations;
+    private final ResultCache cache;
+
+    private static final Logger LOG = LogManager.getLogger(WordWheelEngine.class);
+
+    /**
+     * Engine over the default dictionary using the default solver.
+     */
+    public WordWheelEngine() {
+        this(SolverStrategy.TRIE, Dictionary.getDefault());
+    }
+
+    /**
+     *
+     * @param strategy the solver implementation used to search for words
+     * @param dictionary dictionary of known valid words
+     */
+    public WordWheelEngine(SolverStrategy strategy, Dictionary dictionary) {
+        this(strategy, dictionary, SolverScheduler.getDefault());
+    }
+
+    /**
+     *
+     * @param strategy the solver implementation used to search for words
+     * @param dictionary dictionary of known valid words
+     * @param scheduler pool searches are split across
+     */
+    public WordWheelEngine(SolverStrategy strategy, Dictionary dictionary, SolverScheduler scheduler) {
+        this(strategy, dictionary, scheduler, false);
+    }
+
+    /**
+     *
+     * @param strategy the solver implementation used to search for words
+     * @param dictionary dictionary of known valid words
+     * @param scheduler pool searches are split across
+     * @param collectCombinations true to have the permutation solver hold every combination it finds in the result,
+     *                            hundreds of megabytes for a wheel of nine different letters; false to keep only the
+     *                            counts. Ignored by the other solvers
+     */
+    public WordWheelEngine(SolverStrategy strategy, Dictionary dictionary, SolverScheduler scheduler,
+                           boolean collectCombinations) {
+        this(strategy, dictionary, scheduler, collectCombinations, null);
+    }
+
+    /**
+     *
+     * @param strategy the solver implementation used to search for words
+     * @param dictionary dictionary of known valid words
+     * @param scheduler pool searches are split across
+     * @param collectCombinations true to have the permutation solver hold every combination it finds in the result,
+     *                            false to keep only the counts. Ignored by the other solvers
+     * @param cache results of earlier searches, not shared with an engine over another dictionary; null for none
+     */
+    public WordWheelEngine(SolverStrategy strategy, Dictionary dictionary, SolverScheduler scheduler,
+                           boolean collectCombinations, ResultCache cache) {
+        this.dictionary = dictionary;
+        this.strategy = strategy;
+        this.scheduler = scheduler;
+        this.collectCombinations = collectCombinations;
+        this.cache = cache;
+        if (strategy == SolverStrategy.PERMUTATION) {
+            // The permutation solver keeps state per search, so one is built for each call
+            solver = null;
+        } else if (strategy == SolverStrategy.TRIE) {
+            solver = new TrieSolver(dictionary.getTrie(), scheduler);
+        } else if (strategy == SolverStrategy.SCAN) {
+            solver = new ColumnarScanSolver(dictionary, scheduler);
+        } else {
+            solver = new AnagramKeySolver(dictionary.getWords());
+        }
+        // Only the trie and scan solvers make up blanks themselves
+        blankSolver = strategy == SolverStrategy.TRIE || strategy == SolverStrategy.SCAN ? solver
+                : new TrieSolver(dictionary.getTrie(), scheduler);
+    }
+
+    static boolean isWheel(String s) {
+        return s != null && s.length() >= MIN_WHEEL_SIZE && s.length() <= MAX_WHEEL_SIZE
+                && s.chars().allMatch(ch -> Character.isLetter(ch) || ch == BLANK);
+    }
+
+    /**
+     *
+     * @param letters wheel letters
+     * @return number of blank tiles among them
+     */
+    static int countBlanks(String letters) {
+        int blanks = 0;
+        for (int i = 0; i < letters.length(); i++) {
+            if (letters.charAt(i) == BLANK) {
+                blanks++;
+            }
+        }
+        return blanks;
+    }
+
+    /**
+     *
+     *  @param word String (more like a collection of characters) to searched for, convention is that the first letter of
+     *              the String should be in all combinations and words found.
+     *  @throws PermutateStringException exception thrown if an error in parsing is encountered
+     * @return the words found
+     */
+    public WordWheelResult findWords(String word) throws PermutateStringException {
+        return findWords(word, SearchControl.unbounded());
+    }
+
+    /**
+     *
+     *  @param word String (more like a collection of characters) to searched for, convention is that the first letter of
+     *              the String should be in all combinations and words found.
+     *  @param timeout longest the search may run for
+     *  @param unit unit of the timeout
+     *  @throws PermutateStringException exception thrown if an error in parsing is encountered
+     * @return the words found, incomplete if the search was cancelled at the deadline
+     */
+    public WordWheelResult findWords(String word, long timeout, TimeUnit unit) throws PermutateStringException {
+        return findWords(word, SearchControl.withTimeout(timeout, unit));
+    }
+
+    /**
+     *
+     *  @param word String (more like a collection of characters) to searched for, convention is that the first letter of
+     *              the String should be in all combinations and words found.
+     *  @param control cancellation signal for the search
+     *  @throws PermutateStringException exception thrown if an error in parsing is encountered
+     * @return the words found, incomplete if the search was cancelled
+     */
+    public WordWheelResult findWords(String word, SearchControl control) throws PermutateStringException {
+        String letters = toLetters(word);
+        if (cache == null) {
+            return solve(letters, control);
+        }
+        return cache.get(letters, control, missed -> solve(missed, control));
+    }
+
+    private WordWheelResult solve(String letters, SearchControl control) throws PermutateStringException {
+        SolverMetrics metrics = SolverMetrics.getDefault();
+        long startNanos = metrics.start();
+        try {
+            return solveWith(letters, control);
+        } finally {
+            metrics.record(SolverMetrics.Phase.SOLVE, startNanos);
+            metrics.add(SolverMetrics.Counter.SOLVES, 1);
+        }
+    }
+
+    private WordWheelResult solveWith(String letters, SearchControl control) throws PermutateStringException {
+        // Unordered, the result sorts the words once they are all found
+        Set<String> validWords = ConcurrentHashMap.newKeySet();
+        long startTime = System.nanoTime();
+        if (solver != null || countBlanks(letters) > 0) {
+            boolean complete = solverFor(letters).findWords(letters, validWords, control);
+            return new WordWheelResult(letters, validWords, complete, System.nanoTime() - startTime,
+                    0, Collections.emptySet(), 0, true);
+        }
+        Set<String> combinationsSet = collectCombinations ? ConcurrentHashMap.newKeySet() : Collections.emptySet();
+        PermutationSolver permutationSolver = collectCombinations
+                ? new PermutationSolver(dictionary.getPackedWords(), new HashSet<>(), combinationsSet, scheduler)
+                : new PermutationSolver(dictionary.getPackedWords(), scheduler);
+        boolean complete = permutationSolver.findWords(letters, validWords, control);
+        long solveNanos = System.nanoTime() - startTime;
+        if (control.isTimedOut()) {
+            LOG.warn("Permutation search of \"" +letters +"\" abandoned at its deadline");
+        }
+        LOG.debug("Permutation search of \"" +letters +"\" found " +permutationSolver.getCombinationsFound()
+                +" of " +permutationSolver.getCombinationsToFind() +" combinations");
+        return new WordWheelResult(letters, validWords, complete, solveNanos, permutationSolver.getCombinationsFound(),
+                combinationsSet, 0, true);
+    }
+
+    /**
+     * Solve the wheel made by putting another letter in place of one of an earlier wheel's. The earlier words that
+     * needed the letter taken away are dropped and only the words that use every copy of the new letter, those the
+     * earlier wheel could not make, are looked up. Replacing the centre letter changes which words are wanted
+     * throughout, so it is solved from scratch, as is an earlier result that is incomplete or only the answer to a
+     * {@link WordQuery}, or a wheel with blanks or longer than {@value PackedWordSet#MAX_LENGTH} letters.
+     *
+     * @param previous result of solving the earlier wheel with this engine
+     * @param position index of the letter to replace in {@link WordWheelResult#getLetters()}, 0 for the centre
+     * @param letter the letter put in its place
+     * @throws PermutateStringException if the position is not on the wheel or the new wheel is invalid
+     * @return the words of the new wheel, {@link WordWheelResult#getReusedWordCount()} of them carried over
+     */
+    public WordWheelResult replaceLetter(WordWheelResult previous, int position, char letter)
+            throws PermutateStringException {
+        String previousLetters = previous.getLetters();
+        checkPosition(previousLetters, position, 0);
+        String letters = toLetters(previousLetters.substring(0, position) + letter
+                + previousLetters.substring(position + 1));
+        if (position == 0 || !canReuse(previous, letters)) {
+            return findWords(letters);
+        }
+        char removed = previousLetters.charAt(position);
+        char added = letters.charAt(position);
+        ResultCache.Solver incremental = missed -> solveReplaced(previous, missed, removed, added);
+        return cache == null ? incremental.solve(letters) : cache.get(letters, incremental);
+    }
+
+    /**
+     * Solve the wheel made by swapping the centre letter of an earlier wheel with one of its other letters. The
+     * letters are the same, so the earlier words with the new centre letter are kept and only words without the old
+     * centre letter are searched for.
+     *
+     * @param previous result of solving the earlier wheel with this engine
+     * @param position index in {@link WordWheelResult#getLetters()} of the letter to make the centre, from 1
+     * @throws PermutateStringException if the position is not on the wheel or the new wheel is invalid
+     * @return the words of the new wheel, {@link WordWheelResult#getReusedWordCount()} of them carried over
+     */
+    public WordWheelResult swapCentre(WordWheelResult previous, int position) throws PermutateStringException {
+        String previousLetters = previous.getLetters();
+        checkPosition(previousLetters, position, 1);
+        String letters = toLetters(previousLetters.charAt(position) + previousLetters.substring(1, position)
+                + previousLetters.charAt(0) + previousLetters.substring(position + 1));
+        if (!canReuse(previous, letters)) {
+            return findWords(letters);
+        }
+        ResultCache.Solver incremental = missed -> solveSwapped(previous, missed);
+        return cache == null ? incremental.solve(letters) : cache.get(letters, incremental);
+    }
+
+    private static void checkPosition(String letters, int position, int first) throws PermutateStringException {
+        if (position < first || position >= letters.length()) {
+            throw new PermutateStringException("position " +position +" is not on the wheel " +letters);
+        }
+    }
+
+    // A query's answer may have left out words the new wheel needs. Only wheels of A to Z short enough to pack are in
+    // the anagram index, so a wheel with blanks is solved afresh; and a result holding combinations needs them all
+    // searched
+    private boolean canReuse(WordWheelResult previous, String letters) {
+        return previous.isComplete() && previous.isFullSolve() && PackedWordSet.pack(previous.getLetters()) > 0
+                && PackedWordSet.pack(letters) > 0 && !(solver == null && collectCombinations);
+    }
+
+    private WordWheelResult solveReplaced(WordWheelResult previous, String letters, char removed, char added) {
+        long startTime = System.nanoTime();
+        int[] available = LetterCountIndex.countLetters(letters);
+        // Sorted as found, so the result copies it without sorting again
+        Set<String> validWords = new TreeSet<>();
+        for (String word : previous.getValidWords()) {
+            if (count(word, removed) <= available[removed - 'A']) {
+                validWords.add(word);
+            }
+        }
+        int reused = validWords.size();
+        // A word with fewer copies of the new letter than the wheel now has fitted the earlier wheel too
+        int[] leastCounts = new int[available.length];
+        leastCounts[letters.charAt(0) - 'A'] = 1;
+        leastCounts[added - 'A'] = available[added - 'A'];
+        dictionary.getAnagramIndex().findWords(leastCounts, available, validWords);
+        return new WordWheelResult(letters, validWords, true, System.nanoTime() - startTime, 0,
+                Collections.emptySet(), reused, true);
+    }
+
+    private WordWheelResult solveSwapped(WordWheelResult previous, String letters) {
+        long startTime = System.nanoTime();
+        char centre = letters.charAt(0);
+        char oldCentre = previous.getCentreLetter().charAt(0);
+        Set<String> validWords = new TreeSet<>();
+        for (String word : previous.getValidWords()) {
+            if (word.indexOf(centre) >= 0) {
+                validWords.add(word);
+            }
+        }
+        int reused = validWords.size();
+        if (centre != oldCentre) {
+            // Words with both letters were found before, so the rest are made without the old centre letter at all
+            int[] available = LetterCountIndex.countLetters(letters);
+            int[] leastCounts = new int[available.length];
+            leastCounts[centre - 'A'] = 1;
+            available[oldCentre - 'A'] = 0;
+            dictionary.getAnagramIndex().findWords(leastCounts, available, validWords);
+        }
+        return new WordWheelResult(letters, validWords, true, System.nanoTime() - startTime, 0,
+                Collections.emptySet(), reused, true);
+    }
+
+    private static int count(String word, char letter) {
+        int count = 0;
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) == letter) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     *
+     *  @param word String (more like a collection of characters) to searched for, convention is that the first letter of
+     *              the String should be in all combinations and words found.
+     *  @param query the words wanted
+     *  @param listener called with each word the query wants as it is found, one call at a time; may be null
+     *  @throws PermutateStringException exception thrown if an error in parsing is encountered
+     * @return the words the query wanted
+     */
+    public WordWheelResult findWords(String word, WordQuery query, Consumer<String> listener)
+            throws PermutateStringException {
+        return findWords(word, query, listener, SearchControl.unbounded());
+    }
+
+    /**
+     *
+     *  @param word String (more like a collection of characters) to searched for, convention is that the first letter of
+     *              the String should be in all combinations and words found.
+     *  @param query the words wanted
+     *  @param listener called with each word the query wants as it is found, one call at a time; may be null
+     *  @param control cancellation signal for the search
+     *  @throws PermutateStringException exception thrown if an error in parsing is encountered
+     * @return the words the query wanted, complete if the query was answered, incomplete if the search was cancelled
+     * first
+     */
+    public WordWheelResult findWords(String word, WordQuery query, Consumer<String> listener, SearchControl control)
+            throws PermutateStringException {
+        String letters = toLetters(word);
+        int minLength = query.getMinLength(letters.length());
+        // Stopped once the query is answered, without marking the caller's search as cancelled
+        SearchControl queryControl = control.child();
+        QueryWords queryWords = new QueryWords(minLength, query.getLimit(), listener, queryControl);
+        // Collecting combinations would defeat stopping early, so a query never does
+        WordSolver querySolver = solver != null || countBlanks(letters) > 0 ? solverFor(letters)
+                : new PermutationSolver(dictionary.getPackedWords(), scheduler);
+        long startTime = System.nanoTime();
+        if (query.isLongestFirst()) {
+            for (int length = letters.length(); length >= minLength && !queryControl.isStopped(); length--) {
+                search(querySolver, letters, query, length, length, queryWords, queryControl);
+            }
+        } else {
+            search(querySolver, letters, query, minLength, letters.length(), queryWords, queryControl);
+        }
+        boolean complete = !control.isStopped();
+        return new WordWheelResult(letters, queryWords.getWords(), complete, System.nanoTime() - startTime, 0,
+                Collections.emptySet());
+    }
+
+    private static void search(WordSolver querySolver, String letters, WordQuery query, int minLength, int maxLength,
+                               Set<String> words, SearchControl control) throws PermutateStringException {
+        if (query.isCentreRequired()) {
+            querySolver.findWords(letters, minLength, maxLength, words, control);
+        } else {
+            querySolver.findWordsWithoutCentre(letters, minLength, maxLength, words, control);
+        }
+    }
+
+    /**
+     * Find the words of the dictionary that match a crossword style pattern, filling its open squares from a set of
+     * letters as a player would from a rack. The pattern's own letters are already in place and take nothing from the
+     * letters given. Answered from the dictionary's {@link PatternIndex}, whatever the strategy, so the time taken
+     * depends on the words matching the fixed letters rather than on a full solve.
+     *
+     * @param pattern letters in place and {@value #BLANK} for each open square, e.g. "A?P??E"
+     * @param letters letters that may fill the open squares, each used at most once, {@value #BLANK} for a blank tile
+     *                that may be any letter
+     * @throws PermutateStringException if the pattern is empty or either has anything but letters and blanks
+     * @return the matching words in alphabetical order
+     */
+    public List<String> findPattern(String pattern, String letters) throws PermutateStringException {
+        if (pattern == null || pattern.isEmpty() || !isPattern(pattern)) {
+            throw new PermutateStringException("pattern " +pattern +" is invalid (null, empty or contains non alpha"
+                    +" characters other than " +BLANK +")");
+        }
+        if (letters == null || !isPattern(letters)) {
+            throw new PermutateStringException("letters " +letters +" are invalid (null or contain non alpha"
+                    +" characters other than " +BLANK +")");
+        }
+        String upperLetters = letters.toUpperCase();
+        return dictionary.getPatternIndex().findWords(pattern.toUpperCase(),
+                LetterCountIndex.countLetters(upperLetters), countBlanks(upperLetters));
+    }
+
+    // Only 'A' to 'Z', either case, are indexed; anything else could never match
+    private static boolean isPattern(String s) {
+        return s.chars().allMatch(ch -> (ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z') || ch == BLANK);
+    }
+
+    private WordSolver solverFor(String letters) {
+        return countBlanks(letters) > 0 ? blankSolver : solver;
+    }
+
+    private String toLetters(String word) throws PermutateStringException {
+        if (!isWheel(word)) {
+            throw new PermutateStringException("word " +word +" is invalid (null, not " +MIN_WHEEL_SIZE +" to "
+                    +MAX_WHEEL_SIZE +" characters in length or contains non alpha characters");
+        }
+        if (word.charAt(0) == BLANK) {
+            throw new PermutateStringException("word " +word +" is invalid, the centre letter cannot be a blank");
+        }
+        if (strategy == SolverStrategy.PERMUTATION && word.length() > PermutationSolver.MAX_LETTERS
+                && countBlanks(word) == 0) {
+            throw new PermutateStringException("word " +word +" is too long to search by permutation, at most "
+                    +PermutationSolver.MAX_LETTERS +" characters");
+        }
+        return word.toUpperCase();
+    }
+
+    /**
+     * Set the solvers add to during a query, it keeps only the words the query wants, passes each new one to the
+     * listener and stops the search once the query's limit is reached.
+     */
+    private static final class QueryWords extends AbstractSet<String> {
+        private final Set<String> words = new TreeSet<>();
+        private final int minLength;
+        private final int limit;
+        private final Consumer<String> listener;
+        private final SearchControl control;
+
+        private QueryWords(int minLength, int limit, Consumer<String> listener, SearchControl control) {
+            this.minLength = minLength;
+            this.limit = limit;
+            this.listener = listener;
+            this.control = control;
+        }
+
+        @Override
+        public synchronized boolean add(String word) {
+            if (word.length() < minLength || words.size() >= limit || !words.add(word)) {
+                return false;
+            }
+            if (words.size() >= limit) {
+                control.cancel();
+            }
+            if (listener != null) {
+                listener.accept(word);
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized boolean contains(Object word) {
+            return words.contains(word);
+        }
+
+        @Override
+        public synchronized int size() {
+            return words.size();
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return getWords().iterator();
+        }
+
+        private synchronized Set<String> getWords() {
+            return new TreeSet<>(words);
+        }
+    }
+
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    public SolverStrategy getStrategy() {
+        return strategy;
+    }
+
+    public SolverScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public boolean isCollectCombinations() {
+        return collectCombinations;
+    }
+
+    /**
+     *
+     * @return the cache in front of the solver, null if there is none
+     */
+    public ResultCache getCache() {
+        return cache;
+    }
+}
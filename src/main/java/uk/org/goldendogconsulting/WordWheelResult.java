@@ -0,0 +1,288 @@
+package uk.org.goldendogconsulting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The outcome of solving one word wheel. Immutable, so it can be handed between threads freely.
+ */
+public final class WordWheelResult {
+
+    private static final long MILLION = 1000000;
+
+    private final String centreLetter;
+    private final String wheelLetters;
+    private final int uniqueCharacterCount;
+    private final SortedSet<String> validWords;
+    private final List<String> nineLetterWords;
+    private final int[] wordLengthCounts;
+    private final boolean complete;
+    private final long solveNanos;
+    private final long permutationsSize;
+    private final long combinationsToFind;
+    private final long combinationsFound;
+    private final Set<String> combinations;
+    private final int blankCount;
+    private final SortedMap<String, String> blankLetters;
+    private final int reusedWordCount;
+    private final boolean fullSolve;
+
+    /**
+     *
+     * @param letters : upper-case wheel letters, the first letter is the centre letter
+     * @param validWords : valid words found, copied
+     * @param complete : true if the search ran to completion
+     * @param solveNanos : time taken to search
+     * @param combinationsFound : number of distinct combinations searched, only counted by the permutation solver
+     * @param combinations : combinations of the wheel found, only collected by the permutation solver when asked to.
+     *                     Not copied, the caller must not change it once the result has been built
+     */
+    WordWheelResult(String letters, Set<String> validWords, boolean complete, long solveNanos,
+                    long combinationsFound, Set<String> combinations) {
+        this(letters, validWords, complete, solveNanos, combinationsFound, combinations, 0, false);
+    }
+
+    /**
+     *
+     * @param letters : upper-case wheel letters, the first letter is the centre letter
+     * @param validWords : valid words found, copied
+     * @param complete : true if the search ran to completion
+     * @param solveNanos : time taken to search
+     * @param combinationsFound : number of distinct combinations searched, only counted by the permutation solver
+     * @param combinations : combinations of the wheel found, not copied
+     * @param reusedWordCount : number of the valid words carried over from an earlier result rather than searched for
+     * @param fullSolve : true if the valid words are every word of the wheel, not only those a query wanted
+     */
+    WordWheelResult(String letters, Set<String> validWords, boolean complete, long solveNanos,
+                    long combinationsFound, Set<String> combinations, int reusedWordCount, boolean fullSolve) {
+        this.centreLetter = letters.isEmpty() ? "" : letters.substring(0, 1);
+        this.wheelLetters = letters.isEmpty() ? "" : letters.substring(1);
+        this.uniqueCharacterCount = (int) letters.chars().distinct().count();
+        this.validWords = Collections.unmodifiableSortedSet(new TreeSet<>(validWords));
+        this.complete = complete;
+        this.solveNanos = solveNanos;
+        int[] multiplicities = CombinationCounter.multiplicities(letters);
+        this.permutationsSize = letters.isEmpty() ? 0 : CombinationCounter.distinctPermutations(multiplicities);
+        this.combinationsToFind = CombinationCounter.distinctArrangements(multiplicities);
+        this.combinationsFound = combinationsFound;
+        this.combinations = Collections.unmodifiableSet(combinations);
+
+        List<String> fullLengthWords = new ArrayList<>();
+        int[] lengthCounts = new int[letters.length() + 1];
+        for (String word : this.validWords) {
+            lengthCounts[word.length()]++;
+            if (word.length() == letters.length()) {
+                fullLengthWords.add(word);
+            }
+        }
+        this.nineLetterWords = Collections.unmodifiableList(fullLengthWords);
+        this.wordLengthCounts = lengthCounts;
+
+        this.blankCount = WordWheelEngine.countBlanks(letters);
+        SortedMap<String, String> blanks = new TreeMap<>();
+        if (blankCount > 0) {
+            int[] tiles = LetterCountIndex.countLetters(letters);
+            for (String word : this.validWords) {
+                String stoodFor = blankLetters(word, tiles);
+                if (!stoodFor.isEmpty()) {
+                    blanks.put(word, stoodFor);
+                }
+            }
+        }
+        this.blankLetters = Collections.unmodifiableSortedMap(blanks);
+        this.reusedWordCount = reusedWordCount;
+        this.fullSolve = fullSolve;
+    }
+
+    // The word's letters left over once the wheel's own tiles are used up, in the order they come in the word
+    private static String blankLetters(String word, int[] tiles) {
+        int[] remaining = tiles.clone();
+        StringBuilder stoodFor = new StringBuilder();
+        for (int i = 0; i < word.length(); i++) {
+            int letter = word.charAt(i) - 'A';
+            if (letter >= 0 && letter < remaining.length && remaining[letter] > 0) {
+                remaining[letter]--;
+            } else {
+                stoodFor.append(word.charAt(i));
+            }
+        }
+        return stoodFor.toString();
+    }
+
+    /**
+     * Result of a search that has not been run.
+     * @return empty result
+     */
+    static WordWheelResult empty() {
+        return new WordWheelResult("", Collections.emptySet(), false, 0, 0, Collections.emptySet());
+    }
+
+    /**
+     * The same answer for the same letters in another order. Nothing is carried over from another wheel when a
+     * stored answer is handed out again, so the reused word count is not kept.
+     * @param letters upper-case wheel letters, the first letter is the centre letter
+     * @param solveNanos time taken to find this result
+     * @return result for the letters
+     */
+    WordWheelResult withLetters(String letters, long solveNanos) {
+        return new WordWheelResult(letters, validWords, complete, solveNanos, combinationsFound, combinations, 0,
+                fullSolve);
+    }
+
+    public String getCentreLetter() {
+        return centreLetter;
+    }
+
+    public String getWheelLetters() {
+        return wheelLetters;
+    }
+
+    /**
+     *
+     * @return number of letters on the wheel, the centre letter included
+     */
+    public int getWheelSize() {
+        return centreLetter.length() + wheelLetters.length();
+    }
+
+    /**
+     *
+     * @return number of blank tiles on the wheel
+     */
+    public int getBlankCount() {
+        return blankCount;
+    }
+
+    /**
+     * The letters blanks stood for, for each word that needed a blank. A word's own letters are always taken from the
+     * wheel first, so a word only appears here if the wheel has too few of some letter.
+     * @return the words that used a blank, in alphabetical order, to the letters the blanks stood for in the order
+     * they come in the word
+     */
+    public SortedMap<String, String> getBlankLetters() {
+        return blankLetters;
+    }
+
+    /**
+     *
+     * @return the centre letter followed by the wheel letters, as solved
+     */
+    public String getLetters() {
+        return centreLetter + wheelLetters;
+    }
+
+    public int getUniqueCharacterCount() {
+        return uniqueCharacterCount;
+    }
+
+    /**
+     *
+     * @return the valid words found, in alphabetical order
+     */
+    public SortedSet<String> getValidWords() {
+        return validWords;
+    }
+
+    /**
+     *
+     * @return the valid words found that use every letter of the wheel
+     */
+    public List<String> getNineLetterWords() {
+        return nineLetterWords;
+    }
+
+    public int getWordCount() {
+        return validWords.size();
+    }
+
+    /**
+     *
+     * @param length word length
+     * @return number of valid words found of that length
+     */
+    public int getWordCount(int length) {
+        return length >= 0 && length < wordLengthCounts.length ? wordLengthCounts[length] : 0;
+    }
+
+    /**
+     *
+     * @return true if the search ran to completion, false if it was abandoned
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long getSolveNanos() {
+        return solveNanos;
+    }
+
+    public long getSolveMsecs() {
+        return solveNanos / MILLION;
+    }
+
+    /**
+     *
+     * @return number of distinct permutations of the wheel letters
+     */
+    public long getPermutationsSize() {
+        return permutationsSize;
+    }
+
+    /**
+     *
+     * @return number of distinct combinations, of any length, that can be made from the wheel letters
+     */
+    public long getCombinationsToFind() {
+        return combinationsToFind;
+    }
+
+    /**
+     *
+     * @return number of distinct combinations the search covered, zero for solvers that do not enumerate them
+     */
+    public long getCombinationsFound() {
+        return combinationsFound;
+    }
+
+    /**
+     *
+     * @return number of the valid words carried over from the result of a wheel one letter different, rather than
+     * searched for; 0 unless the result came from {@link WordWheelEngine#replaceLetter} or
+     * {@link WordWheelEngine#swapCentre}
+     */
+    public int getReusedWordCount() {
+        return reusedWordCount;
+    }
+
+    /**
+     *
+     * @return true if the result holds every word of the wheel, false for a {@link WordQuery}'s answer, which may
+     * leave words out even when complete
+     */
+    boolean isFullSolve() {
+        return fullSolve;
+    }
+
+    /**
+     *
+     * @return combinations of the wheel found, in no particular order, empty unless the permutation solver was asked
+     * to collect them
+     */
+    public Set<String> getCombinations() {
+        return combinations;
+    }
+
+    /**
+     *
+     * @return combinations of the wheel found in alphabetical order, sorted afresh on each call
+     */
+    public SortedSet<String> getSortedCombinations() {
+        return Collections.unmodifiableSortedSet(new TreeSet<>(combinations));
+    }
+}
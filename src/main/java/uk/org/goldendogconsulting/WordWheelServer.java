@@ -0,0 +1,416 @@
+package uk.org.goldendogconsulting;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * HTTP front end to a single warm {@link WordWheelEngine}, built on the JDK's own HTTP server so it needs nothing
+ * else running.
+ * <p>
+ * Every request is a GET answered with JSON:
+ * <ul>
+ *     <li>{@code /solve?letters=OCNINLREI} - every word of the puzzle</li>
+ *     <li>{@code /nine?letters=OCNINLREI} - only the words using every letter of the wheel, the search stops once it
+ *     has them</li>
+ *     <li>{@code /stats?letters=OCNINLREI} - the number of words of each length</li>
+ *     <li>{@code /status} - counts of requests served, rejected and timed out, and of the engine's cache</li>
+ *     <li>{@code /metrics} - the {@link SolverMetrics} snapshot, as text rather than JSON</li>
+ * </ul>
+ * Given a {@link DictionaryRegistry}, a puzzle query may add {@code dictionary=<name>} to be solved against one of
+ * its dictionaries rather than the engine's; a reloaded dictionary is used from the next query on.
+ * A wheel may have from {@value WordWheelEngine#MIN_WHEEL_SIZE} to {@value WordWheelEngine#MAX_WHEEL_SIZE} letters.
+ * {@code /solve} and {@code /stats} may add {@code minLength=<letters>} for only the words of at least that length,
+ * and {@code centreRequired=false} for every word the wheel's letters make, with or without the centre letter.
+ * Wheel letters may include blanks, {@code ?} ({@code %3F} in the query), and the answer then maps each word that
+ * used a blank to the letters the blanks stood for as {@code "blanks"}.
+ * A puzzle query may add {@code timeout=<msecs>} to shorten the server's per-request timeout; a search that runs out
+ * of time answers with the words found so far and {@code "complete":false}. At most a fixed number of searches run at
+ * once, a puzzle query arriving when that many are running is turned away with 503 rather than queued. Requests are
+ * handled on virtual threads where the JVM has them, and on a thread per request otherwise.
+ */
+public class WordWheelServer {
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    public static final long DEFAULT_TIMEOUT_MSECS = 10000;
+
+    private final WordWheelEngine engine;
+    private final DictionaryRegistry registry;
+    private final Map<String, SoftReference<WordWheelEngine>> registryEngines = new HashMap<>();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final long timeoutMsecs;
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private static final Logger LOG = LogManager.getLogger(WordWheelServer.class);
+
+    /**
+     *
+     * @param engine : engine every request is solved on
+     * @param address : address to listen on, port 0 for any free port
+     * @param maxInFlight : most searches running at once
+     * @param timeoutMsecs : longest a search may run for
+     * @throws IOException if the address cannot be bound
+     */
+    public WordWheelServer(WordWheelEngine engine, InetSocketAddress address, int maxInFlight, long timeoutMsecs)
+            throws IOException {
+        this(engine, null, address, maxInFlight, timeoutMsecs);
+    }
+
+    /**
+     *
+     * @param engine : engine requests are solved on unless they name a dictionary
+     * @param registry : dictionaries requests may name, null for none
+     * @param address : address to listen on, port 0 for any free port
+     * @param maxInFlight : most searches running at once
+     * @param timeoutMsecs : longest a search may run for
+     * @throws IOException if the address cannot be bound
+     */
+    public WordWheelServer(WordWheelEngine engine, DictionaryRegistry registry, InetSocketAddress address,
+                           int maxInFlight, long timeoutMsecs) throws IOException {
+        if (maxInFlight < 1 || timeoutMsecs < 1) {
+            throw new IllegalArgumentException("maxInFlight " +maxInFlight +" and timeoutMsecs " +timeoutMsecs
+                    +" must both be at least 1");
+        }
+        this.engine = engine;
+        this.registry = registry;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.timeoutMsecs = timeoutMsecs;
+        this.executor = requestExecutor();
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/solve", exchange -> handle(exchange, Query.SOLVE));
+        server.createContext("/nine", exchange -> handle(exchange, Query.NINE));
+        server.createContext("/stats", exchange -> handle(exchange, Query.STATS));
+        server.createContext("/status", exchange -> handle(exchange, Query.STATUS));
+        server.createContext("/metrics", this::metrics);
+        server.createContext("/", exchange -> respond(exchange, 404, error("no such query " +exchange.getRequestURI()
+                .getPath())));
+    }
+
+    /**
+     * Virtual threads arrived after the release this project is built for, so they are used when the JVM running it
+     * has them.
+     */
+    private static ExecutorService requestExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            LOG.debug("Handling requests on virtual threads");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException exception) {
+            // Not in this JVM, or only as a preview feature that is not enabled
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "wordwheel-http-" +threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(threadFactory);
+        }
+    }
+
+    public void start() {
+        server.start();
+        LOG.info("Word wheel server listening on " +getAddress());
+    }
+
+    /**
+     * Stop taking requests and wait for those being answered to finish.
+     * @param timeout longest to wait for requests being answered
+     * @param unit unit of the timeout
+     * @return true if every request finished, false if some were still running when the wait ran out
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean stop(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        // Closes the listener at once, then waits for exchanges in progress up to the delay, in whole seconds
+        server.stop((int) Math.min(Integer.MAX_VALUE, (unit.toMillis(timeout) + 999) / 1000));
+        executor.shutdown();
+        boolean stopped = executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        if (!stopped) {
+            executor.shutdownNow();
+        }
+        LOG.info("Word wheel server stopped, " +served.get() +" requests served");
+        return stopped;
+    }
+
+    /**
+     *
+     * @return the address the server is listening on, with the port chosen if it was given as 0
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private enum Query {
+        SOLVE, NINE, STATS, STATUS
+    }
+
+    private void handle(HttpExchange exchange, Query query) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().add("Allow", "GET");
+                respond(exchange, 405, error("method " +exchange.getRequestMethod() +" not allowed"));
+                return;
+            }
+            if (query == Query.STATUS) {
+                respond(exchange, 200, status());
+                return;
+            }
+            Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+            String letters = parameters.get("letters");
+            WordWheelEngine solveEngine;
+            try {
+                solveEngine = engineFor(parameters.get("dictionary"));
+            } catch (IllegalArgumentException illegalArgumentException) {
+                respond(exchange, 400, error(illegalArgumentException.getMessage()));
+                return;
+            } catch (IOException ioException) {
+                failed.incrementAndGet();
+                LOG.error("Unable to read dictionary for " +exchange.getRequestURI() +" : " +ioException.getMessage());
+                respond(exchange, 500, error("unable to read dictionary"));
+                return;
+            }
+            WordQuery wordQuery = WordQuery.all();
+            if (parameters.containsKey("minLength")) {
+                try {
+                    wordQuery = WordQuery.minimumLength(Integer.parseInt(parameters.get("minLength")));
+                } catch (NumberFormatException numberFormatException) {
+                    respond(exchange, 400, error("minLength must be a number of letters"));
+                    return;
+                }
+            }
+            if ("false".equals(parameters.get("centreRequired"))) {
+                wordQuery = wordQuery.withoutCentre();
+            }
+            long timeout = timeoutMsecs;
+            if (parameters.containsKey("timeout")) {
+                try {
+                    timeout = Math.min(timeoutMsecs, Math.max(1, Long.parseLong(parameters.get("timeout"))));
+                } catch (NumberFormatException numberFormatException) {
+                    respond(exchange, 400, error("timeout must be a number of msecs"));
+                    return;
+                }
+            }
+            if (!inFlight.tryAcquire()) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                respond(exchange, 503, error("server busy, " +maxInFlight +" searches already running"));
+                return;
+            }
+            WordWheelResult result;
+            try {
+                result = solve(solveEngine, query, wordQuery, letters, timeout);
+            } finally {
+                inFlight.release();
+            }
+            if (!result.isComplete()) {
+                timedOut.incrementAndGet();
+            }
+            respond(exchange, 200, query == Query.STATS ? statistics(result) : solution(result, query));
+        } catch (PermutateStringException permutateStringException) {
+            respond(exchange, 400, error(permutateStringException.getMessage()));
+        } catch (RuntimeException runtimeException) {
+            failed.incrementAndGet();
+            LOG.error("Exception " +runtimeException.getClass().getName() +" answering " +exchange.getRequestURI(),
+                    runtimeException);
+            respond(exchange, 500, error(runtimeException.getClass().getName()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * The engine for a dictionary of the registry, rebuilt once the dictionary is reloaded. Engines are only held
+     * softly, so one does not keep a dictionary the registry has dropped in memory for long.
+     */
+    private WordWheelEngine engineFor(String dictionaryName) throws IOException {
+        if (dictionaryName == null) {
+            return engine;
+        }
+        if (registry == null) {
+            throw new IllegalArgumentException("No dictionaries to choose from");
+        }
+        Dictionary dictionary = registry.get(dictionaryName);
+        synchronized (registryEngines) {
+            SoftReference<WordWheelEngine> reference = registryEngines.get(dictionaryName);
+            WordWheelEngine registryEngine = reference == null ? null : reference.get();
+            if (registryEngine == null || registryEngine.getDictionary() != dictionary) {
+                registryEngine = new WordWheelEngine(engine.getStrategy(), dictionary, engine.getScheduler());
+                registryEngines.put(dictionaryName, new SoftReference<>(registryEngine));
+            }
+            return registryEngine;
+        }
+    }
+
+    private static WordWheelResult solve(WordWheelEngine solveEngine, Query query, WordQuery wordQuery, String letters,
+                                         long timeout) throws PermutateStringException {
+        SearchControl control = SearchControl.withTimeout(timeout, TimeUnit.MILLISECONDS);
+        if (query == Query.NINE) {
+            // Only words using every letter of the wheel, whatever its size
+            return solveEngine.findWords(letters, WordQuery.minimumLength(Integer.MAX_VALUE), null, control);
+        }
+        if (wordQuery != WordQuery.all()) {
+            return solveEngine.findWords(letters, wordQuery, null, control);
+        }
+        return solveEngine.findWords(letters, control);
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = SolverMetrics.getDefault().snapshot().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+            served.incrementAndGet();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(decode(name), decode(value));
+        }
+        return parameters;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException | IllegalArgumentException exception) {
+            return value;
+        }
+    }
+
+    private static String solution(WordWheelResult result, Query query) {
+        String json = "{\"centre\":" +Json.quote(result.getCentreLetter())
+                +",\"wheel\":" +Json.quote(result.getWheelLetters())
+                +",\"complete\":" +result.isComplete()
+                +",\"solveMsecs\":" +result.getSolveMsecs()
+                +",\"nineLetterWords\":" +Json.array(result.getNineLetterWords());
+        if (query == Query.SOLVE) {
+            json += ",\"wordCount\":" +result.getWordCount()
+                    +",\"words\":" +Json.array(result.getValidWords());
+        }
+        if (result.getBlankCount() > 0) {
+            json += ",\"blanks\":" +Json.object(result.getBlankLetters());
+        }
+        return json +"}";
+    }
+
+    private static String statistics(WordWheelResult result) {
+        StringBuilder lengths = new StringBuilder("{");
+        for (int length = 1; length <= result.getWheelSize(); length++) {
+            if (length > 1) {
+                lengths.append(',');
+            }
+            lengths.append('"').append(length).append("\":").append(result.getWordCount(length));
+        }
+        lengths.append('}');
+        return "{\"centre\":" +Json.quote(result.getCentreLetter())
+                +",\"wheel\":" +Json.quote(result.getWheelLetters())
+                +",\"complete\":" +result.isComplete()
+                +",\"wordCount\":" +result.getWordCount()
+                +",\"lengths\":" +lengths +"}";
+    }
+
+    private String status() {
+        String json = "{\"served\":" +served.get()
+                +",\"rejected\":" +rejected.get()
+                +",\"timedOut\":" +timedOut.get()
+                +",\"failed\":" +failed.get()
+                +",\"inFlight\":" +(maxInFlight - inFlight.availablePermits())
+                +",\"maxInFlight\":" +maxInFlight;
+        ResultCache cache = engine.getCache();
+        if (cache != null) {
+            ResultCache.Statistics statistics = cache.getStatistics();
+            json += ",\"cache\":{\"hits\":" +statistics.getHits()
+                    +",\"misses\":" +statistics.getMisses()
+                    +",\"evictions\":" +statistics.getEvictions()
+                    +",\"size\":" +statistics.getSize() +"}";
+        }
+        return json +"}";
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" +Json.quote(message) +"}";
+    }
+
+    private void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+        served.incrementAndGet();
+    }
+
+    /**
+     * Run a server on the default engine until the JVM is stopped.
+     * @param args port to listen on, defaults to {@value #DEFAULT_PORT}, then any dictionaries to register as
+     *             {@code <name>=<path>}
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        WordWheelEngine engine = new WordWheelEngine(SolverStrategy.TRIE, Dictionary.getDefault(),
+                SolverScheduler.getDefault(), false, new ResultCache(ResultCache.DEFAULT_MAX_ENTRIES));
+        DictionaryRegistry registry = DictionaryRegistry.fromProperties();
+        for (int i = 1; i < args.length; i++) {
+            int equals = args[i].indexOf('=');
+            if (equals < 1) {
+                throw new IllegalArgumentException("Dictionary " +args[i] +" is not <name>=<path>");
+            }
+            registry.registerFile(args[i].substring(0, equals), Paths.get(args[i].substring(equals + 1)));
+        }
+        WordWheelServer wordWheelServer = new WordWheelServer(engine, registry, new InetSocketAddress(port),
+                DEFAULT_MAX_IN_FLIGHT, DEFAULT_TIMEOUT_MSECS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                wordWheelServer.stop(DEFAULT_TIMEOUT_MSECS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        wordWheelServer.start();
+    }
+}
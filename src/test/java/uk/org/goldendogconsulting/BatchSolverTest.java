@@ -0,0 +1,53 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+public class BatchSolverTest extends TestCase {
+
+    private static final String PUZZLES = "# nightly wheels\n"
+            + "OCNINLREI\n"
+            + "\n"
+            + "R UYDAROTC\n"
+            + "9BCDEFGHI\n"
+            + "ABCDEFGHI\n";
+
+    public void testOrderedText() throws IOException {
+        BatchSolver batchSolver = new BatchSolver(new WordWheelEngine(), 3, BatchSolver.OutputFormat.TEXT, true);
+        StringWriter output = new StringWriter();
+        BatchSolver.Summary summary = batchSolver.solve(new BufferedReader(new StringReader(PUZZLES)), output);
+        assertEquals(4, summary.getPuzzles());
+        assertEquals(1, summary.getFailed());
+
+        String[] lines = output.toString().split("\\R");
+        assertEquals(5, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("OCNINLREI ") && lines[0].contains("CRINOLINE"));
+        assertTrue(lines[1], lines[1].startsWith("R UYDAROTC ") && lines[1].contains("COURTYARD"));
+        assertTrue(lines[2], lines[2].startsWith("9BCDEFGHI error: "));
+        assertTrue(lines[3], lines[3].startsWith("ABCDEFGHI 68 words"));
+        assertTrue(lines[4], lines[4].startsWith("Solved 3 of 4 puzzles, 1 failed"));
+    }
+
+    public void testUnorderedJson() throws IOException {
+        BatchSolver batchSolver = new BatchSolver(new WordWheelEngine(), 2, BatchSolver.OutputFormat.JSON, false);
+        StringWriter output = new StringWriter();
+        batchSolver.solve(new BufferedReader(new StringReader(PUZZLES)), output);
+
+        String[] lines = output.toString().split("\\R");
+        assertEquals(5, lines.length);
+        int solved = 0;
+        for (int i = 0; i < 4; i++) {
+            assertTrue(lines[i], lines[i].startsWith("{\"puzzle\":"));
+            if (lines[i].contains("\"words\":[")) {
+                solved++;
+            }
+        }
+        assertEquals(3, solved);
+        assertTrue(output.toString().contains("\"nineLetterWords\":[\"CRINOLINE\"]"));
+        assertTrue(lines[4], lines[4].startsWith("{\"summary\":{\"puzzles\":4,\"failed\":1,"));
+    }
+}
@@ -0,0 +1,64 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+public class ColumnarScanSolverTest extends TestCase {
+
+    private static final String[] PUZZLES = { "ABCDEFGHI", "OCNINLREI", "RUYDAROTC", "ABCDEEEEE", "EEEEEEEEE",
+            "ZQJXKVBYW", "TSRNLEAIO" };
+
+    public void testScanMatchesTrieSolver() throws InterruptedException {
+        SolverScheduler scheduler = new SolverScheduler(4);
+        try {
+            Dictionary dictionary = Dictionary.getDefault();
+            TrieSolver trieSolver = new TrieSolver(dictionary.getTrie());
+            for (ColumnarScanSolver scanSolver : new ColumnarScanSolver[] { new ColumnarScanSolver(dictionary, null),
+                    new ColumnarScanSolver(dictionary, scheduler) }) {
+                for (String puzzle : PUZZLES) {
+                    Set<String> expected = new ConcurrentSkipListSet<>();
+                    trieSolver.findWords(puzzle, expected, SearchControl.unbounded());
+                    Set<String> found = new ConcurrentSkipListSet<>();
+                    assertTrue(scanSolver.findWords(puzzle, found, SearchControl.unbounded()));
+                    assertEquals(puzzle, expected, found);
+                }
+            }
+        } finally {
+            assertTrue(scheduler.shutdown(10, TimeUnit.SECONDS));
+        }
+    }
+
+    public void testFindBuildable() {
+        Dictionary dictionary = Dictionary.fromWords(Arrays.asList("CAT", "ACT", "TACT", "AT", "DOG", "CAB", "I.E."));
+        ColumnarScanSolver scanSolver = new ColumnarScanSolver(dictionary, null);
+        assertEquals(Arrays.asList("ACT", "AT", "CAT"), scanSolver.findBuildable("TCA"));
+        assertEquals(Arrays.asList("ACT", "AT", "CAT", "TACT"), scanSolver.findBuildable("TCAT"));
+        assertTrue(scanSolver.findBuildable("XYZ").isEmpty());
+    }
+
+    public void testBulkMatchesSingle() throws InterruptedException {
+        SolverScheduler scheduler = new SolverScheduler(2);
+        try {
+            ColumnarScanSolver scanSolver = new ColumnarScanSolver(Dictionary.getDefault(), scheduler);
+            List<String> wheels = new ArrayList<>(Arrays.asList(PUZZLES));
+            wheels.add("1ABCDEFGH");
+            List<List<String>> bulk = scanSolver.findWords(wheels);
+            assertEquals(wheels.size(), bulk.size());
+            for (int i = 0; i < PUZZLES.length; i++) {
+                Set<String> single = new TreeSet<>();
+                scanSolver.findWords(PUZZLES[i], single, SearchControl.unbounded());
+                assertEquals(PUZZLES[i], single, new TreeSet<>(bulk.get(i)));
+            }
+            assertTrue(bulk.get(PUZZLES.length).isEmpty());
+        } finally {
+            assertTrue(scheduler.shutdown(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class CombinationCounterTest extends TestCase {
+
+    // The counts previously looked up from permutationLookup.txt
+    private static final String[] WHEELS = { "ABCDEFGHI", "ABCDEFGHH", "ABCDEFGGG", "ABCDEFFGG", "ABCDEFFFF",
+            "ABCDEEFFF", "ABCDDEEFF", "ABCDEEEEE", "ABCDDEEEE", "ABBCCDDEE", "ABCCDDEEE" };
+    private static final long[] COMBINATIONS = { 986409, 500054, 171903, 253533, 45299, 87185, 128562, 9833,
+            22989, 65201, 44225 };
+
+    public void testDistinctArrangementsMatchLookup() {
+        for (int i = 0; i < WHEELS.length; i++) {
+            int[] multiplicities = CombinationCounter.multiplicities(WHEELS[i]);
+            assertEquals(WHEELS[i], COMBINATIONS[i], CombinationCounter.distinctArrangements(multiplicities));
+        }
+    }
+
+    public void testDistinctPermutations() {
+        assertEquals(362880, CombinationCounter.distinctPermutations(CombinationCounter.multiplicities("ABCDEFGHI")));
+        assertEquals(362880 / 2, CombinationCounter.distinctPermutations(CombinationCounter.multiplicities("ABCDEFGHH")));
+        assertEquals(362880 / 120, CombinationCounter.distinctPermutations(CombinationCounter.multiplicities("ABCDEEEEE")));
+        assertEquals(362880 / 16, CombinationCounter.distinctPermutations(CombinationCounter.multiplicities("ABBCCDDEE")));
+    }
+
+    public void testCountsMatchEnumeration() {
+        for (String letters : new String[] { "A", "AAB", "ABAB", "ABCAB", "ZZZZ" }) {
+            Set<String> arrangements = new HashSet<>();
+            enumerate("", letters, arrangements);
+            arrangements.remove("");
+            assertEquals(letters, arrangements.size(),
+                    CombinationCounter.distinctArrangements(CombinationCounter.multiplicities(letters)));
+        }
+    }
+
+    public void testCoverageCompletesOnEveryMultiset() {
+        CombinationCoverage coverage = new CombinationCoverage("ABCDEEEEE");
+        assertEquals(9833, coverage.getArrangementsToCover());
+        assertTrue(coverage.cover(coverage.index("EEA")));
+        assertFalse(coverage.cover(coverage.index("AEE")));
+        int[] multiplicities = CombinationCounter.multiplicities("AEE");
+        assertEquals(CombinationCounter.distinctPermutations(multiplicities), coverage.getArrangementsCovered());
+        for (int rank = 0; rank < 362880 && !coverage.isComplete(); rank++) {
+            String permutation = PermutationSolver.permutationAt("ABCDEEEEE", rank);
+            for (int from = 0; from < permutation.length(); from++) {
+                for (int to = from + 1; to <= permutation.length(); to++) {
+                    coverage.cover(coverage.index(permutation.substring(from, to)));
+                }
+            }
+        }
+        assertTrue(coverage.isComplete());
+        assertEquals(coverage.getArrangementsToCover(), coverage.getArrangementsCovered());
+    }
+
+    private static void enumerate(String prefix, String remaining, Set<String> arrangements) {
+        arrangements.add(prefix);
+        for (int i = 0; i < remaining.length(); i++) {
+            enumerate(prefix + remaining.charAt(i), remaining.substring(0, i) + remaining.substring(i + 1),
+                    arrangements);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class DictionaryRegistryTest extends TestCase {
+
+    private Path first;
+    private Path second;
+
+    @Override
+    protected void setUp() throws IOException {
+        first = Files.createTempFile("first", ".txt");
+        second = Files.createTempFile("second", ".txt");
+        write(first, "CAT", "DOG", "ZEBRA");
+        write(second, "CAT", "EMU");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(first);
+        Files.deleteIfExists(second);
+    }
+
+    private static void write(Path file, String... words) throws IOException {
+        Files.write(file, Arrays.asList(words), StandardCharsets.UTF_8);
+    }
+
+    public void testLoadedOnFirstUse() throws IOException {
+        DictionaryRegistry registry = new DictionaryRegistry(Long.MAX_VALUE);
+        registry.registerFile("first", first);
+        assertEquals(Arrays.asList(DictionaryRegistry.DEFAULT_NAME, "first"),
+                Arrays.asList(registry.getNames().toArray()));
+        assertFalse(registry.isLoaded("first"));
+        assertEquals(0, registry.getResidentBytes("first"));
+
+        Dictionary dictionary = registry.get("first");
+        assertEquals(3, dictionary.size());
+        assertSame(dictionary, registry.get("first"));
+        assertTrue(registry.isLoaded("first"));
+        assertTrue(registry.getResidentBytes("first") > 0);
+        assertFalse(registry.isLoaded(DictionaryRegistry.DEFAULT_NAME));
+
+        try {
+            registry.get("missing");
+            fail("Expected an unknown dictionary to be refused");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    public void testWordsShared() throws IOException {
+        DictionaryRegistry registry = new DictionaryRegistry(Long.MAX_VALUE);
+        registry.registerFile("first", first);
+        registry.registerFile("second", second);
+        String firstCat = find(registry.get("first"), "CAT");
+        String secondCat = find(registry.get("second"), "CAT");
+        assertEquals("CAT", firstCat);
+        assertSame(firstCat, secondCat);
+    }
+
+    private static String find(Dictionary dictionary, String word) {
+        for (String found : dictionary.getWords()) {
+            if (found.equals(word)) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    public void testReloadSwapsChangedFile() throws IOException {
+        DictionaryRegistry registry = new DictionaryRegistry(Long.MAX_VALUE);
+        registry.registerFile("first", first);
+        assertFalse(registry.reload("first"));
+        Dictionary old = registry.get("first");
+        assertFalse(registry.reload("first"));
+
+        write(first, "CAT", "DOG", "ZEBRA", "HORSE");
+        assertEquals(Arrays.asList("first"), registry.reloadChanged());
+        Dictionary reloaded = registry.get("first");
+        assertNotSame(old, reloaded);
+        assertEquals(4, reloaded.size());
+        assertTrue(reloaded.getTrie().contains("HORSE"));
+        // A solve still holding the old dictionary carries on with it
+        assertEquals(3, old.size());
+        assertFalse(old.getTrie().contains("HORSE"));
+        assertFalse(registry.reload("first"));
+    }
+
+    public void testColdestDroppedOverBudget() throws IOException {
+        DictionaryRegistry sizing = new DictionaryRegistry(Long.MAX_VALUE);
+        sizing.registerFile("first", first);
+        sizing.registerFile("second", second);
+        long budget = sizing.get("first").getResidentBytes() + sizing.get("second").getResidentBytes() - 1;
+
+        DictionaryRegistry registry = new DictionaryRegistry(budget);
+        registry.registerFile("first", first);
+        registry.registerFile("second", second);
+        registry.get("first");
+        registry.get("second");
+        assertFalse(registry.isLoaded("first"));
+        assertTrue(registry.isLoaded("second"));
+        assertTrue(registry.getResidentBytes() <= budget);
+
+        // Dropped dictionaries are read again when asked for
+        assertEquals(3, registry.get("first").size());
+        assertTrue(registry.isLoaded("first"));
+        assertFalse(registry.isLoaded("second"));
+    }
+}
@@ -0,0 +1,84 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+public class DictionarySnapshotTest extends TestCase {
+
+    private Path snapshot;
+
+    @Override
+    protected void setUp() throws IOException {
+        snapshot = Files.createTempFile("dictionary", ".snapshot");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    public void testRoundTrip() throws IOException {
+        Set<String> words = new HashSet<>(Arrays.asList("CAT", "CATS", "DOG", "I.E.", "Id", "ZEBRA"));
+        DictionarySnapshot.write(Dictionary.fromWords(words), snapshot);
+        Dictionary mapped = DictionarySnapshot.load(snapshot);
+        assertNotNull(mapped);
+        assertEquals(words.size(), mapped.size());
+        assertEquals(words, mapped.getWords());
+        assertEquals("CAT", mapped.getWord(0));
+        assertTrue(mapped.getTrie().contains("CATS"));
+        assertTrue(mapped.getTrie().contains("ZEBRA"));
+        assertFalse(mapped.getTrie().contains("Id"));
+        assertFalse(mapped.getTrie().contains("CA"));
+    }
+
+    public void testMappedDictionarySolves() throws IOException, PermutateStringException {
+        Dictionary text = Dictionary.fromText(Objects.requireNonNull(
+                getClass().getResourceAsStream(Dictionary.DICTIONARY_RESOURCE)));
+        DictionarySnapshot.write(text, snapshot);
+        Dictionary mapped = DictionarySnapshot.load(snapshot);
+        assertNotNull(mapped);
+        assertEquals(text.size(), mapped.size());
+
+        WordWheel wordWheel = new WordWheel(SolverStrategy.TRIE, mapped);
+        assertTrue(wordWheel.findWords("ABCDEFGHI"));
+        assertEquals(68, wordWheel.getValidWords().size());
+    }
+
+    public void testMissingSnapshot() throws IOException {
+        Files.delete(snapshot);
+        assertNull(DictionarySnapshot.load(snapshot));
+    }
+
+    public void testCorruptSnapshotRejected() throws IOException {
+        DictionarySnapshot.write(Dictionary.fromWords(Arrays.asList("CAT", "DOG")), snapshot);
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x7f }), channel.size() - 1);
+        }
+        assertNull(DictionarySnapshot.load(snapshot));
+    }
+
+    public void testFallbackToText() {
+        String previous = System.setProperty(Dictionary.SNAPSHOT_PROPERTY, snapshot.toString());
+        try {
+            // The empty temporary file is not a valid snapshot, so the text resource is used
+            Dictionary dictionary = Dictionary.load();
+            assertTrue(dictionary.getTrie().contains("CRINOLINE"));
+        } finally {
+            if (previous == null) {
+                System.clearProperty(Dictionary.SNAPSHOT_PROPERTY);
+            } else {
+                System.setProperty(Dictionary.SNAPSHOT_PROPERTY, previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class DictionaryTrieTest extends TestCase {
+
+    public void testContains() {
+        List<String> words = Arrays.asList("CAT", "CATS", "CAR", "CARS", "DOG", "DOGS", "Id", "I.E.");
+        DictionaryTrie trie = new DictionaryTrie(words);
+        assertTrue(trie.contains("CAT"));
+        assertTrue(trie.contains("CARS"));
+        assertTrue(trie.contains("DOGS"));
+        assertFalse(trie.contains("CA"));
+        assertFalse(trie.contains("DOGSS"));
+        assertFalse(trie.contains("Id"));
+        assertFalse(trie.contains("I.E."));
+    }
+
+    public void testSuffixesShared() {
+        // CATS, CARS and DOGS all end in the same "S" terminal node, so does the graph below each of them
+        DictionaryTrie trie = new DictionaryTrie(Arrays.asList("CAT", "CATS", "CAR", "CARS", "DOG", "DOGS"));
+        // root, C, CA, D, DO, {CAT,CAR,DOG} merged, {CATS,CARS,DOGS} merged
+        assertEquals(7, trie.getNodeCount());
+    }
+
+    public void testHeight() {
+        DictionaryTrie trie = new DictionaryTrie(Arrays.asList("CAT", "CATS", "DOG", "DOGMAS"));
+        assertEquals(6, trie.height(DictionaryTrie.ROOT));
+        int c = trie.child(DictionaryTrie.ROOT, 'C' - 'A');
+        assertEquals(3, trie.height(c));
+        int cats = trie.child(trie.child(trie.child(c, 0), 'T' - 'A'), 'S' - 'A');
+        assertEquals(0, trie.height(cats));
+    }
+
+    public void testTrieSolverMatchesAnagramKeySolver() {
+        final String[] testStringArray = { "ABCDEFGHI", "OCNINLREI", "RUYDAROTC", "ABCDEEEEE", "EEEEEEEEE", "ZQJXKVBYW" };
+        for (String testString : testStringArray) {
+            try {
+                WordWheel trieWheel = new WordWheel(SolverStrategy.TRIE);
+                assertTrue(trieWheel.findWords(testString));
+                WordWheel anagramWheel = new WordWheel(SolverStrategy.ANAGRAM_KEY);
+                assertTrue(anagramWheel.findWords(testString));
+                assertEquals(anagramWheel.getValidWords(), trieWheel.getValidWords());
+            } catch (PermutateStringException e) {
+                fail("Unexpected exception " +e.getClass().getName() +" thrown, " +e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FindCombinationTest extends TestCase {
+
+    public void testFindsEveryCombination() throws Exception {
+        Set<String> combinations = new HashSet<>();
+        Set<String> validWords = new HashSet<>();
+        FindCombination findCombination = new FindCombination("TACS", combinations, validWords, Long.MAX_VALUE, "C",
+                Dictionary.fromWords(Arrays.asList("CAT", "ACT", "CATS", "TA", "SAT")).getPackedWords(),
+                new AtomicLong(), SearchControl.unbounded());
+        assertTrue(findCombination.call());
+        // Every ordering of each run T, TA, TAC, TACS, A, AC, ACS, C, CS and S
+        assertTrue(combinations.contains("SCAT"));
+        assertTrue(combinations.contains("AT"));
+        assertFalse(combinations.contains("TS"));
+        assertEquals(1 + 2 + 6 + 24 + 1 + 2 + 6 + 1 + 2 + 1, combinations.size());
+        // TA and SAT do not contain the centre letter
+        assertEquals(new HashSet<>(Arrays.asList("CAT", "ACT", "CATS")), validWords);
+    }
+
+    public void testFoundHeldUntilMerged() {
+        Set<String> combinations = new HashSet<>();
+        Set<String> validWords = new HashSet<>();
+        AtomicLong combinationsFound = new AtomicLong();
+        FindCombination findCombination = new FindCombination(combinations, validWords, Long.MAX_VALUE, "C",
+                Dictionary.fromWords(Arrays.asList("CAT", "ACT")).getPackedWords(), combinationsFound,
+                SearchControl.unbounded());
+        assertTrue(findCombination.search("TAC".toCharArray()));
+        assertTrue(findCombination.search("CAT".toCharArray()));
+        assertTrue(combinations.isEmpty());
+        assertTrue(validWords.isEmpty());
+
+        findCombination.merge();
+        // T, TA, TAC, A, AC, C and their orderings, the second permutation only finds them again
+        assertEquals(1 + 2 + 6 + 1 + 2 + 1, combinations.size());
+        assertEquals(combinations.size(), combinationsFound.get());
+        assertEquals(combinations.size(), findCombination.getDuplicateCombinations());
+        assertEquals(new HashSet<>(Arrays.asList("CAT", "ACT")), validWords);
+
+        // Found again by another search, the shared set already has them
+        combinations.remove("CAT");
+        assertTrue(findCombination.search("TAC".toCharArray()));
+        findCombination.merge();
+        assertEquals(1 + 2 + 6 + 1 + 2 + 1, combinations.size());
+        assertEquals(combinations.size() + 1, combinationsFound.get());
+    }
+
+    public void testUncollectedSearchAllocatesNothingPerCandidate() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        String letters = "ABCDEFGHI";
+        PackedWordSet dictionary = Dictionary.getDefault().getPackedWords();
+        Set<String> validWords = new ConcurrentSkipListSet<>();
+        // Once to warm up and to find the words, so the measured run adds nothing to the set
+        solve(letters, dictionary, validWords);
+        assertEquals(68, validWords.size());
+
+        CombinationCoverage coverage = new CombinationCoverage(letters);
+        FindCombination findCombination = new FindCombination(coverage, validWords, "A", dictionary,
+                SearchControl.unbounded());
+        char[] permutation = new char[letters.length()];
+        long threadId = Thread.currentThread().getId();
+        long before = allocationBean.getThreadAllocatedBytes(threadId);
+        for (int rank = 0; !coverage.isComplete(); rank++) {
+            PermutationSolver.permutationAt(letters, rank, permutation);
+            findCombination.search(permutation);
+        }
+        long allocated = allocationBean.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(986409, coverage.getArrangementsCovered());
+        // Only the Strings for the 68 words found, a String per candidate would be tens of megabytes
+        assertTrue("allocated " +allocated +" bytes", allocated < 64 * 1024);
+    }
+
+    private static void solve(String letters, PackedWordSet dictionary, Set<String> validWords) {
+        CombinationCoverage coverage = new CombinationCoverage(letters);
+        FindCombination findCombination = new FindCombination(coverage, validWords, letters.substring(0, 1),
+                dictionary, SearchControl.unbounded());
+        char[] permutation = new char[letters.length()];
+        for (int rank = 0; !coverage.isComplete(); rank++) {
+            PermutationSolver.permutationAt(letters, rank, permutation);
+            findCombination.search(permutation);
+        }
+        findCombination.merge();
+    }
+}
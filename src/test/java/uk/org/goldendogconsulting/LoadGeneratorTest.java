@@ -0,0 +1,86 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class LoadGeneratorTest extends TestCase {
+
+    public void testHistogramPrecision() {
+        for (long value : new long[] { 0, 1, 127, 128, 129, 1000, 123456, 987654321, Long.MAX_VALUE / 3,
+                Long.MAX_VALUE }) {
+            int index = LatencyHistogram.index(value);
+            long highest = LatencyHistogram.highestValue(index);
+            assertTrue(value +" above its bucket", value <= highest);
+            assertTrue(value +" bucket too wide", highest - value <= value / 64);
+            if (index > 0) {
+                assertTrue(value +" below its bucket", value > LatencyHistogram.highestValue(index - 1));
+            }
+        }
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMaxNanos());
+        assertEquals(500500, histogram.getMeanNanos());
+        assertNear(500000, histogram.getPercentileNanos(50));
+        assertNear(990000, histogram.getPercentileNanos(99));
+        assertNear(999000, histogram.getPercentileNanos(99.9));
+        assertEquals(1000000, histogram.getPercentileNanos(100));
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue(actual +" is not near " +expected, actual >= expected && actual - expected <= expected / 64);
+    }
+
+    public void testCorpus() throws IOException {
+        List<String> puzzles = LoadGenerator.randomPuzzles(Dictionary.getDefault(), 20, 42);
+        assertEquals(20, puzzles.size());
+        assertEquals(puzzles, LoadGenerator.randomPuzzles(Dictionary.getDefault(), 20, 42));
+        for (String puzzle : puzzles) {
+            assertEquals(9, puzzle.length());
+        }
+
+        Path file = Files.createTempFile("puzzles", ".txt");
+        try {
+            Files.write(file, Arrays.asList("# recorded", "O CNINLREI", "", "RUYDAROTC"), StandardCharsets.UTF_8);
+            assertEquals(Arrays.asList("OCNINLREI", "RUYDAROTC"), LoadGenerator.readPuzzles(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public void testClosedLoop() throws InterruptedException {
+        LoadGenerator loadGenerator = new LoadGenerator(LoadGenerator.engineTarget(new WordWheelEngine()),
+                Arrays.asList("OCNINLREI", "RUYDAROTC", "OCN1NLREI"));
+        LoadGenerator.Report report = loadGenerator.runClosedLoop(2, 200, 500, TimeUnit.MILLISECONDS);
+        assertTrue(report.getSolved() > 0);
+        assertTrue(report.getFailed() > 0);
+        assertEquals(0, report.getRejected());
+        assertTrue(report.getThroughput() > 0);
+        assertTrue(report.getP50Micros() <= report.getP90Micros());
+        assertTrue(report.getP90Micros() <= report.getP99Micros());
+        assertTrue(report.getP99Micros() <= report.getP999Micros());
+        assertTrue(report.getP999Micros() <= report.getMaxMicros());
+        assertTrue(report.getPeakThreadCount() >= report.getThreadCount());
+        assertTrue(report.toJson().startsWith("{\"run\":\"closed loop, concurrency 2\""));
+    }
+
+    public void testOpenLoop() throws InterruptedException {
+        LoadGenerator loadGenerator = new LoadGenerator(LoadGenerator.engineTarget(new WordWheelEngine()),
+                Arrays.asList("OCNINLREI", "RUYDAROTC"));
+        LoadGenerator.Report report = loadGenerator.runOpenLoop(100, 100, 500, TimeUnit.MILLISECONDS);
+        // One due every 10 msecs over the 500 measured
+        assertEquals(50, report.getSolved() + report.getDropped());
+        assertEquals(0, report.getFailed());
+        assertTrue(report.getPeakOutstanding() >= 1);
+    }
+}
@@ -0,0 +1,43 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+public class PackedWordSetTest extends TestCase {
+
+    public void testPackRoundTrip() {
+        for (String word : new String[] { "A", "Z", "CRINOLINE", "ZZZZZZZZZZZZ", "ABCDEFGHIJKL" }) {
+            long code = PackedWordSet.pack(word);
+            assertTrue(word, code > 0);
+            assertEquals(word, PackedWordSet.unpack(code));
+        }
+        assertFalse(PackedWordSet.pack("A") == PackedWordSet.pack("AA"));
+        assertEquals(-1, PackedWordSet.pack("ABCDEFGHIJKLM"));
+        assertEquals(-1, PackedWordSet.pack("abc"));
+        assertEquals(-1, PackedWordSet.pack(""));
+        assertEquals(PackedWordSet.pack("AB"), PackedWordSet.append(PackedWordSet.append(0, 'A'), 'B'));
+    }
+
+    public void testContains() {
+        Dictionary dictionary = Dictionary.fromWords(Arrays.asList("CAT", "CATS", "DOG", "ABCDEFGHIJKLMNOP"));
+        PackedWordSet words = dictionary.getPackedWords();
+        assertEquals(3, words.size());
+        assertTrue(words.contains("CAT"));
+        assertTrue(words.contains("CATS"));
+        assertTrue(words.contains(PackedWordSet.pack("DOG")));
+        assertFalse(words.contains("CA"));
+        assertFalse(words.contains("DOGS"));
+        assertFalse(words.contains("ABCDEFGHIJKLMNOP"));
+        assertFalse(words.contains(-1));
+    }
+
+    public void testDefaultDictionary() {
+        Dictionary dictionary = Dictionary.getDefault();
+        PackedWordSet words = dictionary.getPackedWords();
+        for (int i = 0; i < dictionary.size(); i += 97) {
+            String word = dictionary.getWord(i);
+            assertEquals(word, word.length() <= PackedWordSet.MAX_LENGTH, words.contains(word));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class PatternIndexTest extends TestCase {
+
+    public void testFindPattern() throws PermutateStringException {
+        WordWheelEngine engine = new WordWheelEngine();
+        assertEquals(Collections.singletonList("CRINOLINE"), engine.findPattern("CRINOLINE", ""));
+        assertEquals(Collections.singletonList("CRINOLINE"), engine.findPattern("cr?nol?ne", "ii"));
+        assertTrue(engine.findPattern("CR?NOL?NE", "I").isEmpty());
+        assertEquals(Collections.singletonList("CRINOLINE"), engine.findPattern("CR?NOL?NE", "I?"));
+        assertTrue(engine.findPattern("??????????????????????????????????????????", "").isEmpty());
+
+        String[][] queries = {
+                { "A?P??E", "PLRUIT" },
+                { "A?P??E", "??" },
+                { "????", "OCNINLREI" },
+                { "?????", "RUYDAROTC" },
+                { "Q???", "UIZTS?" },
+                { "S?????", "TRAINEDOG" },
+                { "?E?", "" },
+                { "??E??", "STRAW?" },
+        };
+        for (String[] query : queries) {
+            assertEquals(query[0] +" " +query[1], filter(Dictionary.getDefault(), query[0], query[1]),
+                    engine.findPattern(query[0], query[1]));
+        }
+    }
+
+    public void testSparseAndDensePostings() throws PermutateStringException {
+        // Enough words of one length that common letters are held as bitmaps and rare ones as arrays
+        Random random = new Random(7);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int position = 0; position < 6; position++) {
+                // Skewed so E to J are common at every position and the rest rare
+                word.append((char) (random.nextInt(4) > 0 ? 'E' + random.nextInt(6) : 'A' + random.nextInt(26)));
+            }
+            words.add(word.toString());
+        }
+        words.add("N0TAWORD");
+        Dictionary dictionary = Dictionary.fromWords(words);
+        WordWheelEngine engine = new WordWheelEngine(SolverStrategy.TRIE, dictionary);
+        String[][] queries = {
+                { "E?F???", "EFGHIJ" },
+                { "E?F???", "??????" },
+                { "Z?????", "EEFFGG" },
+                { "?Q?Z??", "????" },
+                { "EF?G?H", "??" },
+                { "??????", "EEFFGGHHIIJJ" },
+                { "N?TAWORD", "0" },
+        };
+        for (String[] query : queries) {
+            if (query[1].indexOf('0') >= 0) {
+                try {
+                    engine.findPattern(query[0], query[1]);
+                    fail("Expected letters with a digit to be refused");
+                } catch (PermutateStringException expected) {
+                    assertTrue(expected.getMessage().contains("invalid"));
+                }
+                continue;
+            }
+            assertEquals(query[0] +" " +query[1], filter(dictionary, query[0], query[1]),
+                    engine.findPattern(query[0], query[1]));
+        }
+        assertTrue(dictionary.getPatternIndex().getResidentBytes() > 0);
+
+        for (String pattern : Arrays.asList(null, "", "A-B")) {
+            try {
+                engine.findPattern(pattern, "ABC");
+                fail("Expected pattern " +pattern +" to be refused");
+            } catch (PermutateStringException expected) {
+                assertTrue(expected.getMessage().contains("invalid"));
+            }
+        }
+    }
+
+    // Every word of the dictionary checked against the pattern, the answer the index must give
+    private static List<String> filter(Dictionary dictionary, String pattern, String letters) {
+        List<String> matches = new ArrayList<>();
+        for (String word : new TreeSet<>(dictionary.getWords())) {
+            if (word.length() != pattern.length() || !word.chars().allMatch(ch -> ch >= 'A' && ch <= 'Z')) {
+                continue;
+            }
+            int[] available = LetterCountIndex.countLetters(letters);
+            int blanks = WordWheelEngine.countBlanks(letters);
+            boolean matched = true;
+            for (int position = 0; position < word.length() && matched; position++) {
+                char letter = word.charAt(position);
+                if (pattern.charAt(position) != WordWheelEngine.BLANK) {
+                    matched = pattern.charAt(position) == letter;
+                } else if (available[letter - 'A'] > 0) {
+                    available[letter - 'A']--;
+                } else {
+                    matched = blanks-- > 0;
+                }
+            }
+            if (matched) {
+                matches.add(word);
+            }
+        }
+        return matches;
+    }
+}
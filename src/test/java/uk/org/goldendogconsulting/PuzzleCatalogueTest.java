@@ -0,0 +1,130 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PuzzleCatalogueTest extends TestCase {
+
+    private static final List<String> WORDS = Arrays.asList("CRINOLINE", "ABOLISHED", "ICE", "ION", "LION", "LINE",
+            "NICE", "CORN", "RECOIL", "BALD", "HOLE", "SHED", "ABOLISH", "DISH");
+
+    private Path directory;
+    private Path catalogue;
+    private Dictionary dictionary;
+    private WordWheelEngine engine;
+
+    @Override
+    protected void setUp() throws IOException {
+        directory = Files.createTempDirectory("catalogue");
+        catalogue = directory.resolve("puzzles.catalogue");
+        dictionary = Dictionary.fromWords(WORDS);
+        engine = new WordWheelEngine(SolverStrategy.TRIE, dictionary);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(catalogue);
+        Files.deleteIfExists(directory.resolve("puzzles.catalogue.partial"));
+        Files.delete(directory);
+    }
+
+    public void testPuzzles() {
+        List<String> puzzles = PuzzleCatalogueBuilder.puzzles(dictionary);
+        // CRINOLINE has seven distinct letters, CEILNOR, and ABOLISHED nine
+        assertEquals(7 + 9, puzzles.size());
+        assertTrue(puzzles.contains("ABDEHILOS"));
+        assertTrue(puzzles.contains("NCEIILNOR"));
+        assertEquals("ABDEHILOS", PuzzleCatalogue.canonicalKey("AOBLISHED"));
+    }
+
+    public void testLookupMatchesLiveSolve() throws IOException, PermutateStringException {
+        PuzzleCatalogue puzzleCatalogue = new PuzzleCatalogueBuilder(engine).build(catalogue);
+        assertNotNull(puzzleCatalogue);
+        assertEquals(16, puzzleCatalogue.size());
+        assertFalse(Files.exists(directory.resolve("puzzles.catalogue.partial")));
+
+        for (String puzzle : PuzzleCatalogueBuilder.puzzles(dictionary)) {
+            WordWheelResult result = engine.findWords(puzzle);
+            PuzzleCatalogue.Entry entry = puzzleCatalogue.lookup(puzzle);
+            assertNotNull(puzzle, entry);
+            assertEquals(puzzle, entry.getKey());
+            assertEquals(puzzle, result.getWordCount(), entry.getWordCount());
+            for (int length = 1; length <= 9; length++) {
+                assertEquals(puzzle, result.getWordCount(length), entry.getWordCount(length));
+            }
+            assertEquals(puzzle, result.getNineLetterWords(), entry.getNineLetterWords());
+        }
+        assertNull(puzzleCatalogue.lookup("ABCDEFGHI"));
+
+        // The wheel letters may be in any order
+        WordWheel wordWheel = new WordWheel(engine, PuzzleCatalogue.load(catalogue, dictionary));
+        assertTrue(wordWheel.isCatalogued("iCrnoleni"));
+        assertTrue(wordWheel.findWords("iCrnoleni"));
+        assertEquals(Collections.singletonList("CRINOLINE"), wordWheel.findNineLetterWords());
+        assertEquals(engine.findWords("ICRNOLENI").getWordCount(), wordWheel.getWordCount());
+        // Asking for the words themselves solves the puzzle
+        assertEquals(engine.findWords("ICRNOLENI").getValidWords(), wordWheel.getValidWords());
+
+        assertFalse(wordWheel.isCatalogued("ABCDEFGHI"));
+        assertTrue(wordWheel.findWords("ABCDEFGHI"));
+        assertEquals(0, wordWheel.getWordCount());
+    }
+
+    public void testInterruptedBuildResumes() throws IOException {
+        Path partial = directory.resolve("puzzles.catalogue.partial");
+        PuzzleCatalogueBuilder interrupted = new PuzzleCatalogueBuilder(engine, 4) {
+            @Override
+            void progress(int done, int total, int solvedThisRun, long elapsedNanos) {
+                if (done == 8) {
+                    throw new IllegalStateException("interrupted");
+                }
+            }
+        };
+        try {
+            interrupted.build(catalogue);
+            fail("Build should have been interrupted");
+        } catch (IllegalStateException expected) {
+            assertTrue(Files.exists(partial));
+        }
+        // A record cut short by the interruption
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 1, 2 }));
+        }
+
+        int[] solved = new int[1];
+        PuzzleCatalogueBuilder resumed = new PuzzleCatalogueBuilder(engine, 4) {
+            @Override
+            void progress(int done, int total, int solvedThisRun, long elapsedNanos) {
+                solved[0] = solvedThisRun;
+            }
+        };
+        PuzzleCatalogue puzzleCatalogue = resumed.build(catalogue);
+        assertEquals(16 - 8, solved[0]);
+        assertNotNull(puzzleCatalogue);
+        assertEquals(16, puzzleCatalogue.size());
+        assertEquals(1, puzzleCatalogue.lookup("ABOLISHED").getNineLetterWords().size());
+        assertFalse(Files.exists(partial));
+    }
+
+    public void testCatalogueRejected() throws IOException {
+        assertNull(PuzzleCatalogue.load(catalogue, dictionary));
+
+        new PuzzleCatalogueBuilder(engine).build(catalogue);
+        // Built from another dictionary
+        assertNull(PuzzleCatalogue.load(catalogue, Dictionary.fromWords(Arrays.asList("CRINOLINE", "ICE"))));
+
+        try (FileChannel channel = FileChannel.open(catalogue, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x7f }), channel.size() - 1);
+        }
+        assertNull(PuzzleCatalogue.load(catalogue, dictionary));
+    }
+}
@@ -0,0 +1,175 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResultCacheTest extends TestCase {
+
+    private static WordWheelResult result(String letters, String... words) {
+        return new WordWheelResult(letters, new TreeSet<>(Arrays.asList(words)), true, 0, 0,
+                Collections.emptySet());
+    }
+
+    public void testReorderedLettersAreHits() throws PermutateStringException {
+        ResultCache cache = new ResultCache(16);
+        WordWheelEngine engine = new WordWheelEngine(SolverStrategy.TRIE, Dictionary.getDefault(),
+                SolverScheduler.getDefault(), false, cache);
+        WordWheelResult solved = engine.findWords("OCNINLREI");
+        WordWheelResult cached = engine.findWords("olreicnin");
+
+        assertEquals("O", cached.getCentreLetter());
+        assertEquals("LREICNIN", cached.getWheelLetters());
+        assertEquals(solved.getValidWords(), cached.getValidWords());
+        assertTrue(cached.isComplete());
+        assertEquals(1, cache.getStatistics().getHits());
+        assertEquals(1, cache.getStatistics().getMisses());
+        assertEquals(1, cache.size());
+
+        // Another centre letter is another puzzle
+        engine.findWords("COLREININ");
+        assertEquals(2, cache.getStatistics().getMisses());
+    }
+
+    public void testLeastRecentlyUsedEvicted() throws PermutateStringException {
+        ResultCache cache = new ResultCache(2);
+        AtomicInteger solves = new AtomicInteger();
+        cache.get("ABC", letters -> { solves.incrementAndGet(); return result(letters, "AB"); });
+        cache.get("BCA", letters -> { solves.incrementAndGet(); return result(letters, "BA"); });
+        cache.get("ACB", letters -> { solves.incrementAndGet(); return result(letters); });
+        cache.get("CAB", letters -> { solves.incrementAndGet(); return result(letters, "CAB"); });
+        assertEquals(3, solves.get());
+        assertEquals(1, cache.getStatistics().getEvictions());
+
+        // BCA was least recently used
+        cache.get("BAC", letters -> { solves.incrementAndGet(); return result(letters, "BA"); });
+        assertEquals(4, solves.get());
+        assertEquals(2, cache.getStatistics().getEvictions());
+
+        ResultCache small = new ResultCache(100, 1);
+        small.get("ABC", letters -> result(letters, "AB"));
+        small.get("BAC", letters -> result(letters, "BA"));
+        // Always keeps the newest result, however large
+        assertEquals(1, small.size());
+        assertEquals(1, small.getStatistics().getEvictions());
+    }
+
+    public void testIncompleteResultsNotCached() throws PermutateStringException {
+        ResultCache cache = new ResultCache(2);
+        cache.get("ABC", letters -> new WordWheelResult(letters, Collections.emptySet(), false, 0, 0,
+                Collections.emptySet()));
+        assertEquals(0, cache.size());
+    }
+
+    public void testConcurrentRequestsSolvedOnce() throws Exception {
+        ResultCache cache = new ResultCache(16);
+        AtomicInteger solves = new AtomicInteger();
+        CountDownLatch solving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<WordWheelResult> first = executor.submit(() -> cache.get("ABC", letters -> {
+                solves.incrementAndGet();
+                solving.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                return result(letters, "AB");
+            }));
+            assertTrue(solving.await(10, TimeUnit.SECONDS));
+            Future<WordWheelResult> second = executor.submit(() -> cache.get("ACB", letters -> {
+                solves.incrementAndGet();
+                return result(letters, "AB");
+            }));
+            // Give the second request time to find the first solving
+            Thread.sleep(100);
+            release.countDown();
+            assertEquals("BC", first.get(10, TimeUnit.SECONDS).getWheelLetters());
+            assertEquals("CB", second.get(10, TimeUnit.SECONDS).getWheelLetters());
+            assertEquals(1, solves.get());
+            assertEquals(1, cache.getStatistics().getHits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testWaitersKeepTheirOwnDeadlines() throws Exception {
+        ResultCache cache = new ResultCache(16);
+        CountDownLatch solving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<WordWheelResult> slow = executor.submit(() -> cache.get("ABCD", letters -> {
+                solving.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                return result(letters, "AB");
+            }));
+            assertTrue(solving.await(10, TimeUnit.SECONDS));
+            // A caller with a short deadline stops waiting at its deadline, its own search finding nothing in time
+            SearchControl shortDeadline = SearchControl.withTimeout(100, TimeUnit.MILLISECONDS);
+            Future<WordWheelResult> hurried = executor.submit(() -> cache.get("ACBD", shortDeadline,
+                    letters -> new WordWheelResult(letters, Collections.emptySet(), !shortDeadline.isStopped(), 0, 0,
+                            Collections.emptySet())));
+            // One without a deadline waits for the slow search's result
+            Future<WordWheelResult> patient = executor.submit(() -> cache.get("ADBC", SearchControl.unbounded(),
+                    letters -> result(letters)));
+            WordWheelResult hurriedResult = hurried.get(5, TimeUnit.SECONDS);
+            assertFalse(hurriedResult.isComplete());
+            assertTrue(shortDeadline.isTimedOut());
+            assertFalse(slow.isDone());
+            assertFalse(patient.isDone());
+
+            release.countDown();
+            assertEquals(Collections.singleton("AB"), slow.get(10, TimeUnit.SECONDS).getValidWords());
+            WordWheelResult patientResult = patient.get(10, TimeUnit.SECONDS);
+            assertTrue(patientResult.isComplete());
+            assertEquals(Collections.singleton("AB"), patientResult.getValidWords());
+            assertEquals(1, cache.getStatistics().getHits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testSaveAndLoad() throws IOException, PermutateStringException {
+        Dictionary dictionary = Dictionary.fromWords(Arrays.asList("AB", "BA", "CAB"));
+        ResultCache cache = new ResultCache(16);
+        cache.get("ABC", letters -> result(letters, "AB", "CAB"));
+        cache.get("BAC", letters -> result(letters, "BA", "CAB"));
+        Path file = Files.createTempFile("results", ".cache");
+        try {
+            cache.save(file, dictionary);
+
+            ResultCache loaded = new ResultCache(16);
+            assertEquals(2, loaded.load(file, dictionary));
+            WordWheelResult result = loaded.get("ACB", letters -> {
+                fail("Should have been loaded");
+                return null;
+            });
+            assertEquals(Arrays.asList("AB", "CAB"), Arrays.asList(result.getValidWords().toArray()));
+            assertEquals("CB", result.getWheelLetters());
+
+            // Saved for another dictionary
+            assertEquals(0, new ResultCache(16).load(file, Dictionary.fromWords(Arrays.asList("AB"))));
+        } finally {
+            Files.delete(file);
+        }
+        assertEquals(0, new ResultCache(16).load(file, dictionary));
+    }
+}
@@ -0,0 +1,108 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ShardedBatchSolverTest extends TestCase {
+
+    private static final String PUZZLES = "# nightly wheels\n"
+            + "OCNINLREI\n"
+            + "\n"
+            + "R UYDAROTC\n"
+            + "9BCDEFGHI\n"
+            + "ABCDEFGHI\n"
+            + "TSRNLEAIO\n"
+            + "RUYDAROTC\n"
+            + "OCNINLREI\n";
+
+    public void testWorkerProcesses() throws IOException {
+        StringWriter output = new StringWriter();
+        BatchSolver.Summary summary;
+        try (ShardedBatchSolver coordinator = new ShardedBatchSolver(0, 2, 60, TimeUnit.SECONDS,
+                BatchSolver.OutputFormat.TEXT)) {
+            coordinator.launchWorkers(2);
+            summary = coordinator.solve(new BufferedReader(new StringReader(PUZZLES)), output);
+        }
+        assertEquals(7, summary.getPuzzles());
+        assertEquals(1, summary.getFailed());
+        String[] lines = output.toString().split("\\R");
+        assertEquals(Arrays.asList(singleProcess()), Arrays.asList(lines).subList(0, 7));
+        assertTrue(lines[7], lines[7].startsWith("Solved 6 of 7 puzzles, 1 failed"));
+    }
+
+    public void testLostAndSlowWorkers() throws Exception {
+        StringWriter output = new StringWriter();
+        try (ShardedBatchSolver coordinator = new ShardedBatchSolver(0, 3, 500, TimeUnit.MILLISECONDS,
+                BatchSolver.OutputFormat.TEXT)) {
+            CountDownLatch unitsTaken = new CountDownLatch(2);
+            // One worker drops its connection once it has a unit, the other holds its unit and never answers
+            Thread lost = fakeWorker(coordinator.getPort(), unitsTaken, false);
+            Thread slow = fakeWorker(coordinator.getPort(), unitsTaken, true);
+            Thread worker = new Thread(() -> {
+                try {
+                    unitsTaken.await();
+                    new BatchWorker(new WordWheelEngine()).run("127.0.0.1", coordinator.getPort());
+                } catch (IOException | InterruptedException exception) {
+                    throw new IllegalStateException(exception);
+                }
+            });
+            worker.start();
+            BatchSolver.Summary summary = coordinator.solve(new BufferedReader(new StringReader(PUZZLES)), output);
+            assertEquals(1, summary.getFailed());
+            // The lost worker's unit is put back, the slow worker's handed out again after the timeout
+            assertEquals(2, coordinator.getReassignedUnits());
+            worker.join(10000);
+            assertFalse(worker.isAlive());
+            lost.join(10000);
+            slow.interrupt();
+        }
+        String[] lines = output.toString().split("\\R");
+        assertEquals(Arrays.asList(singleProcess()), Arrays.asList(lines).subList(0, 7));
+        assertTrue(lines[7], lines[7].startsWith("Solved 6 of 7 puzzles, 1 failed"));
+    }
+
+    // Speaks the protocol as far as taking a unit
+    private static Thread fakeWorker(int port, CountDownLatch unitsTaken, boolean slow) {
+        Thread thread = new Thread(() -> {
+            try (Socket socket = new Socket("127.0.0.1", port);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                         StandardCharsets.UTF_8));
+                 Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write(ShardedBatchSolver.READY + "\n");
+                writer.flush();
+                String[] unit = reader.readLine().split(" ");
+                for (int i = 0; i < Integer.parseInt(unit[2]); i++) {
+                    reader.readLine();
+                }
+                unitsTaken.countDown();
+                if (slow) {
+                    Thread.sleep(60000);
+                }
+            } catch (IOException | InterruptedException exception) {
+                // dropped by the coordinator or the test
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static String[] singleProcess() throws IOException {
+        StringWriter output = new StringWriter();
+        new BatchSolver(new WordWheelEngine(), 1, BatchSolver.OutputFormat.TEXT, true)
+                .solve(new BufferedReader(new StringReader(PUZZLES)), output);
+        return Arrays.copyOf(output.toString().split("\\R"), 7);
+    }
+}
@@ -0,0 +1,117 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Latency and allocation of a solve on a warm engine, checked against the budgets in
+ * {@value #BUDGETS_RESOURCE}. Only run by the {@code performance} profile, {@code mvn test -Pperformance}.
+ * <p>
+ * Each strategy solves the same corpus of puzzles, first to warm up and then to measure. Engines are built without a
+ * scheduler so every solve runs, and allocates, on the calling thread where the thread's allocation counter sees it.
+ * A measure fails when it is over its budget by more than the margin, {@value #MARGIN_PROPERTY} as a fraction of the
+ * budget, 0.5 by default. Every measure is written to {@value #REPORT_PROPERTY}, by default
+ * {@code target/performance-report.json}, one JSON object per line, whether it passed or not.
+ */
+public class SolvePerformanceTest extends TestCase {
+
+    static final String BUDGETS_RESOURCE = "/performance-budgets.properties";
+    static final String MARGIN_PROPERTY = "wordwheel.performance.margin";
+    static final String REPORT_PROPERTY = "wordwheel.performance.report";
+
+    private static final String[] PUZZLES = { "ABCDEFGHI", "OCNINLREI", "RUYDAROTC", "ABCDEEEEE", "ZQJXKVBYW",
+            "TSRNLEAIO", "ESTTRRABUINO", "OCNINLRE?" };
+    private static final SolverStrategy[] STRATEGIES = { SolverStrategy.TRIE, SolverStrategy.ANAGRAM_KEY,
+            SolverStrategy.SCAN };
+    private static final int WARMUP_ROUNDS = 30;
+    private static final int MEASURED_ROUNDS = 30;
+    private static final long THOUSAND = 1000;
+
+    public void testSolveBudgets() throws IOException, PermutateStringException {
+        Properties budgets = new Properties();
+        try (InputStream input = Objects.requireNonNull(getClass().getResourceAsStream(BUDGETS_RESOURCE))) {
+            budgets.load(input);
+        }
+        double margin = Double.parseDouble(System.getProperty(MARGIN_PROPERTY, "0.5"));
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue("Thread allocation counting is not supported", threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        List<String> report = new ArrayList<>();
+        List<String> overBudget = new ArrayList<>();
+        for (SolverStrategy strategy : STRATEGIES) {
+            WordWheelEngine engine = new WordWheelEngine(strategy, Dictionary.getDefault(), null);
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                for (String puzzle : PUZZLES) {
+                    engine.findWords(puzzle);
+                }
+            }
+            long[] solveNanos = new long[MEASURED_ROUNDS * PUZZLES.length];
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            int solves = 0;
+            for (int round = 0; round < MEASURED_ROUNDS; round++) {
+                for (String puzzle : PUZZLES) {
+                    long startTime = System.nanoTime();
+                    engine.findWords(puzzle);
+                    solveNanos[solves++] = System.nanoTime() - startTime;
+                }
+            }
+            long allocatedBytes = (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / solves;
+            Arrays.sort(solveNanos);
+            long medianMicros = solveNanos[solves / 2] / THOUSAND;
+            long p99Micros = solveNanos[(int) (solves * 0.99)] / THOUSAND;
+
+            report.add(measure(strategy, "medianMicros", medianMicros, budgets, margin, overBudget));
+            report.add(measure(strategy, "p99Micros", p99Micros, budgets, margin, overBudget));
+            report.add(measure(strategy, "allocatedBytes", allocatedBytes, budgets, margin, overBudget));
+        }
+
+        Path reportFile = Paths.get(System.getProperty(REPORT_PROPERTY, "target/performance-report.json"));
+        if (reportFile.getParent() != null) {
+            Files.createDirectories(reportFile.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+            for (String line : report) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+        assertTrue("Over budget by more than " +(int) (margin * 100) +"% : " +overBudget, overBudget.isEmpty());
+    }
+
+    /**
+     * Check one measure against its budget, a measure with no budget is only reported.
+     * @return the report line for the measure
+     */
+    private static String measure(SolverStrategy strategy, String name, long value, Properties budgets, double margin,
+                                  List<String> overBudget) {
+        String key = strategy +"." +name;
+        String budgetValue = budgets.getProperty(key);
+        long budget = budgetValue == null ? -1 : Long.parseLong(budgetValue.trim());
+        long limit = budget < 0 ? -1 : (long) (budget * (1 + margin));
+        boolean passed = limit < 0 || value <= limit;
+        if (!passed) {
+            overBudget.add(key +" " +value +" > " +budget);
+        }
+        return "{\"strategy\":" +Json.quote(strategy.toString())
+                +",\"measure\":" +Json.quote(name)
+                +",\"value\":" +value
+                +",\"budget\":" +budget
+                +",\"limit\":" +limit
+                +",\"passed\":" +passed +"}";
+    }
+}
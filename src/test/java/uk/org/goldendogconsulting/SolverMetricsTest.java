@@ -0,0 +1,67 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+public class SolverMetricsTest extends TestCase {
+
+    public void testPercentiles() {
+        SolverMetrics metrics = new SolverMetrics(true);
+        for (int i = 0; i < 99; i++) {
+            metrics.recordNanos(SolverMetrics.Phase.SOLVE, 1000);
+        }
+        metrics.recordNanos(SolverMetrics.Phase.SOLVE, 1000000);
+        assertEquals(100, metrics.getCount(SolverMetrics.Phase.SOLVE));
+        assertEquals(99 * 1000 + 1000000, metrics.getTotalNanos(SolverMetrics.Phase.SOLVE));
+        assertEquals(1000000, metrics.getMaxNanos(SolverMetrics.Phase.SOLVE));
+        // Within the power of two bucket holding the value
+        long p50 = metrics.getPercentileNanos(SolverMetrics.Phase.SOLVE, 50);
+        assertTrue(String.valueOf(p50), p50 >= 1000 && p50 < 2048);
+        assertEquals(1000000, metrics.getPercentileNanos(SolverMetrics.Phase.SOLVE, 100));
+        assertEquals(0, metrics.getPercentileNanos(SolverMetrics.Phase.QUEUE_WAIT, 50));
+
+        metrics.reset();
+        assertEquals(0, metrics.getCount(SolverMetrics.Phase.SOLVE));
+        assertEquals(0, metrics.getMaxNanos(SolverMetrics.Phase.SOLVE));
+    }
+
+    public void testDisabledRecordsNothing() {
+        SolverMetrics metrics = new SolverMetrics(false);
+        assertEquals(0, metrics.start());
+        metrics.record(SolverMetrics.Phase.SOLVE, metrics.start());
+        metrics.recordNanos(SolverMetrics.Phase.SOLVE, 10);
+        metrics.add(SolverMetrics.Counter.SOLVES, 1);
+        assertEquals(0, metrics.getCount(SolverMetrics.Phase.SOLVE));
+        assertEquals(0, metrics.getSolves());
+        assertTrue(metrics.snapshot().startsWith("wordwheel_metrics_enabled 0\n"));
+    }
+
+    public void testPermutationSolveRecordsPhases() throws Exception {
+        SolverMetrics metrics = SolverMetrics.getDefault();
+        metrics.setEnabled(true);
+        metrics.reset();
+        WordWheelEngine engine = new WordWheelEngine(SolverStrategy.PERMUTATION, Dictionary.getDefault());
+        assertTrue(engine.findWords("OCNINLREI").isComplete());
+
+        assertEquals(1, metrics.getSolves());
+        assertEquals(1, metrics.getCount(SolverMetrics.Phase.SOLVE));
+        assertEquals(1, metrics.getCount(SolverMetrics.Phase.QUEUE_WAIT));
+        assertTrue(metrics.getCount(SolverMetrics.Phase.COMBINATION_SEARCH) > 0);
+        assertTrue(metrics.getCount(SolverMetrics.Phase.PERMUTATION_GENERATION) > 0);
+        assertTrue(metrics.getPermutationsGenerated() > 0 && metrics.getPermutationsGenerated() <= 362880);
+        assertTrue(metrics.getDictionaryProbes() > 0);
+        assertEquals(0, metrics.getDuplicateCombinations());
+
+        String snapshot = metrics.snapshot();
+        assertTrue(snapshot, snapshot.contains("wordwheel_solves_total 1\n"));
+        assertTrue(snapshot, snapshot.contains("wordwheel_phase_count{phase=\"solve\"} 1\n"));
+
+        // Published over JMX
+        Object solves = ManagementFactory.getPlatformMBeanServer().getAttribute(
+                new ObjectName(SolverMetrics.OBJECT_NAME), "Solves");
+        assertEquals(1L, solves);
+    }
+}
@@ -0,0 +1,398 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class WordWheelEngineTest extends TestCase {
+
+    private static final String[] PUZZLES = { "ABCDEFGHI", "OCNINLREI", "RUYDAROTC", "ABCDEEEEE", "ZQJXKVBYW",
+            "TSRNLEAIO" };
+
+    public void testResult() throws PermutateStringException {
+        WordWheelEngine engine = new WordWheelEngine();
+        WordWheelResult result = engine.findWords("ocninlrei");
+        assertTrue(result.isComplete());
+        assertEquals("O", result.getCentreLetter());
+        assertEquals("CNINLREI", result.getWheelLetters());
+        assertEquals(7, result.getUniqueCharacterCount());
+        assertTrue(result.getNineLetterWords().contains("CRINOLINE"));
+        int total = 0;
+        for (int length = 0; length <= 9; length++) {
+            total += result.getWordCount(length);
+        }
+        assertEquals(result.getWordCount(), total);
+        assertEquals(result.getValidWords().size(), result.getWordCount());
+        try {
+            result.getValidWords().add("XYZZY");
+            fail("result is mutable");
+        } catch (UnsupportedOperationException expected) {
+            assertFalse(result.getValidWords().contains("XYZZY"));
+        }
+    }
+
+    public void testRepeatedFindWords() throws PermutateStringException {
+        WordWheel wordWheel = new WordWheel();
+        wordWheel.findWords("ABCDEFGHI");
+        assertEquals(68, wordWheel.getValidWords().size());
+        wordWheel.findWords("ZQJXKVBYW");
+        assertTrue(wordWheel.findNineLetterWords().isEmpty());
+        wordWheel.findWords("ABCDEFGHI");
+        assertEquals(68, wordWheel.getValidWords().size());
+    }
+
+    public void testConcurrentSolvesOnSharedEngine() throws Exception {
+        final WordWheelEngine engine = new WordWheelEngine();
+        Map<String, WordWheelResult> expected = new HashMap<>();
+        for (String puzzle : PUZZLES) {
+            expected.put(puzzle, engine.findWords(puzzle));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<WordWheelResult>> futures = new ArrayList<>();
+            List<String> submitted = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final String puzzle = PUZZLES[i % PUZZLES.length];
+                submitted.add(puzzle);
+                futures.add(executor.submit(new Callable<WordWheelResult>() {
+                    @Override
+                    public WordWheelResult call() throws PermutateStringException {
+                        return engine.findWords(puzzle);
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    assertEquals(expected.get(submitted.get(i)).getValidWords(), futures.get(i).get().getValidWords());
+                } catch (ExecutionException executionException) {
+                    fail("Unexpected exception " +executionException.getCause());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testDeadlineCancelsSlowSearch() throws PermutateStringException {
+        WordWheelEngine engine = new WordWheelEngine(SolverStrategy.PERMUTATION, Dictionary.getDefault(),
+                SolverScheduler.getDefault(), true);
+        long startTime = System.nanoTime();
+        WordWheelResult result = engine.findWords("ABCDEFGHI", 200, TimeUnit.MILLISECONDS);
+        long elapsedMsecs = (System.nanoTime() - startTime) / 1000000;
+        assertFalse(result.isComplete());
+        // Generating the permutations is not cancellable, the combination search is
+        assertTrue("search took " +elapsedMsecs +" msecs", elapsedMsecs < 20000);
+    }
+
+    public void testCancelledSearchIsIncomplete() throws PermutateStringException {
+        WordWheelEngine engine = new WordWheelEngine();
+        SearchControl control = SearchControl.unbounded();
+        control.cancel();
+        WordWheelResult result = engine.findWords("ABCDEFGHI", control);
+        assertFalse(result.isComplete());
+        assertTrue(result.getValidWords().isEmpty());
+    }
+
+    public void testUncollectedPermutationSearch() throws PermutateStringException {
+        WordWheelEngine engine = new WordWheelEngine(SolverStrategy.PERMUTATION, Dictionary.getDefault());
+        WordWheelEngine trieEngine = new WordWheelEngine();
+        for (String puzzle : new String[] { "ABCDEFGHI", "OCNINLREI", "ABCDEEEEE" }) {
+            WordWheelResult result = engine.findWords(puzzle);
+            assertTrue(result.isComplete());
+            assertTrue(result.getCombinations().isEmpty());
+            assertEquals(result.getCombinationsToFind(), result.getCombinationsFound());
+            assertEquals(trieEngine.findWords(puzzle).getValidWords(), result.getValidWords());
+        }
+    }
+
+    public void testPermutationAt() {
+        Set<String> permutations = new HashSet<>();
+        for (int rank = 0; rank < 24; rank++) {
+            permutations.add(PermutationSolver.permutationAt("ABCD", rank));
+        }
+        assertEquals(24, permutations.size());
+        assertEquals("ABCD", PermutationSolver.permutationAt("ABCD", 0));
+        assertEquals("DCBA", PermutationSolver.permutationAt("ABCD", 23));
+    }
+
+    public void testMinimumLengthQuery() throws PermutateStringException {
+        for (SolverStrategy strategy : SolverStrategy.values()) {
+            WordWheelEngine engine = new WordWheelEngine(strategy, Dictionary.getDefault());
+            for (String puzzle : new String[] { "OCNINLREI", "TSRNLEAIO" }) {
+                Set<String> expected = new TreeSet<>();
+                for (String word : new WordWheelEngine().findWords(puzzle).getValidWords()) {
+                    if (word.length() >= 6) {
+                        expected.add(word);
+                    }
+                }
+                List<String> streamed = new ArrayList<>();
+                WordWheelResult result = engine.findWords(puzzle, WordQuery.minimumLength(6), streamed::add);
+                assertTrue(result.isComplete());
+                assertEquals(strategy +" " +puzzle, expected, result.getValidWords());
+                assertEquals(expected, new TreeSet<>(streamed));
+                assertEquals(expected.size(), streamed.size());
+            }
+        }
+    }
+
+    public void testWheelSizes() throws PermutateStringException {
+        WordWheelEngine trie = new WordWheelEngine();
+        for (String puzzle : new String[] { "EATS", "OCNINLR", "ESTTRRABUINO", "ESTTRRABUINOGFPL" }) {
+            WordWheelResult expected = trie.findWords(puzzle);
+            assertTrue(expected.isComplete());
+            assertEquals(puzzle.length(), expected.getWheelSize());
+            assertFalse(puzzle, expected.getValidWords().isEmpty());
+            for (String word : expected.getValidWords()) {
+                assertTrue(word, word.length() <= puzzle.length() && word.indexOf(puzzle.charAt(0)) >= 0);
+            }
+            for (SolverStrategy strategy : new SolverStrategy[] { SolverStrategy.ANAGRAM_KEY, SolverStrategy.SCAN }) {
+                WordWheelEngine engine = new WordWheelEngine(strategy, Dictionary.getDefault());
+                assertEquals(strategy +" " +puzzle, expected.getValidWords(), engine.findWords(puzzle).getValidWords());
+            }
+        }
+        WordWheelEngine permutation = new WordWheelEngine(SolverStrategy.PERMUTATION, Dictionary.getDefault());
+        assertEquals(trie.findWords("OCNINLR").getValidWords(), permutation.findWords("OCNINLR").getValidWords());
+
+        for (String invalid : new String[] { "AB", "ESTTRRABUINOGFPLM" }) {
+            try {
+                trie.findWords(invalid);
+                fail("Expected " +invalid +" to be refused");
+            } catch (PermutateStringException expected) {
+                assertTrue(expected.getMessage().contains("word " +invalid +" is invalid"));
+            }
+        }
+        try {
+            permutation.findWords("ESTTRRABUIN");
+            fail("Expected a wheel too long to permute to be refused");
+        } catch (PermutateStringException expected) {
+            assertTrue(expected.getMessage().contains("too long to search by permutation"));
+        }
+    }
+
+    public void testWithoutCentreQuery() throws PermutateStringException {
+        String puzzle = "OCNLRE";
+        Set<String> expected = new TreeSet<>();
+        for (String word : new ColumnarScanSolver(Dictionary.getDefault(), null).findBuildable(puzzle)) {
+            if (word.length() >= 3) {
+                expected.add(word);
+            }
+        }
+        assertTrue(expected.stream().anyMatch(word -> word.indexOf('O') < 0));
+        WordQuery query = WordQuery.minimumLength(3).withoutCentre();
+        assertFalse(query.isCentreRequired());
+        for (SolverStrategy strategy : SolverStrategy.values()) {
+            WordWheelEngine engine = new WordWheelEngine(strategy, Dictionary.getDefault());
+            WordWheelResult result = engine.findWords(puzzle, query, null);
+            assertTrue(result.isComplete());
+            assertEquals(strategy.toString(), expected, result.getValidWords());
+        }
+    }
+
+    public void testBlanks() throws PermutateStringException {
+        WordWheelEngine trie = new WordWheelEngine();
+        for (String puzzle : new String[] { "OCNINLRE?", "ESTR??" }) {
+            // Every letter each blank could be, solved one wheel at a time
+            Set<String> expected = new TreeSet<>();
+            List<String> wheels = Collections.singletonList(puzzle);
+            while (wheels.get(0).indexOf(WordWheelEngine.BLANK) >= 0) {
+                List<String> filled = new ArrayList<>();
+                for (String wheel : wheels) {
+                    for (char letter = 'A'; letter <= 'Z'; letter++) {
+                        filled.add(wheel.replaceFirst("\\?", String.valueOf(letter)));
+                    }
+                }
+                wheels = filled;
+            }
+            for (String wheel : wheels) {
+                expected.addAll(trie.findWords(wheel).getValidWords());
+            }
+            Set<String> withoutBlanks = trie.findWords(puzzle.replace("?", "")).getValidWords();
+
+            for (SolverStrategy strategy : SolverStrategy.values()) {
+                WordWheelEngine engine = new WordWheelEngine(strategy, Dictionary.getDefault());
+                WordWheelResult result = engine.findWords(puzzle);
+                assertTrue(result.isComplete());
+                assertEquals(strategy +" " +puzzle, expected, result.getValidWords());
+                assertEquals(puzzle.length() - puzzle.replace("?", "").length(), result.getBlankCount());
+                for (String word : result.getValidWords()) {
+                    String stoodFor = result.getBlankLetters().get(word);
+                    assertEquals(word, withoutBlanks.contains(word), stoodFor == null);
+                    assertTrue(word, stoodFor == null || stoodFor.length() <= result.getBlankCount());
+                }
+            }
+        }
+        assertEquals("I", trie.findWords("OCNNLRE?I").getBlankLetters().get("CRINOLINE"));
+
+        try {
+            trie.findWords("?CNINLREI");
+            fail("Expected a blank centre letter to be refused");
+        } catch (PermutateStringException expected) {
+            assertTrue(expected.getMessage().contains("cannot be a blank"));
+        }
+    }
+
+    public void testReplaceLetter() throws PermutateStringException {
+        WordWheelEngine trie = new WordWheelEngine();
+        for (SolverStrategy strategy : new SolverStrategy[] { SolverStrategy.TRIE, SolverStrategy.ANAGRAM_KEY }) {
+            WordWheelEngine engine = new WordWheelEngine(strategy, Dictionary.getDefault());
+            WordWheelResult previous = engine.findWords("OCNINLREI");
+            // Each wheel letter in turn, to a letter it already has, a new one and another copy of the centre
+            for (int position = 1; position < 9; position++) {
+                for (char letter : new char[] { 'E', 'S', 'O', 'N' }) {
+                    WordWheelResult result = engine.replaceLetter(previous, position, letter);
+                    String letters = result.getLetters();
+                    assertEquals(previous.getLetters().substring(0, position) + letter
+                            + previous.getLetters().substring(position + 1), letters);
+                    assertTrue(result.isComplete());
+                    assertEquals(strategy +" " +letters, trie.findWords(letters).getValidWords(),
+                            result.getValidWords());
+                    assertTrue(result.getReusedWordCount() > 0);
+                    assertTrue(result.getReusedWordCount() <= result.getWordCount());
+                }
+            }
+        }
+
+        WordWheelResult previous = trie.findWords("OCNINLREI");
+        WordWheelResult result = trie.replaceLetter(previous, 1, 'S');
+        assertEquals("OSNINLREI", result.getLetters());
+        // Only the words with the replaced C were dropped, CRINOLINE among them
+        assertFalse(result.getValidWords().contains("CRINOLINE"));
+        assertTrue(result.getValidWords().contains("ROSIN"));
+        int withoutC = (int) previous.getValidWords().stream().filter(word -> word.indexOf('C') < 0).count();
+        assertEquals(withoutC, result.getReusedWordCount());
+
+        // A new centre letter is solved from scratch, as is a blank
+        WordWheelResult newCentre = trie.replaceLetter(previous, 0, 'E');
+        assertEquals(trie.findWords("ECNINLREI").getValidWords(), newCentre.getValidWords());
+        assertEquals(0, newCentre.getReusedWordCount());
+        WordWheelResult blank = trie.replaceLetter(previous, 1, WordWheelEngine.BLANK);
+        assertEquals(trie.findWords("O?NINLREI").getValidWords(), blank.getValidWords());
+        assertEquals(0, blank.getReusedWordCount());
+
+        try {
+            trie.replaceLetter(previous, 9, 'E');
+            fail("Expected a position off the wheel to be refused");
+        } catch (PermutateStringException expected) {
+            assertTrue(expected.getMessage().contains("not on the wheel"));
+        }
+    }
+
+    public void testReplaceLetterOfQueryResult() throws PermutateStringException {
+        WordWheelEngine engine = new WordWheelEngine(SolverStrategy.TRIE, Dictionary.getDefault(), null, false,
+                new ResultCache(ResultCache.DEFAULT_MAX_ENTRIES));
+        Set<String> expected = new WordWheelEngine().findWords("OSNINLREI").getValidWords();
+        // Complete answers to queries, but not every word of the wheel, so nothing can be carried over from them
+        for (WordQuery query : new WordQuery[] { WordQuery.firstNineLetterWord(), WordQuery.minimumLength(6),
+                WordQuery.all().withoutCentre() }) {
+            WordWheelResult previous = engine.findWords("OCNINLREI", query, null);
+            assertTrue(previous.isComplete());
+            WordWheelResult result = engine.replaceLetter(previous, 1, 'S');
+            assertEquals(query.toString(), expected, result.getValidWords());
+            assertEquals(0, result.getReusedWordCount());
+            assertEquals(expected, engine.swapCentre(engine.findWords("SONINLREI", query, null), 1)
+                    .getValidWords());
+        }
+        assertEquals(expected, engine.findWords("OSNINLREI").getValidWords());
+
+        // An incremental answer handed out again from the cache reuses nothing
+        engine.getCache().clear();
+        WordWheelResult edited = engine.replaceLetter(engine.findWords("OCNINLREI"), 1, 'S');
+        assertTrue(edited.getReusedWordCount() > 0);
+        WordWheelResult cached = engine.findWords("OSNINLREI");
+        assertEquals(expected, cached.getValidWords());
+        assertEquals(0, cached.getReusedWordCount());
+    }
+
+    public void testSwapCentre() throws PermutateStringException {
+        WordWheelEngine engine = new WordWheelEngine(SolverStrategy.TRIE, Dictionary.getDefault(), null, false,
+                new ResultCache(ResultCache.DEFAULT_MAX_ENTRIES));
+        WordWheelResult previous = engine.findWords("RUYDAROTC");
+        for (int position = 1; position < 9; position++) {
+            WordWheelResult result = engine.swapCentre(previous, position);
+            String letters = result.getLetters();
+            assertEquals(previous.getLetters().charAt(position), letters.charAt(0));
+            assertEquals(AnagramKeySolver.anagramKey(previous.getLetters()), AnagramKeySolver.anagramKey(letters));
+            assertEquals(letters, new WordWheelEngine().findWords(letters).getValidWords(), result.getValidWords());
+            if (position == 3) {
+                assertTrue(result.getReusedWordCount() > 0);
+            }
+        }
+        // Solved again, the same wheel is answered from the cache, with nothing reused this time
+        long hits = engine.getCache().getStatistics().getHits();
+        WordWheelResult result = engine.swapCentre(previous, 3);
+        assertEquals(hits + 1, engine.getCache().getStatistics().getHits());
+        assertEquals(0, result.getReusedWordCount());
+        // COURTYARD has every letter, so is kept whichever is the centre
+        assertEquals("DUYRAROTC", result.getLetters());
+        assertTrue(result.getValidWords().contains("COURTYARD"));
+    }
+
+    public void testFirstNineLetterWordQuery() throws PermutateStringException {
+        for (SolverStrategy strategy : SolverStrategy.values()) {
+            WordWheelEngine engine = new WordWheelEngine(strategy, Dictionary.getDefault());
+            List<String> streamed = new ArrayList<>();
+            WordWheelResult result = engine.findWords("OCNINLREI", WordQuery.firstNineLetterWord(), streamed::add);
+            assertTrue(result.isComplete());
+            assertEquals(Collections.singletonList("CRINOLINE"), streamed);
+            assertEquals(Collections.singletonList("CRINOLINE"), result.getNineLetterWords());
+
+            result = engine.findWords("ZQJXKVBYW", WordQuery.firstNineLetterWord(), null);
+            assertTrue(result.isComplete());
+            assertTrue(result.getValidWords().isEmpty());
+        }
+    }
+
+    public void testLongestQuery() throws PermutateStringException {
+        WordWheelResult full = new WordWheelEngine().findWords("TSRNLEAIO");
+        for (SolverStrategy strategy : SolverStrategy.values()) {
+            WordWheelEngine engine = new WordWheelEngine(strategy, Dictionary.getDefault());
+            WordWheelResult result = engine.findWords("TSRNLEAIO", WordQuery.longest(5), null);
+            assertTrue(result.isComplete());
+            assertEquals(5, result.getWordCount());
+            int shortest = Integer.MAX_VALUE;
+            for (String word : result.getValidWords()) {
+                assertTrue(full.getValidWords().contains(word));
+                shortest = Math.min(shortest, word.length());
+            }
+            // Nothing left out is longer than the shortest word kept
+            for (String word : full.getValidWords()) {
+                assertTrue(word.length() <= shortest || result.getValidWords().contains(word));
+            }
+        }
+    }
+
+    public void testCancelledQueryIsIncomplete() throws PermutateStringException {
+        SearchControl control = SearchControl.unbounded();
+        control.cancel();
+        WordWheelResult result = new WordWheelEngine().findWords("OCNINLREI", WordQuery.all(), null, control);
+        assertFalse(result.isComplete());
+    }
+
+    public void testSchedulerParallelismDoesNotChangeResult() throws PermutateStringException, InterruptedException {
+        SolverScheduler scheduler = new SolverScheduler(4);
+        try {
+            WordWheelEngine parallelEngine = new WordWheelEngine(SolverStrategy.TRIE, Dictionary.getDefault(), scheduler);
+            WordWheelEngine sequentialEngine = new WordWheelEngine(SolverStrategy.ANAGRAM_KEY, Dictionary.getDefault());
+            for (String puzzle : PUZZLES) {
+                WordWheelResult result = parallelEngine.findWords(puzzle);
+                assertTrue(result.isComplete());
+                assertEquals(sequentialEngine.findWords(puzzle).getValidWords(), result.getValidWords());
+            }
+        } finally {
+            assertTrue(scheduler.shutdown(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package uk.org.goldendogconsulting;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class WordWheelServerTest extends TestCase {
+
+    private WordWheelServer server;
+
+    private void start(WordWheelEngine engine, int maxInFlight, long timeoutMsecs) throws IOException {
+        server = new WordWheelServer(engine, new InetSocketAddress("localhost", 0), maxInFlight, timeoutMsecs);
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() throws InterruptedException {
+        if (server != null) {
+            server.stop(1, TimeUnit.SECONDS);
+        }
+    }
+
+    private Response get(String path) throws IOException {
+        return request("GET", path);
+    }
+
+    private Response request(String method, String path) throws IOException {
+        URL url = new URL("http://localhost:" +server.getAddress().getPort() +path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        try {
+            int status = connection.getResponseCode();
+            InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            if (body != null) {
+                try (InputStream input = body) {
+                    input.transferTo(bytes);
+                }
+            }
+            return new Response(status, bytes.toString(StandardCharsets.UTF_8.name()));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String body;
+
+        private Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    public void testNamedDictionary() throws IOException {
+        Path words = Files.createTempFile("words", ".txt");
+        try {
+            Files.write(words, Arrays.asList("CRINOLINE", "LION"), StandardCharsets.UTF_8);
+            DictionaryRegistry registry = new DictionaryRegistry(Long.MAX_VALUE);
+            registry.registerFile("small", words);
+            server = new WordWheelServer(new WordWheelEngine(SolverStrategy.TRIE, Dictionary.getDefault()), registry,
+                    new InetSocketAddress("localhost", 0), 4, 10000);
+            server.start();
+
+            Response solve = get("/solve?letters=OCNINLREI&dictionary=small");
+            assertEquals(200, solve.status);
+            assertTrue(solve.body, solve.body.contains("\"words\":[\"CRINOLINE\",\"LION\"]"));
+
+            assertEquals(400, get("/solve?letters=OCNINLREI&dictionary=missing").status);
+        } finally {
+            Files.delete(words);
+        }
+    }
+
+    public void testQueries() throws IOException {
+        start(new WordWheelEngine(SolverStrategy.TRIE, Dictionary.getDefault()), 4, 10000);
+
+        Response solve = get("/solve?letters=ocninlrei");
+        assertEquals(200, solve.status);
+        assertTrue(solve.body, solve.body.startsWith("{\"centre\":\"O\",\"wheel\":\"CNINLREI\",\"complete\":true"));
+        assertTrue(solve.body, solve.body.contains("\"nineLetterWords\":[\"CRINOLINE\"]"));
+        assertTrue(solve.body, solve.body.contains("\"words\":[\"CEORL\","));
+
+        Response nine = get("/nine?letters=OCNINLREI");
+        assertEquals(200, nine.status);
+        assertTrue(nine.body, nine.body.endsWith("\"nineLetterWords\":[\"CRINOLINE\"]}"));
+
+        Response stats = get("/stats?letters=OCNINLREI");
+        assertEquals(200, stats.status);
+        assertTrue(stats.body, stats.body.contains("\"lengths\":{\"1\":0,"));
+        assertTrue(stats.body, stats.body.endsWith("\"9\":1}}"));
+
+        Response longer = get("/stats?letters=ESTTRRABUIN&minLength=8&centreRequired=false");
+        assertEquals(200, longer.status);
+        assertTrue(longer.body, longer.body.contains("\"lengths\":{\"1\":0,"));
+        assertTrue(longer.body, longer.body.contains("\"7\":0,\"8\":"));
+        assertTrue(longer.body, longer.body.contains("\"11\":"));
+
+        Response blank = get("/solve?letters=OCNNLRE%3FI");
+        assertEquals(200, blank.status);
+        assertTrue(blank.body, blank.body.contains("\"blanks\":{") && blank.body.contains("\"CRINOLINE\":\"I\""));
+
+        Response status = get("/status");
+        assertEquals(200, status.status);
+        assertTrue(status.body, status.body.startsWith("{\"served\":5,\"rejected\":0,\"timedOut\":0"));
+    }
+
+    public void testBadRequests() throws IOException {
+        start(new WordWheelEngine(SolverStrategy.TRIE, Dictionary.getDefault()), 4, 10000);
+        assertEquals(400, get("/solve?letters=AB").status);
+        assertEquals(400, get("/solve").status);
+        assertEquals(400, get("/solve?letters=OCNINLREI&timeout=soon").status);
+        assertEquals(400, get("/solve?letters=OCNINLREI&minLength=long").status);
+        assertEquals(404, get("/puzzle").status);
+        Response post = request("POST", "/solve?letters=OCNINLREI");
+        assertEquals(405, post.status);
+        assertTrue(post.body, post.body.contains("not allowed"));
+    }
+
+    public void testOverloadRejectedAndTimeout() throws Exception {
+        // Collecting every combination of nine different letters takes far longer than the timeout
+        start(new WordWheelEngine(SolverStrategy.PERMUTATION, Dictionary.getDefault(), SolverScheduler.getDefault(),
+                true), 1, 60000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Response> slow = executor.submit(() -> get("/solve?letters=ABCDEFGHI&timeout=2000"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!get("/status").body.contains("\"inFlight\":1") && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            Response busy = get("/solve?letters=OCNINLREI");
+            assertEquals(503, busy.status);
+
+            Response timedOut = slow.get(30, TimeUnit.SECONDS);
+            assertEquals(200, timedOut.status);
+            assertTrue(timedOut.body, timedOut.body.contains("\"complete\":false"));
+            assertTrue(get("/status").body.contains("\"rejected\":1,\"timedOut\":1"));
+            // Room again once the search has finished
+            assertEquals(200, get("/solve?letters=OCNINLREI").status);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testStopWaitsForRequests() throws Exception {
+        start(new WordWheelEngine(SolverStrategy.PERMUTATION, Dictionary.getDefault(), SolverScheduler.getDefault(),
+                true), 1, 1500);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Response> slow = executor.submit(() -> get("/solve?letters=ABCDEFGHI"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!get("/status").body.contains("\"inFlight\":1") && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(server.stop(10, TimeUnit.SECONDS));
+            assertEquals(200, slow.get(10, TimeUnit.SECONDS).status);
+            try {
+                get("/status");
+                fail("Server should no longer be listening");
+            } catch (IOException expected) {
+                // refused
+            }
+        } finally {
+            server = null;
+            executor.shutdownNow();
+        }
+    }
+}
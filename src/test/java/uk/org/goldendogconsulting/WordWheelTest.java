@@ -4,6 +4,7 @@ import junit.framework.TestCase;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -128,7 +129,7 @@ public class WordWheelTest extends TestCase {
         for (String testString : testStringsMap.keySet()) {
             try {
                 long startTime = System.nanoTime();
-                WordWheel wordWheel = new WordWheel();
+                WordWheel wordWheel = new WordWheel(SolverStrategy.PERMUTATION);
                 boolean result = wordWheel.findWords(testString);
                 assertEquals(wordWheel.getUniqueCharacterCount(), (int) testStringsMap.get(testString));
                 LOG.info("Evaluating word " +testString +" containing " +wordWheel.getUniqueCharacterCount()
@@ -144,7 +145,7 @@ public class WordWheelTest extends TestCase {
     public void testThreadedFind() {
         try {
             long startTime = System.nanoTime();
-            WordWheel wordWheel = new WordWheel();
+            WordWheel wordWheel = new WordWheel(SolverStrategy.PERMUTATION);
             wordWheel.findWords("ABCDEFGHI");
             long endTime = System.nanoTime();
             assertFalse(wordWheel.getCombinationsSet().isEmpty());
@@ -157,6 +158,37 @@ public class WordWheelTest extends TestCase {
         }
     }
 
+    public void testAnagramKeySolverMatchesPermutationSolver() {
+        final String[] testStringArray = { "OCNINLREI", "ABCDEEEEE" };
+        for (String testString : testStringArray) {
+            try {
+                WordWheel permutationWheel = new WordWheel(SolverStrategy.PERMUTATION);
+                permutationWheel.findWords(testString);
+                WordWheel anagramWheel = new WordWheel(SolverStrategy.ANAGRAM_KEY);
+                assertTrue(anagramWheel.findWords(testString));
+                assertFalse(anagramWheel.getValidWords().isEmpty());
+                assertEquals(permutationWheel.getValidWords(), anagramWheel.getValidWords());
+                assertEquals(new HashSet<>(permutationWheel.findNineLetterWords()),
+                        new HashSet<>(anagramWheel.findNineLetterWords()));
+            } catch (PermutateStringException permutateStringException) {
+                fail("Unexpected exception " +permutateStringException.getClass().getName() +" thrown, " +permutateStringException.getMessage());
+            }
+        }
+    }
+
+    public void testAnagramKeyFind() {
+        try {
+            WordWheel wordWheel = new WordWheel(SolverStrategy.ANAGRAM_KEY);
+            assertTrue(wordWheel.findWords("ABCDEFGHI"));
+            assertEquals(68, wordWheel.getValidWords().size());
+            for (String word : wordWheel.getValidWords()) {
+                assertTrue(word.contains("A"));
+            }
+        } catch (PermutateStringException e) {
+            fail("Unexpected exception " +e.getClass().getName() +" thrown, " +e.getMessage());
+        }
+    }
+
     private long computeMsecTime(long startTime, long endTime) {
         final long MILLION = 1000000;
         return ((endTime - startTime)/MILLION);